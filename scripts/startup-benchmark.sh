@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+#
+# Measures time to first request of the plain jar and of the startup-optimized build.
+#
+#   mvn -Pstartup -DskipTests package
+#   scripts/startup-benchmark.sh [runs]
+#
+# Each variant is started RUNS times (default 5) after one discarded warm-up run, against the database configured
+# through the usual SPRING_DATASOURCE_* environment variables. Time to first request is measured from launching the
+# JVM until the first HTTP response of a catalog read. Both variants get the same JAVA_OPTS. The optimized variant
+# only validates the schema, so the database must already have been migrated by the plain jar.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${BENCHMARK_PORT:-18181}
+TARGET=$(cd "$(dirname "$0")/../target" && pwd)
+JAR=$(ls "$TARGET"/e-commerce-*.jar | grep -v '\.original$' | head -n 1)
+STARTUP_JAR="$TARGET/startup/$(basename "$JAR")"
+URL="http://localhost:$PORT/api/v1/categories/category/get-all-categories"
+LOG="$TARGET/startup-benchmark.log"
+read -r -a JVM_OPTS <<< "${JAVA_OPTS:-}"
+
+if [[ ! -f "$STARTUP_JAR" || ! -f "$TARGET/startup/application.jsa" ]]; then
+  echo "Build the optimized variant first: mvn -Pstartup -DskipTests package" >&2
+  exit 1
+fi
+
+# Prints the milliseconds from launching the given command until the first HTTP response.
+time_to_first_request() {
+  local start end pid code
+  start=$(date +%s%N)
+  "$@" --server.port="$PORT" >> "$LOG" 2>&1 &
+  pid=$!
+  while true; do
+    code=$(curl -s -o /dev/null -w '%{http_code}' "$URL" || true)
+    [[ "$code" != "000" ]] && break
+    if ! kill -0 "$pid" 2> /dev/null; then
+      echo "Application exited before answering, see $LOG" >&2
+      exit 1
+    fi
+    sleep 0.01
+  done
+  end=$(date +%s%N)
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+  echo $(( (end - start) / 1000000 ))
+}
+
+benchmark() {
+  local name=$1
+  shift
+  local times=()
+  time_to_first_request "$@" > /dev/null
+  for ((run = 1; run <= RUNS; run++)); do
+    times+=("$(time_to_first_request "$@")")
+  done
+  local sorted
+  sorted=$(printf '%s\n' "${times[@]}" | sort -n)
+  printf '%-10s median %6d ms   min %6d ms   runs: %s\n' "$name" \
+    "$(sed -n "$(( (RUNS + 1) / 2 ))p" <<< "$sorted")" "$(head -n 1 <<< "$sorted")" "${times[*]}"
+}
+
+: > "$LOG"
+benchmark plain java "${JVM_OPTS[@]}" -jar "$JAR"
+benchmark optimized java "${JVM_OPTS[@]}" -XX:SharedArchiveFile="$TARGET/startup/application.jsa" \
+  -Dspring.aot.enabled=true -Dspring.profiles.active=startup -jar "$STARTUP_JAR"
@@ -1,5 +1,7 @@
 package com.e_commerce.config;
 
+import com.e_commerce.dto.ProductDto;
+import com.e_commerce.model.Product;
 import org.modelmapper.ModelMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +10,10 @@ import org.springframework.context.annotation.Configuration;
 public class ModelMapperConfig {
     @Bean
     public ModelMapper modelMapper() {
-        return new ModelMapper();
+        ModelMapper modelMapper = new ModelMapper();
+        // Image DTOs are filled in from a separate metadata query; mapping them here would load the lazy collection.
+        modelMapper.typeMap(Product.class, ProductDto.class)
+                .addMappings(mapper -> mapper.skip(ProductDto::setImages));
+        return modelMapper;
     }
 }
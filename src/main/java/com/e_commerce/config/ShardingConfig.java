@@ -0,0 +1,53 @@
+package com.e_commerce.config;
+
+import com.e_commerce.service.sharding.ShardRoutingDataSource;
+import com.e_commerce.service.sharding.ShardSchemaInitializer;
+import com.e_commerce.service.sqllog.SlowQueryLog;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads products and images over several databases, one per URL in {@code catalog.sharding.urls}. All shards use
+ * the {@code spring.datasource} credentials and hold the full schema; categories are copied to every shard.
+ * <p>
+ * Run with the {@code sharded} profile, which also turns off open-in-view: an entity loaded on one shard must never
+ * lazily load from whatever shard the request happens to be on later.
+ */
+@Configuration
+@ConditionalOnProperty(name = "catalog.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties, @Value("${catalog.sharding.urls}") List<String> urls,
+                                             SlowQueryLog slowQueryLog) {
+        List<DataSource> shards = new ArrayList<>(urls.size());
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(shard).trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            shards.add(slowQueryLog.wrap(dataSource));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaIntegrator(ShardSchemaInitializer shardSchemaInitializer) {
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(shardSchemaInitializer));
+    }
+}
@@ -0,0 +1,76 @@
+package com.e_commerce.controller;
+
+import com.e_commerce.dto.BulkAdjustmentJobDto;
+import com.e_commerce.exceptions.BulkAdjustmentJobNotFoundException;
+import com.e_commerce.exceptions.CategoryNotFoundException;
+import com.e_commerce.request.BulkAdjustmentRequest;
+import com.e_commerce.response.ApiResponse;
+import com.e_commerce.service.bulk.IBulkAdjustmentService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.*;
+
+@RestController
+@RequestMapping("${api.prefix}/product/bulk-adjustments")
+@RequiredArgsConstructor
+public class BulkAdjustmentController {
+    private final IBulkAdjustmentService bulkAdjustmentService;
+
+    @PostMapping
+    public ResponseEntity<ApiResponse> submitJob(@RequestBody BulkAdjustmentRequest request) {
+        try {
+            BulkAdjustmentJobDto job = bulkAdjustmentService.submit(request);
+            return ResponseEntity.status(ACCEPTED)
+                    .body(new ApiResponse("Submitted", job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+        } catch (CategoryNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse(e.getMessage(), NOT_FOUND));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), CONFLICT));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiResponse> getRecentJobs(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse("limit must be between 1 and 100", BAD_REQUEST));
+        }
+        List<BulkAdjustmentJobDto> jobs = bulkAdjustmentService.getRecentJobs(limit);
+        return ResponseEntity.ok()
+                .body(new ApiResponse("Found", jobs));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse> getJob(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Found", bulkAdjustmentService.getJob(jobId)));
+        } catch (BulkAdjustmentJobNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse(e.getMessage(), NOT_FOUND));
+        }
+    }
+
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ApiResponse> resumeJob(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.status(ACCEPTED)
+                    .body(new ApiResponse("Resumed", bulkAdjustmentService.resume(jobId)));
+        } catch (BulkAdjustmentJobNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse(e.getMessage(), NOT_FOUND));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), CONFLICT));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.e_commerce.controller;
+
+import com.e_commerce.service.outbox.CatalogEventStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("${api.prefix}/events")
+@RequiredArgsConstructor
+public class CatalogEventController {
+    private final CatalogEventStream catalogEventStream;
+
+    @GetMapping(path = "/catalog-changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCatalogChanges(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                           @RequestParam(required = false) String since) {
+        return catalogEventStream.subscribe(lastEventId != null ? lastEventId : since);
+    }
+}
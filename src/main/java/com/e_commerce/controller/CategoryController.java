@@ -1,6 +1,8 @@
 package com.e_commerce.controller;
 
+import com.e_commerce.dto.CategoryNodeDto;
 import com.e_commerce.exceptions.AlreadyExistsException;
+import com.e_commerce.exceptions.CategoryInUseException;
 import com.e_commerce.exceptions.CategoryNotFoundException;
 import com.e_commerce.model.Category;
 import com.e_commerce.response.ApiResponse;
@@ -32,14 +34,17 @@ public class CategoryController {
     }
 
     @PostMapping("/category/add-category")
-    public ResponseEntity<ApiResponse> addNewCategory(@RequestBody Category category) {
+    public ResponseEntity<ApiResponse> addNewCategory(@RequestBody Category category, @RequestParam(required = false) Long parentId) {
         try {
-            Category newCategory = categoryService.addCategory(category);
+            Category newCategory = categoryService.addCategory(category, parentId);
             return ResponseEntity.ok(new ApiResponse("Added!", newCategory));
         } catch (AlreadyExistsException ex) {
             return ResponseEntity.status(CONFLICT)
                     .body(new ApiResponse(ex.getMessage(), null));
 
+        } catch (CategoryNotFoundException ex) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse("Parent category " + parentId + " not found", NOT_FOUND));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse("Error!", INTERNAL_SERVER_ERROR + e.getMessage()));
@@ -91,6 +96,41 @@ public class CategoryController {
         } catch (CategoryNotFoundException ex) {
             return ResponseEntity.status(NOT_FOUND)
                     .body(new ApiResponse("Category " + categoryId + " not found!", NOT_FOUND));
+        } catch (CategoryInUseException ex) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(ex.getMessage(), CONFLICT));
+        }
+    }
+
+    @PutMapping("/category/move/id/{categoryId}")
+    public ResponseEntity<ApiResponse> moveCategory(@PathVariable Long categoryId, @RequestParam(required = false) Long parentId) {
+        try {
+            Category category = categoryService.moveCategory(categoryId, parentId);
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Moved!", category));
+        } catch (CategoryNotFoundException ex) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse(ex.getMessage(), NOT_FOUND));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(ex.getMessage(), BAD_REQUEST));
+        }
+    }
+
+    @GetMapping("/category/tree")
+    public ResponseEntity<ApiResponse> getCategoryTree() {
+        List<CategoryNodeDto> tree = categoryService.getCategoryTree();
+        return ResponseEntity.ok(new ApiResponse("Found!", tree));
+    }
+
+    @GetMapping("/category/breadcrumb/id/{categoryId}")
+    public ResponseEntity<ApiResponse> getBreadcrumb(@PathVariable Long categoryId) {
+        try {
+            List<CategoryNodeDto> breadcrumb = categoryService.getBreadcrumb(categoryId);
+            return ResponseEntity.ok(new ApiResponse("Found!", breadcrumb));
+        } catch (CategoryNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse("Category " + categoryId + " was not found", null));
         }
     }
 
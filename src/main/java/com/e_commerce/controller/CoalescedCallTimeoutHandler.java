@@ -0,0 +1,27 @@
+package com.e_commerce.controller;
+
+import com.e_commerce.exceptions.CoalescedCallTimeoutException;
+import com.e_commerce.response.ApiResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Answers reads that gave up waiting for a shared query with 503, so clients retry instead of taking the
+ * product for missing.
+ */
+@RestControllerAdvice
+public class CoalescedCallTimeoutHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @ExceptionHandler(CoalescedCallTimeoutException.class)
+    public ResponseEntity<ApiResponse> handleTimeout(CoalescedCallTimeoutException e) {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(new ApiResponse("Server busy, try again later", SERVICE_UNAVAILABLE));
+    }
+}
@@ -1,18 +1,28 @@
 package com.e_commerce.controller;
 
 import com.e_commerce.dto.ProductDto;
+import com.e_commerce.dto.ProductFields;
+import com.e_commerce.dto.ProductLookupDto;
+import com.e_commerce.dto.TrendingProductDto;
+import com.e_commerce.exceptions.AlreadyExistsException;
 import com.e_commerce.exceptions.ProductNotFoundException;
 import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ProductFilter;
 import com.e_commerce.request.AddProductRequest;
 import com.e_commerce.request.ProductUpdateRequest;
+import com.e_commerce.request.ProductUpsertRequest;
 import com.e_commerce.response.ApiResponse;
-import com.e_commerce.service.product.ProductService;
+import com.e_commerce.service.product.IProductService;
+import com.e_commerce.service.trending.ITrendingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
@@ -20,10 +30,14 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 @RequestMapping("${api.prefix}/product")
 @RequiredArgsConstructor
 public class ProductController {
-    private final ProductService productService;
+    private final IProductService productService;
+    private final ITrendingService trendingService;
 
     @GetMapping("/get-all-products")
-    public ResponseEntity<ApiResponse> getAllProducts() {
+    public ResponseEntity<ApiResponse> getAllProducts(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.all(), fields, "Not found");
+        }
         List<Product> productList = productService.getAllProducts();
         if(productList.isEmpty()) {
             return ResponseEntity.status(NOT_FOUND)
@@ -33,17 +47,66 @@ public class ProductController {
     }
 
     @GetMapping("/get-product/id/{productId}")
-    public ResponseEntity<ApiResponse> getProductById(@PathVariable Long productId) {
+    public ResponseEntity<ApiResponse> getProductById(@PathVariable Long productId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                List<Map<String, Object>> products = productService.getProductFields(ProductFilter.byIds(List.of(productId)), ProductFields.parse(fields));
+                if (products.isEmpty()) {
+                    return ResponseEntity.status(NOT_FOUND)
+                            .body(new ApiResponse("Product Id " + productId + " not found", NOT_FOUND));
+                }
+                recordView(productId, products.get(0));
+                return ResponseEntity.ok()
+                        .body(new ApiResponse("Found", products.get(0)));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(BAD_REQUEST)
+                        .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+            }
+        }
         try {
             Product product = productService.getProductById(productId);
+            trendingService.recordView(productId, product.getCategory() != null ? product.getCategory().getName() : null);
             return ResponseEntity.ok()
                     .body(new ApiResponse("Found", product));
-        } catch (Exception e) {
+        } catch (ProductNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND)
                     .body(new ApiResponse("Product Id " + productId + " not found", NOT_FOUND));
         }
     }
 
+    @GetMapping("/trending")
+    public ResponseEntity<ApiResponse> getTrendingProducts(@RequestParam(defaultValue = "10") int limit,
+                                                           @RequestParam(required = false) String category) {
+        try {
+            List<TrendingProductDto> trending = trendingService.getTrending(limit, category);
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Found", trending));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+        }
+    }
+
+    @GetMapping("/get-products")
+    public ResponseEntity<ApiResponse> getProductsByIds(@RequestParam List<Long> ids, @RequestParam(required = false) String fields) {
+        try {
+            if (fields != null) {
+                List<ProductLookupDto<Map<String, Object>>> products = productService.getProductFieldsByIds(ids, ProductFields.parse(fields));
+                products.stream().filter(ProductLookupDto::isFound).forEach(lookup -> recordView(lookup.getId(), lookup.getProduct()));
+                return ResponseEntity.ok()
+                        .body(new ApiResponse("Found", products));
+            }
+            List<ProductLookupDto<ProductDto>> products = productService.getProductsByIds(ids);
+            products.stream().filter(ProductLookupDto::isFound).forEach(lookup -> trendingService.recordView(lookup.getId(),
+                    lookup.getProduct().getCategory() != null ? lookup.getProduct().getCategory().getName() : null));
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Found", products));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+        }
+    }
+
     @PostMapping("/add-product")
     public ResponseEntity<ApiResponse> addProduct(@RequestBody AddProductRequest productRequest) {
         try {
@@ -51,6 +114,9 @@ public class ProductController {
             ProductDto productDto = productService.convertToDto(product);
             return ResponseEntity.ok()
                     .body(new ApiResponse("Added", productDto));
+        } catch (AlreadyExistsException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), CONFLICT));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(e.getMessage(), INTERNAL_SERVER_ERROR));
@@ -66,6 +132,27 @@ public class ProductController {
         } catch (ProductNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND)
                     .body(new ApiResponse("Product not found!", NOT_FOUND));
+        } catch (AlreadyExistsException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), CONFLICT));
+        }
+    }
+
+    @PutMapping("/upsert-products")
+    public ResponseEntity<ApiResponse> upsertProducts(@RequestBody List<ProductUpsertRequest> productRequests) {
+        try {
+            List<ProductDto> products = productService.upsertProducts(productRequests);
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Products saved", products));
+        } catch (ProductNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse(e.getMessage(), NOT_FOUND));
+        } catch (AlreadyExistsException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), CONFLICT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
         }
     }
 
@@ -97,7 +184,11 @@ public class ProductController {
     }
 
     @GetMapping("/get-product-by-brand-and-name")
-    public ResponseEntity<ApiResponse> getProductByBrandAndName(@RequestParam String brandName, @RequestParam String productName) {
+    public ResponseEntity<ApiResponse> getProductByBrandAndName(@RequestParam String brandName, @RequestParam String productName,
+                                                                @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byBrandAndName(brandName, productName), fields, "No product found");
+        }
         try {
             List<Product> productList = productService.getProductByBrandAndName(brandName, productName);
             if (productList.isEmpty()) {
@@ -113,7 +204,10 @@ public class ProductController {
     }
 
     @GetMapping("/get-product-by-name/{productName}")
-    public ResponseEntity<ApiResponse> getProductByName(@PathVariable String productName) {
+    public ResponseEntity<ApiResponse> getProductByName(@PathVariable String productName, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byName(productName), fields, "Product not found");
+        }
         try {
             List<Product> productList = productService.getProductByName(productName);
             if(productList.isEmpty()) {
@@ -129,7 +223,10 @@ public class ProductController {
     }
 
     @GetMapping("/get-product-by-brand-name")
-    public ResponseEntity<ApiResponse> getProductByBrandName(@RequestParam String brandName) {
+    public ResponseEntity<ApiResponse> getProductByBrandName(@RequestParam String brandName, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byBrand(brandName), fields, "Product not found");
+        }
         try {
             List<Product> productList = productService.getProductByBrand(brandName);
             if(productList.isEmpty()) {
@@ -145,7 +242,10 @@ public class ProductController {
     }
 
     @GetMapping("/get-product-by-category/{categoryName}")
-    public ResponseEntity<ApiResponse> getProductByCategory(@PathVariable String categoryName) {
+    public ResponseEntity<ApiResponse> getProductByCategory(@PathVariable String categoryName, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byCategory(categoryName), fields, "Product not found");
+        }
         try {
             List<Product> productList = productService.getProductByCategory(categoryName);
             if(productList.isEmpty()) {
@@ -160,8 +260,31 @@ public class ProductController {
         }
     }
 
+    @GetMapping("/get-product-by-category-tree/{categoryName}")
+    public ResponseEntity<ApiResponse> getProductByCategoryTree(@PathVariable String categoryName, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byCategoryTree(categoryName), fields, "Product not found");
+        }
+        try {
+            List<Product> productList = productService.getProductByCategoryTree(categoryName);
+            if(productList.isEmpty()) {
+                return ResponseEntity.status(NOT_FOUND)
+                        .body(new ApiResponse("Product not found", NOT_FOUND));
+            }
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Found", productList));
+        } catch (Exception e) {
+            return ResponseEntity.status(INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse(e.getMessage(), INTERNAL_SERVER_ERROR));
+        }
+    }
+
     @GetMapping("/get-product-by-category-and-brand")
-    public ResponseEntity<ApiResponse> getProductByCategoryAndBrand(@RequestParam String categoryName, @RequestParam String brandName) {
+    public ResponseEntity<ApiResponse> getProductByCategoryAndBrand(@RequestParam String categoryName, @RequestParam String brandName,
+                                                                    @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return sparseResponse(ProductFilter.byCategoryAndBrand(categoryName, brandName), fields, "Product not found");
+        }
         try {
             List<Product> productList = productService.getProductByCategoryAndBrand(categoryName, brandName);
             if(productList.isEmpty()) {
@@ -175,4 +298,33 @@ public class ProductController {
                     .body(new ApiResponse(e.getMessage(), INTERNAL_SERVER_ERROR));
         }
     }
+
+    /**
+     * Answers a read with only the fields the client selected, queried through a projection instead of full entities.
+     */
+    private ResponseEntity<ApiResponse> sparseResponse(ProductFilter filter, String fields, String notFoundMessage) {
+        try {
+            List<Map<String, Object>> products = productService.getProductFields(filter, ProductFields.parse(fields));
+            if (products.isEmpty()) {
+                return ResponseEntity.status(NOT_FOUND)
+                        .body(new ApiResponse(notFoundMessage, NOT_FOUND));
+            }
+            return ResponseEntity.ok()
+                    .body(new ApiResponse("Found", products));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+        }
+    }
+
+    /**
+     * Counts a view of a sparse read, with the category it selected or else the one the read model knows.
+     */
+    private void recordView(Long productId, Map<String, Object> product) {
+        if (product.get("category") instanceof Map<?, ?> category) {
+            trendingService.recordView(productId, (String) category.get("name"));
+        } else {
+            trendingService.recordView(productId);
+        }
+    }
 }
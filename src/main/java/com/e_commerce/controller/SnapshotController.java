@@ -0,0 +1,48 @@
+package com.e_commerce.controller;
+
+import com.e_commerce.dto.SnapshotSummaryDto;
+import com.e_commerce.exceptions.InvalidSnapshotException;
+import com.e_commerce.response.ApiResponse;
+import com.e_commerce.service.snapshot.ICatalogSnapshotService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.springframework.http.HttpStatus.*;
+
+@RestController
+@RequestMapping("${api.prefix}/admin/snapshot")
+@RequiredArgsConstructor
+public class SnapshotController {
+    private final ICatalogSnapshotService catalogSnapshotService;
+
+    @GetMapping("/export")
+    public void exportSnapshot(HttpServletResponse response) throws IOException {
+        String fileName = "catalog-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".snapshot";
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        catalogSnapshotService.exportSnapshot(response.getOutputStream());
+    }
+
+    @PostMapping(value = "/restore", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ApiResponse> restoreSnapshot(HttpServletRequest request) {
+        try {
+            SnapshotSummaryDto summary = catalogSnapshotService.restoreSnapshot(request.getInputStream());
+            return ResponseEntity.ok(new ApiResponse("Restored", summary));
+        } catch (InvalidSnapshotException e) {
+            return ResponseEntity.status(BAD_REQUEST).body(new ApiResponse(e.getMessage(), BAD_REQUEST));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(CONFLICT).body(new ApiResponse(e.getMessage(), CONFLICT));
+        } catch (IOException e) {
+            return ResponseEntity.status(INTERNAL_SERVER_ERROR).body(new ApiResponse(e.getMessage(), INTERNAL_SERVER_ERROR));
+        }
+    }
+}
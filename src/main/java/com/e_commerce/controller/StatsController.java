@@ -0,0 +1,77 @@
+package com.e_commerce.controller;
+
+import com.e_commerce.dto.CatalogStatsDto;
+import com.e_commerce.response.ApiResponse;
+import com.e_commerce.service.product.IProductService;
+import com.e_commerce.service.stats.ICatalogStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@RestController
+@RequestMapping("${api.prefix}/stats")
+@RequiredArgsConstructor
+public class StatsController {
+    private final ICatalogStatsService catalogStatsService;
+    private final IProductService productService;
+
+    @GetMapping("/summary")
+    public ResponseEntity<ApiResponse> getSummary() {
+        return whenLoaded(catalogStatsService::getTotals);
+    }
+
+    @GetMapping("/categories")
+    public ResponseEntity<ApiResponse> getCategoryStats() {
+        return whenLoaded(catalogStatsService::getCategoryStats);
+    }
+
+    @GetMapping("/categories/{categoryName}")
+    public ResponseEntity<ApiResponse> getCategoryStats(@PathVariable String categoryName) {
+        if (!catalogStatsService.isLoaded()) {
+            return notLoaded();
+        }
+        Optional<CatalogStatsDto> stats = catalogStatsService.getCategoryStats(categoryName);
+        if (stats.isEmpty()) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse("Category " + categoryName + " not found", NOT_FOUND));
+        }
+        return ResponseEntity.ok()
+                .body(new ApiResponse("Found", stats.get()));
+    }
+
+    @GetMapping("/brands")
+    public ResponseEntity<ApiResponse> getBrandStats() {
+        return whenLoaded(catalogStatsService::getBrandStats);
+    }
+
+    @GetMapping("/brands/{brandName}")
+    public ResponseEntity<ApiResponse> getBrandStats(@PathVariable String brandName) {
+        return whenLoaded(() -> catalogStatsService.getBrandStats(brandName));
+    }
+
+    @GetMapping("/count-by-brand-and-name")
+    public ResponseEntity<ApiResponse> countProductsByBrandAndName(@RequestParam String brandName, @RequestParam String productName) {
+        Long count = productService.countProductsByBrandAndName(brandName, productName);
+        return ResponseEntity.ok()
+                .body(new ApiResponse("Found", count));
+    }
+
+    private ResponseEntity<ApiResponse> whenLoaded(Supplier<?> stats) {
+        if (!catalogStatsService.isLoaded()) {
+            return notLoaded();
+        }
+        return ResponseEntity.ok()
+                .body(new ApiResponse("Found", stats.get()));
+    }
+
+    private static ResponseEntity<ApiResponse> notLoaded() {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .body(new ApiResponse("Statistics are still loading", SERVICE_UNAVAILABLE));
+    }
+}
@@ -0,0 +1,46 @@
+package com.e_commerce.dto;
+
+import com.e_commerce.model.BulkAdjustmentJob.Operation;
+import com.e_commerce.model.BulkAdjustmentJob.Status;
+import com.e_commerce.model.BulkAdjustmentJob.Target;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A bulk adjustment job with its progress. Chunks are only included when a single job is requested.
+ */
+@Value
+public class BulkAdjustmentJobDto {
+    Long id;
+    Status status;
+    String brand;
+    Long categoryId;
+    boolean includeSubcategories;
+    Target target;
+    Operation operation;
+    BigDecimal amount;
+    BigDecimal endingIn;
+    int totalChunks;
+    int completedChunks;
+    long rowsUpdated;
+    long slowestChunkMillis;
+    Instant createdAt;
+    Instant startedAt;
+    Instant finishedAt;
+    String error;
+    List<Chunk> chunks;
+
+    @Value
+    public static class Chunk {
+        long fromId;
+        long toId;
+        boolean done;
+        int rowsUpdated;
+        long millis;
+        int attempts;
+        String error;
+    }
+}
@@ -0,0 +1,16 @@
+package com.e_commerce.dto;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Product count, stock total and average price of one group of products, e.g. a category or a brand.
+ */
+@Value
+public class CatalogStatsDto {
+    String key;
+    long productCount;
+    long stockTotal;
+    BigDecimal averagePrice;
+}
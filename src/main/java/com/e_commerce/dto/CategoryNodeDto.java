@@ -0,0 +1,18 @@
+package com.e_commerce.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Immutable node of the cached category tree. Instances are shared between requests.
+ */
+@Value
+public class CategoryNodeDto {
+    Long id;
+    String name;
+    Long parentId;
+    String path;
+    int depth;
+    List<CategoryNodeDto> children;
+}
@@ -0,0 +1,42 @@
+package com.e_commerce.dto;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Parses and validates the {@code fields=} parameter of the product read endpoints against {@link ProductDto}.
+ */
+public final class ProductFields {
+
+    private static final Set<String> ALLOWED = Arrays.stream(ProductDto.class.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .collect(LinkedHashSet::new, Set::add, Set::addAll);
+
+    private ProductFields() {
+    }
+
+    /**
+     * @param fields A comma-separated list of ProductDto field names.
+     * @return The requested fields in request order, without duplicates.
+     * @throws IllegalArgumentException if the list is empty or names an unknown field.
+     */
+    public static Set<String> parse(String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!ALLOWED.contains(name)) {
+                throw new IllegalArgumentException("Unknown field '" + name + "', expected any of " + ALLOWED);
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("At least one field must be requested, expected any of " + ALLOWED);
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+}
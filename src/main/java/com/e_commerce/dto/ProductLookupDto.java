@@ -0,0 +1,15 @@
+package com.e_commerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result for one requested id of a batch lookup; product is null when found is false.
+ */
+@Data
+@AllArgsConstructor
+public class ProductLookupDto<T> {
+    private Long id;
+    private boolean found;
+    private T product;
+}
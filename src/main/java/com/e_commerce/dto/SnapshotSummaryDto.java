@@ -0,0 +1,16 @@
+package com.e_commerce.dto;
+
+import lombok.Value;
+
+/**
+ * The rows written to or read from a catalog snapshot.
+ */
+@Value
+public class SnapshotSummaryDto {
+    long categories;
+    long products;
+    long imageContents;
+    long images;
+    long imageBytes;
+    long millis;
+}
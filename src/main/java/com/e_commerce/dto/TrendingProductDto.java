@@ -0,0 +1,14 @@
+package com.e_commerce.dto;
+
+import lombok.Value;
+
+/**
+ * A product and its estimated number of views in the trending window. The category is null until the product is
+ * viewed in full.
+ */
+@Value
+public class TrendingProductDto {
+    Long productId;
+    String category;
+    long views;
+}
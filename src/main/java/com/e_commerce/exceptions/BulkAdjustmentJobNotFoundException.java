@@ -0,0 +1,7 @@
+package com.e_commerce.exceptions;
+
+public class BulkAdjustmentJobNotFoundException extends RuntimeException {
+    public BulkAdjustmentJobNotFoundException(String message) {
+        super(message);
+    }
+}
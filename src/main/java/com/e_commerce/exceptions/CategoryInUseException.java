@@ -0,0 +1,7 @@
+package com.e_commerce.exceptions;
+
+public class CategoryInUseException extends RuntimeException {
+    public CategoryInUseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.e_commerce.exceptions;
+
+public class CoalescedCallTimeoutException extends RuntimeException {
+    public CoalescedCallTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.e_commerce.exceptions;
+
+public class InvalidSnapshotException extends RuntimeException {
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+}
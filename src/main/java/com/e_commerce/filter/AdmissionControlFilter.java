@@ -0,0 +1,106 @@
+package com.e_commerce.filter;
+
+import com.e_commerce.response.ApiResponse;
+import com.e_commerce.service.admission.AdmissionControlService;
+import com.e_commerce.service.admission.AdmissionControlService.Decision;
+import com.e_commerce.service.admission.AdmissionControlService.Rejection;
+import com.e_commerce.service.admission.TrustedProxies;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+/**
+ * Applies admission control to every request. Callers are told apart by their remote address. Only requests
+ * arriving from one of {@code admission.trusted-proxies} may name the caller, either with the client id header
+ * or with {@code X-Forwarded-For}, which those proxies must set or strip. From anywhere else these headers are
+ * ignored, so a caller can't pick a fresh bucket per request.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    private final AdmissionControlService admissionControlService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${admission.client-id-header:X-Client-Id}")
+    private String clientIdHeader;
+
+    @Value("${admission.trusted-proxies:}")
+    private List<String> trustedProxyAddresses;
+
+    private TrustedProxies trustedProxies;
+
+    @PostConstruct
+    void parseTrustedProxies() {
+        trustedProxies = TrustedProxies.of(trustedProxyAddresses);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Decision decision = admissionControlService.admit(clientId(request), request.getMethod(), path);
+        if (!decision.isAdmitted()) {
+            reject(response, decision);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            admissionControlService.release(decision);
+        }
+    }
+
+    String clientId(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        if (!trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+        String clientId = request.getHeader(clientIdHeader);
+        if (clientId != null && !clientId.isBlank()) {
+            return clientId.trim();
+        }
+        // The nearest address not added by one of our proxies is the caller; anything before it may be forged.
+        String forwardedFor = request.getHeader(FORWARDED_FOR);
+        if (forwardedFor != null) {
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                    return hop;
+                }
+            }
+        }
+        return remoteAddress;
+    }
+
+    private void reject(HttpServletResponse response, Decision decision) throws IOException {
+        HttpStatus status = decision.rejection() == Rejection.RATE_LIMITED ? TOO_MANY_REQUESTS : SERVICE_UNAVAILABLE;
+        String message = decision.rejection() == Rejection.RATE_LIMITED ? "Rate limit exceeded" : "Server busy, try again later";
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiResponse(message, status));
+    }
+}
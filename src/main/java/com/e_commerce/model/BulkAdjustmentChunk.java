@@ -0,0 +1,45 @@
+package com.e_commerce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * The products of a {@link BulkAdjustmentJob} with ids in {@code [fromId, toId]}. A chunk is applied in one
+ * transaction that also marks it done, so after a crash every chunk has been applied either fully or not at all.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "bulk_adjustment_chunk", indexes = @Index(name = "idx_bulk_adjustment_chunk_job_id", columnList = "job_id, from_id"))
+public class BulkAdjustmentChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id")
+    private Long jobId;
+
+    @Column(name = "from_id")
+    private long fromId;
+    private long toId;
+    private boolean done;
+    private int rowsUpdated;
+    private long millis;
+    private int attempts;
+    private Instant finishedAt;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    public BulkAdjustmentChunk(Long jobId, long fromId, long toId) {
+        this.jobId = jobId;
+        this.fromId = fromId;
+        this.toId = toId;
+    }
+}
@@ -0,0 +1,67 @@
+package com.e_commerce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A price or inventory change applied to every product matching a brand and/or category filter. The matching ids
+ * are split into {@link BulkAdjustmentChunk}s when the job is submitted.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "bulk_adjustment_job", indexes = @Index(name = "idx_bulk_adjustment_job_status", columnList = "status"))
+public class BulkAdjustmentJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String brand;
+    private Long categoryId;
+    private boolean includeSubcategories;
+
+    @Enumerated(EnumType.STRING)
+    private Target target;
+
+    @Enumerated(EnumType.STRING)
+    private Operation operation;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    /**
+     * The cents every adjusted price ends in, e.g. 0.99, or null to round to the cent.
+     */
+    @Column(precision = 3, scale = 2)
+    private BigDecimal endingIn;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int totalChunks;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    public enum Target {
+        PRICE, INVENTORY
+    }
+
+    public enum Operation {
+        SET, ADD, PERCENT
+    }
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -11,7 +11,7 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "category")
+@Table(name = "category", indexes = @Index(name = "idx_category_path", columnList = "path"))
 public class Category {
 
     @Id
@@ -19,6 +19,18 @@ public class Category {
     private Long id;
     private String name;
 
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "parent_id")
+    private Category parent;
+
+    /**
+     * Materialized path: the fixed-width ids of all ancestors followed by this category's own id.
+     * Every descendant's path starts with it, so a subtree is one range scan on the path index.
+     */
+    private String path;
+    private int depth;
+
     @JsonIgnore
     @OneToMany(mappedBy = "category")
     private List<Product> productList;
@@ -26,4 +38,8 @@ public class Category {
     public Category(String name) {
         this.name = name;
     }
+
+    public Long getParentId() {
+        return parent != null ? parent.getId() : null;
+    }
 }
@@ -0,0 +1,40 @@
+package com.e_commerce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * A category change still to be applied on another shard, kept on the shard the change was written on. The row is
+ * written in the transaction of the change and removed once the target shard has it, so pending copies survive
+ * failures and restarts.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "category_replication")
+public class CategoryReplication {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private int targetShard;
+
+    // The subtree to copy, or null when the category is deleted.
+    private String path;
+    private Long deletedCategoryId;
+    private int attempts;
+    private Instant createdAt;
+
+    public CategoryReplication(int targetShard, String path, Long deletedCategoryId) {
+        this.targetShard = targetShard;
+        this.path = path;
+        this.deletedCategoryId = deletedCategoryId;
+        this.createdAt = Instant.now();
+    }
+}
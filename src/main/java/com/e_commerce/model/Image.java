@@ -1,19 +1,28 @@
 package com.e_commerce.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.sql.Blob;
+import java.time.Instant;
 
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "image")
+@Table(name = "image", indexes = @Index(name = "idx_image_deleted_at", columnList = "deletedAt"))
+// Deleted images stay behind as tombstones until the ImageReaper frees their data; no query should see them.
+@SQLRestriction("deleted = false")
+// Only changed columns are written, so metadata updates leave the image data alone.
+@DynamicUpdate
 public class Image {
 
     @Id
@@ -22,11 +31,28 @@ public class Image {
     private String fileName;
     private String fileType;
 
+    // Bytes stored before uploads were deduplicated; moved into an ImageContent at startup.
+    @JsonIgnore
     @Lob
-    private Blob image;
+    @Column(name = "image")
+    private Blob legacyData;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_id")
+    private ImageContent content;
     private String downloadUrl;
 
+    @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "product_id")
     private Product product;
+
+    @JsonIgnore
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @JsonIgnore
+    private Instant deletedAt;
 }
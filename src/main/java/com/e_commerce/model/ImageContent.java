@@ -0,0 +1,46 @@
+package com.e_commerce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Blob;
+import java.time.Instant;
+
+/**
+ * Image bytes stored once per distinct content and shared by every image that uploaded the same bytes.
+ * <p>
+ * refCount is the number of image rows pointing here. Contents are never modified; an image that gets new bytes
+ * points to another content, and contents whose count dropped to zero are removed by the ImageReaper.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "image_content", indexes = @Index(name = "idx_image_content_ref_count", columnList = "refCount"))
+public class ImageContent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String sha256;
+    private long size;
+    private int refCount;
+
+    // Written once; updating the reference count must never rewrite the bytes.
+    @Lob
+    @Column(updatable = false)
+    private Blob data;
+    private Instant createdAt;
+
+    public ImageContent(String sha256, long size, Blob data) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.data = data;
+        this.refCount = 1;
+        this.createdAt = Instant.now();
+    }
+}
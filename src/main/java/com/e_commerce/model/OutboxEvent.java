@@ -0,0 +1,53 @@
+package com.e_commerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_created_at", columnList = "createdAt"))
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private AggregateType aggregateType;
+    private Long aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    private ChangeType changeType;
+
+    @Column(columnDefinition = "text")
+    private String payload;
+    private Instant createdAt;
+
+    // The node that wrote the event, so nodes can tell their own changes from those of others.
+    @Column(length = 36)
+    private String origin;
+
+    public OutboxEvent(AggregateType aggregateType, Long aggregateId, ChangeType changeType, String payload) {
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.changeType = changeType;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+
+    public enum AggregateType {
+        PRODUCT, CATEGORY, IMAGE
+    }
+
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+}
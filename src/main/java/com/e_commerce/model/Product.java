@@ -9,10 +9,14 @@ import java.util.List;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "product")
+@Table(name = "product", indexes = @Index(name = "idx_product_category_id", columnList = "category_id"),
+        // The natural key: creating a product that already exists returns the existing one.
+        uniqueConstraints = @UniqueConstraint(name = Product.NATURAL_KEY, columnNames = {"brand", "name"}))
 @Entity
 public class Product {
 
+    public static final String NATURAL_KEY = "uk_product_brand_name";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
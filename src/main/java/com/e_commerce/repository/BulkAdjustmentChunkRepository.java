@@ -0,0 +1,14 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.BulkAdjustmentChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BulkAdjustmentChunkRepository extends JpaRepository<BulkAdjustmentChunk, Long> {
+    List<BulkAdjustmentChunk> findByJobIdOrderByFromIdAsc(Long jobId);
+
+    List<BulkAdjustmentChunk> findByJobIdAndDoneFalseOrderByFromIdAsc(Long jobId);
+}
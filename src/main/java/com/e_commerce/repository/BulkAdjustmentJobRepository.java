@@ -0,0 +1,15 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.BulkAdjustmentJob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BulkAdjustmentJobRepository extends JpaRepository<BulkAdjustmentJob, Long> {
+    List<BulkAdjustmentJob> findByStatus(BulkAdjustmentJob.Status status);
+
+    List<BulkAdjustmentJob> findAllByOrderByIdDesc(Limit limit);
+}
@@ -0,0 +1,9 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.CategoryReplication;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CategoryReplicationRepository extends JpaRepository<CategoryReplication, Long> {
+}
@@ -2,11 +2,37 @@ package com.e_commerce.repository;
 
 import com.e_commerce.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Category findByName(String name);
 
     boolean existsByName(String name);
+
+    List<Category> findByNameIn(Collection<String> names);
+
+    List<Category> findByParent_Id(Long parentId);
+
+    List<Category> findByPathIsNull();
+
+    /**
+     * @return The categories whose path lies in {@code [lower, upper)}, parents before their children.
+     */
+    @Query("select c from Category c where c.path >= :lower and c.path < :upper order by c.depth, c.id")
+    List<Category> findByPathRange(String lower, String upper);
+
+    /**
+     * Re-roots every category whose path lies in {@code [lower, upper)} by replacing the first
+     * {@code oldPrefixLength} characters of its path with {@code newPrefix}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Category c set c.path = concat(:newPrefix, substring(c.path, :oldPrefixLength + 1)), " +
+            "c.depth = c.depth + :depthDelta where c.path >= :lower and c.path < :upper")
+    int rebaseSubtree(String lower, String upper, String newPrefix, int oldPrefixLength, int depthDelta);
 }
@@ -0,0 +1,23 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.ImageContent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageContentRepository extends JpaRepository<ImageContent, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from ImageContent c where c.sha256 = :sha256")
+    Optional<ImageContent> findBySha256ForUpdate(String sha256);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update ImageContent c set c.refCount = c.refCount - :count where c.id = :id")
+    int release(Long id, int count);
+}
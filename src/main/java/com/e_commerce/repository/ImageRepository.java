@@ -1,13 +1,37 @@
 package com.e_commerce.repository;
 
 import com.e_commerce.model.Image;
+import com.e_commerce.repository.projection.ImageSummary;
 import jakarta.persistence.Id;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Long> {
     List<Image> findByProductId(Long id);
+
+    @Query("select i.Id as id, i.fileName as fileName, i.downloadUrl as downloadUrl, i.product.id as productId " +
+            "from Image i where i.product.id in :productIds order by i.Id")
+    List<ImageSummary> findSummariesByProductIdIn(Collection<Long> productIds);
+
+    /**
+     * Turns all images of a product into tombstones and detaches them, so the product can be deleted without
+     * touching the image data. The ImageReaper frees the data later.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Image i set i.deleted = true, i.deletedAt = :deletedAt, i.product = null where i.product.id = :productId")
+    int tombstoneByProductId(Long productId, Instant deletedAt);
+
+    /**
+     * Turns an image into a tombstone without loading or rewriting its data.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Image i set i.deleted = true, i.deletedAt = :deletedAt, i.product = null where i.Id = :id")
+    int tombstoneById(Long id, Instant deletedAt);
 }
@@ -0,0 +1,43 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    List<OutboxEvent> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<OutboxEvent> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long fromExclusive, Long toInclusive, Limit limit);
+
+    @Query("select coalesce(max(e.id), 0) from OutboxEvent e")
+    Long findMaxId();
+
+    @Query("select coalesce(min(e.id), 0) from OutboxEvent e")
+    Long findMinId();
+
+    @Query("select e.id from OutboxEvent e where e.id > :id")
+    List<Long> findIdsGreaterThan(Long id);
+
+    /**
+     * Postgres only: the oldest transaction still running. Every transaction before it has committed or rolled back.
+     */
+    @Query(value = "select cast(cast(pg_snapshot_xmin(pg_current_snapshot()) as text) as bigint)", nativeQuery = true)
+    Long findOldestRunningTransaction();
+
+    /**
+     * Postgres only: the first transaction id not handed out yet.
+     */
+    @Query(value = "select cast(cast(pg_snapshot_xmax(pg_current_snapshot()) as text) as bigint)", nativeQuery = true)
+    Long findNextTransaction();
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.createdAt < :cutoff")
+    int deleteByCreatedAtBefore(Instant cutoff);
+}
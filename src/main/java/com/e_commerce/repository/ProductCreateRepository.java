@@ -0,0 +1,125 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Creates products idempotently on their natural key, brand + name.
+ * <p>
+ * On Postgres a create is a single {@code insert ... on conflict} statement that returns either the new row or the
+ * row already holding the key; concurrent creates of one key wait for each other and all return the same product.
+ * Elsewhere, and while duplicate keys keep the unique constraint from being created, the product is looked up first
+ * and saved if missing. The caller has to keep concurrent creates of one key apart then; with the constraint in place,
+ * the loser of a race fails with a {@link #isNaturalKeyViolation natural key violation}.
+ * <p>
+ * With sharding, the key is unique per shard only. A product lives on the shard of its category, so the same brand
+ * and name in categories on two shards are two products.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ProductCreateRepository {
+
+    // The no-op update makes a conflicting insert return the existing row; xmax is 0 only for a row just inserted.
+    private static final String UPSERT = "insert into product (name, brand, description, price, inventory, category_id) "
+            + "values (?, ?, ?, ?, ?, ?) "
+            + "on conflict (brand, name) do update set brand = excluded.brand "
+            + "returning id, name, brand, description, price, inventory, category_id, xmax = 0 as created, "
+            + "exists (select 1 from image i where i.product_id = product.id and not i.deleted) as has_images";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ProductRepository productRepository;
+    private volatile Boolean upsertSupported;
+
+    /**
+     * @param product A new product. It is saved unless a product with its brand and name exists.
+     * @return The saved or the existing product. If the existing one is in another category, that category only
+     * carries its id. The images are loaded unless the product was just created.
+     */
+    public Result createOrGet(Product product) {
+        if (!isUpsertSupported()) {
+            return productRepository.findFirstByBrandAndNameOrderByIdAsc(product.getBrand(), product.getName())
+                    .map(existing -> new Result(existing, false))
+                    .orElseGet(() -> {
+                        // Saving cascades to the category, which therefore has to be managed.
+                        if (product.getCategory() != null && !entityManager.contains(product.getCategory())) {
+                            product.setCategory(entityManager.find(Category.class, product.getCategory().getId()));
+                        }
+                        Product saved = productRepository.save(product);
+                        saved.setImages(new ArrayList<>());
+                        return new Result(saved, true);
+                    });
+        }
+        Category category = product.getCategory();
+        return jdbcTemplate.queryForObject(UPSERT, (row, rowNum) -> {
+            Product saved = new Product(row.getString("name"), row.getString("brand"), row.getString("description"),
+                    row.getBigDecimal("price"), row.getInt("inventory"), null);
+            saved.setId(row.getLong("id"));
+            Long categoryId = row.getObject("category_id", Long.class);
+            if (category != null && Objects.equals(category.getId(), categoryId)) {
+                saved.setCategory(category);
+            } else if (categoryId != null) {
+                Category other = new Category();
+                other.setId(categoryId);
+                saved.setCategory(other);
+            }
+            // Images are only left unloaded when there are some to load.
+            if (!row.getBoolean("has_images")) {
+                saved.setImages(new ArrayList<>());
+            }
+            return new Result(saved, row.getBoolean("created"));
+        }, product.getName(), product.getBrand(), product.getDescription(), product.getPrice(), product.getInventory(),
+                category != null ? category.getId() : null);
+    }
+
+    /**
+     * @return Whether a create is a single upsert that concurrent creates of the same key can't both insert.
+     */
+    public boolean isUpsertSupported() {
+        Boolean current = upsertSupported;
+        if (current == null) {
+            current = databasePlatform.isPostgres() && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "select exists (select 1 from pg_constraint where conname = ?)", Boolean.class, Product.NATURAL_KEY));
+            if (databasePlatform.isPostgres() && !current) {
+                log.warn("Unique constraint {} is missing, probably because of duplicate products; concurrent creates of "
+                        + "the same product may both succeed until the duplicates are removed", Product.NATURAL_KEY);
+            }
+            upsertSupported = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return Whether a write failed because another product holds the same brand and name.
+     */
+    public static boolean isNaturalKeyViolation(DataIntegrityViolationException e) {
+        // Databases report the constraint in their own case, Postgres by name, H2 by the name of its index.
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(Product.NATURAL_KEY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param created Whether the product was inserted by this call.
+     */
+    public record Result(Product product, boolean created) {
+    }
+}
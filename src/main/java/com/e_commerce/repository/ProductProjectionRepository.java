@@ -0,0 +1,127 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ImageSummary;
+import com.e_commerce.repository.projection.ProductFilter;
+import com.e_commerce.service.category.CategoryPath;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Runs product queries that select only the columns a client asked for.
+ * <p>
+ * The select list is built per request, so unrequested columns are never read. The category is joined only
+ * when it is requested or filtered on, and image metadata is loaded with one extra query only when requested.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductProjectionRepository {
+
+    private static final Set<String> SCALAR_FIELDS = Set.of("id", "name", "brand", "description", "price", "inventory");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ImageRepository imageRepository;
+
+    /**
+     * @param filter The products to select.
+     * @param fields Validated ProductDto field names, in the order they should be rendered.
+     * @return One map per product holding exactly the requested fields, keyed and ordered by product id.
+     */
+    public Map<Long, Map<String, Object>> findFields(ProductFilter filter, Set<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(product.get("id").alias("id"));
+        for (String field : fields) {
+            if (SCALAR_FIELDS.contains(field) && !field.equals("id")) {
+                selections.add(product.get(field).alias(field));
+            }
+        }
+
+        boolean needsCategory = fields.contains("category") || filter.getCategoryName() != null || filter.getCategoryPath() != null;
+        Join<Product, Category> category = needsCategory ? product.join("category", JoinType.LEFT) : null;
+        if (fields.contains("category")) {
+            selections.add(category.get("id").alias("category.id"));
+            selections.add(category.get("name").alias("category.name"));
+        }
+
+        query.multiselect(selections)
+                .where(predicates(cb, product, category, filter).toArray(Predicate[]::new))
+                .orderBy(cb.asc(product.get("id")));
+        List<Tuple> rows = entityManager.createQuery(query).getResultList();
+
+        Map<Long, List<Map<String, Object>>> imagesByProductId = fields.contains("images") && !rows.isEmpty()
+                ? findImages(rows.stream().map(row -> row.get("id", Long.class)).toList())
+                : Map.of();
+
+        Map<Long, Map<String, Object>> results = new LinkedHashMap<>();
+        for (Tuple row : rows) {
+            Long id = row.get("id", Long.class);
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (String field : fields) {
+                switch (field) {
+                    case "category" -> result.put(field, categoryOf(row));
+                    case "images" -> result.put(field, imagesByProductId.getOrDefault(id, List.of()));
+                    default -> result.put(field, row.get(field));
+                }
+            }
+            results.put(id, result);
+        }
+        return results;
+    }
+
+    private List<Predicate> predicates(CriteriaBuilder cb, Root<Product> product, Join<Product, Category> category, ProductFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getIds() != null) {
+            predicates.add(product.get("id").in(filter.getIds()));
+        }
+        if (filter.getName() != null) {
+            predicates.add(cb.equal(product.get("name"), filter.getName()));
+        }
+        if (filter.getBrand() != null) {
+            predicates.add(cb.equal(product.get("brand"), filter.getBrand()));
+        }
+        if (filter.getCategoryName() != null) {
+            predicates.add(cb.equal(category.get("name"), filter.getCategoryName()));
+        }
+        if (filter.getCategoryPath() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(category.get("path"), filter.getCategoryPath()));
+            predicates.add(cb.lessThan(category.get("path"), CategoryPath.upperBound(filter.getCategoryPath())));
+        }
+        return predicates;
+    }
+
+    private static Map<String, Object> categoryOf(Tuple row) {
+        Long categoryId = row.get("category.id", Long.class);
+        if (categoryId == null) {
+            return null;
+        }
+        Map<String, Object> category = new LinkedHashMap<>();
+        category.put("id", categoryId);
+        category.put("name", row.get("category.name"));
+        return category;
+    }
+
+    private Map<Long, List<Map<String, Object>>> findImages(List<Long> productIds) {
+        Map<Long, List<Map<String, Object>>> imagesByProductId = new HashMap<>();
+        for (ImageSummary image : imageRepository.findSummariesByProductIdIn(productIds)) {
+            Map<String, Object> imageFields = new LinkedHashMap<>();
+            imageFields.put("id", image.getId());
+            imageFields.put("fileName", image.getFileName());
+            imageFields.put("downloadUrl", image.getDownloadUrl());
+            imagesByProductId.computeIfAbsent(image.getProductId(), id -> new ArrayList<>()).add(imageFields);
+        }
+        return imagesByProductId;
+    }
+}
@@ -1,11 +1,14 @@
 package com.e_commerce.repository;
 
 import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ProductStatsRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -20,4 +23,18 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByBrandAndName(String brandName, String productName);
 
     Long countByBrandAndName(String brandName, String productName);
+
+    boolean existsByCategoryId(Long categoryId);
+
+    Optional<Product> findFirstByBrandAndNameOrderByIdAsc(String brandName, String productName);
+
+    List<Product> findByBrandInAndNameIn(Collection<String> brandNames, Collection<String> productNames);
+
+    @Query("select p from Product p join p.category c where c.path >= :lowerPath and c.path < :upperPath")
+    List<Product> findByCategoryPathRange(String lowerPath, String upperPath);
+
+    @Query("select c.id as categoryId, p.brand as brand, p.name as name, count(p) as productCount, " +
+            "coalesce(sum(p.inventory), 0) as inventoryTotal, sum(p.price) as priceTotal, count(p.price) as pricedCount " +
+            "from Product p left join p.category c group by c.id, p.brand, p.name")
+    List<ProductStatsRow> aggregateStats();
 }
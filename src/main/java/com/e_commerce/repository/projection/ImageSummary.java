@@ -0,0 +1,11 @@
+package com.e_commerce.repository.projection;
+
+/**
+ * Image metadata without the image bytes.
+ */
+public interface ImageSummary {
+    Long getId();
+    String getFileName();
+    String getDownloadUrl();
+    Long getProductId();
+}
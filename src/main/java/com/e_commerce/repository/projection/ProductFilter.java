@@ -0,0 +1,101 @@
+package com.e_commerce.repository.projection;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Criteria of a projected product query. Unset criteria don't restrict the result.
+ */
+@Data
+public class ProductFilter {
+    private List<Long> ids;
+    private String name;
+    private String brand;
+    private String categoryName;
+
+    /**
+     * Name of a category; matches products anywhere in its subtree. Resolved to {@link #categoryPath} by the service.
+     */
+    private String categoryTree;
+
+    /**
+     * Materialized path of a category; matches products anywhere in its subtree.
+     */
+    private String categoryPath;
+
+    /**
+     * @return A copy of this filter restricted to the subtree at the given path; this filter is left unchanged.
+     */
+    public ProductFilter withCategoryPath(String categoryPath) {
+        ProductFilter filter = copy();
+        filter.setCategoryPath(categoryPath);
+        return filter;
+    }
+
+    /**
+     * @return A copy of this filter restricted to the given ids; this filter is left unchanged.
+     */
+    public ProductFilter withIds(List<Long> ids) {
+        ProductFilter filter = copy();
+        filter.setIds(ids);
+        return filter;
+    }
+
+    private ProductFilter copy() {
+        ProductFilter filter = new ProductFilter();
+        filter.setIds(ids);
+        filter.setName(name);
+        filter.setBrand(brand);
+        filter.setCategoryName(categoryName);
+        filter.setCategoryTree(categoryTree);
+        filter.setCategoryPath(categoryPath);
+        return filter;
+    }
+
+    public static ProductFilter all() {
+        return new ProductFilter();
+    }
+
+    public static ProductFilter byIds(List<Long> ids) {
+        ProductFilter filter = new ProductFilter();
+        filter.setIds(ids);
+        return filter;
+    }
+
+    public static ProductFilter byName(String name) {
+        ProductFilter filter = new ProductFilter();
+        filter.setName(name);
+        return filter;
+    }
+
+    public static ProductFilter byBrand(String brand) {
+        ProductFilter filter = new ProductFilter();
+        filter.setBrand(brand);
+        return filter;
+    }
+
+    public static ProductFilter byCategory(String categoryName) {
+        ProductFilter filter = new ProductFilter();
+        filter.setCategoryName(categoryName);
+        return filter;
+    }
+
+    public static ProductFilter byCategoryAndBrand(String categoryName, String brand) {
+        ProductFilter filter = byCategory(categoryName);
+        filter.setBrand(brand);
+        return filter;
+    }
+
+    public static ProductFilter byBrandAndName(String brand, String name) {
+        ProductFilter filter = byBrand(brand);
+        filter.setName(name);
+        return filter;
+    }
+
+    public static ProductFilter byCategoryTree(String categoryName) {
+        ProductFilter filter = new ProductFilter();
+        filter.setCategoryTree(categoryName);
+        return filter;
+    }
+}
@@ -0,0 +1,16 @@
+package com.e_commerce.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Product totals of one (category, brand, name) group.
+ */
+public interface ProductStatsRow {
+    Long getCategoryId();
+    String getBrand();
+    String getName();
+    long getProductCount();
+    long getInventoryTotal();
+    BigDecimal getPriceTotal();
+    long getPricedCount();
+}
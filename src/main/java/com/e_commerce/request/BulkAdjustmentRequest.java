@@ -0,0 +1,22 @@
+package com.e_commerce.request;
+
+import com.e_commerce.model.BulkAdjustmentJob.Operation;
+import com.e_commerce.model.BulkAdjustmentJob.Target;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * A price or inventory change for all products of a brand and/or category, e.g. raise the prices of one brand in
+ * one category by 4% ending in .99: target PRICE, operation PERCENT, amount 4, endingIn 0.99.
+ */
+@Data
+public class BulkAdjustmentRequest {
+    private String brand;
+    private String category;
+    private boolean includeSubcategories;
+    private Target target;
+    private Operation operation;
+    private BigDecimal amount;
+    private BigDecimal endingIn;
+}
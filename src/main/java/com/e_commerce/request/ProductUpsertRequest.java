@@ -0,0 +1,21 @@
+package com.e_commerce.request;
+
+import com.e_commerce.model.Category;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One entry of a batch upsert: updates the product with the given id. Without an id, it updates the product with the
+ * same brand and name, or creates one when there is none.
+ */
+@Data
+public class ProductUpsertRequest {
+    private Long id;
+    private String name;
+    private String brand;
+    private String description;
+    private BigDecimal price;
+    private int inventory;
+    private Category category;
+}
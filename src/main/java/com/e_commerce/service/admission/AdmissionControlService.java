@@ -0,0 +1,153 @@
+package com.e_commerce.service.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a request may enter the application: first against the caller's token bucket, then against
+ * the bulkhead of the endpoint class it targets. Rejections are immediate and carry a retry hint.
+ */
+@Service
+@RequiredArgsConstructor
+public class AdmissionControlService {
+
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+
+    @Value("${admission.rate-limit.permits-per-second:50}")
+    private double permitsPerSecond;
+
+    @Value("${admission.rate-limit.burst:100}")
+    private int burst;
+
+    @Value("${admission.bulkhead.heavy.max-concurrent:8}")
+    private int heavyMaxConcurrent;
+
+    @Value("${admission.bulkhead.standard.max-concurrent:64}")
+    private int standardMaxConcurrent;
+
+    @Value("${admission.bulkhead.heavy.endpoints:}")
+    private List<String> heavyEndpoints;
+
+    @Value("${admission.bulkhead.exempt-paths:}")
+    private List<String> exemptPaths;
+
+    private Bulkhead heavyBulkhead;
+    private Bulkhead standardBulkhead;
+    private Counter admitted;
+    private Counter rateLimited;
+    private Counter heavyRejected;
+    private Counter standardRejected;
+
+    @PostConstruct
+    void registerMeters() {
+        heavyBulkhead = new Bulkhead("heavy", heavyMaxConcurrent);
+        standardBulkhead = new Bulkhead("standard", standardMaxConcurrent);
+        for (Bulkhead bulkhead : List.of(heavyBulkhead, standardBulkhead)) {
+            Gauge.builder("admission.bulkhead.in_use", bulkhead, Bulkhead::getInUse)
+                    .tag("bulkhead", bulkhead.getName()).register(meterRegistry);
+            Gauge.builder("admission.bulkhead.max_concurrent", bulkhead, Bulkhead::getMaxConcurrent)
+                    .tag("bulkhead", bulkhead.getName()).register(meterRegistry);
+        }
+        Gauge.builder("admission.rate_limit.clients", clientBuckets, Map::size).register(meterRegistry);
+        admitted = meterRegistry.counter("admission.requests", "outcome", "admitted");
+        rateLimited = meterRegistry.counter("admission.requests", "outcome", "rate_limited");
+        heavyRejected = meterRegistry.counter("admission.requests", "outcome", "bulkhead_full", "bulkhead", "heavy");
+        standardRejected = meterRegistry.counter("admission.requests", "outcome", "bulkhead_full", "bulkhead", "standard");
+    }
+
+    /**
+     * Admits or rejects a request.
+     *
+     * @param clientId The key of the caller's token bucket.
+     * @param method The HTTP method of the request.
+     * @param path The request path without the servlet context path.
+     * @return The decision; an admitted decision holding a bulkhead must be passed to {@link #release}.
+     */
+    public Decision admit(String clientId, String method, String path) {
+        long now = System.nanoTime();
+        long waitNanos = clientBuckets
+                .computeIfAbsent(clientId, id -> new TokenBucket(permitsPerSecond, burst, now))
+                .tryAcquire(now);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            return Decision.rejected(Rejection.RATE_LIMITED, retryAfterSeconds(waitNanos));
+        }
+        if (isExempt(path)) {
+            admitted.increment();
+            return Decision.admitted(null);
+        }
+        boolean heavy = isHeavy(method, path);
+        Bulkhead bulkhead = heavy ? heavyBulkhead : standardBulkhead;
+        if (!bulkhead.tryEnter()) {
+            (heavy ? heavyRejected : standardRejected).increment();
+            return Decision.rejected(Rejection.BULKHEAD_FULL, 1);
+        }
+        admitted.increment();
+        return Decision.admitted(bulkhead);
+    }
+
+    public void release(Decision decision) {
+        if (decision.bulkhead() != null) {
+            decision.bulkhead().exit();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${admission.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleClients() {
+        long now = System.nanoTime();
+        clientBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    private boolean isHeavy(String method, String path) {
+        for (String endpoint : heavyEndpoints) {
+            int separator = endpoint.indexOf(' ');
+            String endpointMethod = endpoint.substring(0, separator);
+            String endpointPattern = endpoint.substring(separator + 1).trim();
+            if (endpointMethod.equalsIgnoreCase(method) && pathMatcher.match(endpointPattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExempt(String path) {
+        for (String pattern : exemptPaths) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    public enum Rejection {
+        RATE_LIMITED, BULKHEAD_FULL
+    }
+
+    public record Decision(boolean isAdmitted, Bulkhead bulkhead, Rejection rejection, long retryAfterSeconds) {
+        static Decision admitted(Bulkhead bulkhead) {
+            return new Decision(true, bulkhead, null, 0);
+        }
+
+        static Decision rejected(Rejection rejection, long retryAfterSeconds) {
+            return new Decision(false, null, rejection, retryAfterSeconds);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.e_commerce.service.admission;
+
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of requests of one endpoint class that may run at the same time. Callers never wait for a
+ * permit: a full bulkhead rejects immediately so excess load is shed instead of queued.
+ */
+public final class Bulkhead {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrent) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public boolean tryEnter() {
+        return permits.tryAcquire();
+    }
+
+    public void exit() {
+        permits.release();
+    }
+
+    public int getInUse() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
@@ -0,0 +1,101 @@
+package com.e_commerce.service.admission;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The addresses of reverse proxies whose forwarding headers are believed, given as single addresses or CIDR ranges.
+ */
+public final class TrustedProxies {
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9A-Fa-f:.]+");
+
+    private final List<Range> ranges;
+
+    private TrustedProxies(List<Range> ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * @param entries Addresses like {@code 10.1.2.3} or ranges like {@code 10.0.0.0/8}; blank entries are ignored.
+     * @throws IllegalArgumentException if an entry isn't an IP address or range.
+     */
+    public static TrustedProxies of(List<String> entries) {
+        List<Range> ranges = new ArrayList<>();
+        for (String entry : entries) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int slash = trimmed.indexOf('/');
+            byte[] address = parse(slash < 0 ? trimmed : trimmed.substring(0, slash));
+            if (address == null) {
+                throw new IllegalArgumentException("Not an IP address or range: " + trimmed);
+            }
+            int prefix = slash < 0 ? address.length * 8 : Integer.parseInt(trimmed.substring(slash + 1));
+            if (prefix < 0 || prefix > address.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix length in " + trimmed);
+            }
+            ranges.add(new Range(address, prefix));
+        }
+        return new TrustedProxies(ranges);
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * @return Whether the address is an IP address inside one of the ranges. Anything else, including host names,
+     * is not trusted and never resolved.
+     */
+    public boolean contains(String address) {
+        if (ranges.isEmpty() || address == null) {
+            return false;
+        }
+        byte[] bytes = parse(address.trim());
+        if (bytes == null) {
+            return false;
+        }
+        for (Range range : ranges) {
+            if (range.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] parse(String address) {
+        if (!IP_LITERAL.matcher(address).matches()) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private record Range(byte[] address, int prefix) {
+        boolean contains(byte[] other) {
+            if (other.length != address.length) {
+                return false;
+            }
+            int fullBytes = prefix / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (other[i] != address[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefix % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (other[fullBytes] & mask) == (address[fullBytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.e_commerce.service.bulk;
+
+import com.e_commerce.dto.BulkAdjustmentJobDto;
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.exceptions.BulkAdjustmentJobNotFoundException;
+import com.e_commerce.exceptions.CategoryNotFoundException;
+import com.e_commerce.model.BulkAdjustmentChunk;
+import com.e_commerce.model.BulkAdjustmentJob;
+import com.e_commerce.model.BulkAdjustmentJob.Operation;
+import com.e_commerce.model.BulkAdjustmentJob.Status;
+import com.e_commerce.model.BulkAdjustmentJob.Target;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.OutboxEvent.ChangeType;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.BulkAdjustmentChunkRepository;
+import com.e_commerce.repository.BulkAdjustmentJobRepository;
+import com.e_commerce.request.BulkAdjustmentRequest;
+import com.e_commerce.service.category.CategoryPath;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.outbox.IOutboxService;
+import com.e_commerce.service.sharding.ShardRouter;
+import com.e_commerce.service.stats.ICatalogStatsService;
+import com.e_commerce.service.stats.ProductFacts;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies price and inventory adjustments to many products at once.
+ * <p>
+ * A job's matching ids are cut into ranges of {@code chunk-size} products when it is submitted. The chunks then run
+ * in parallel on a fork-join pool, each as one transaction that claims the chunk, applies the adjustment with one
+ * set-based update, records an outbox event per product and marks the chunk done. A crash therefore leaves every
+ * chunk applied either fully or not at all, and resuming the job, which happens at startup for jobs left running,
+ * only applies the rest. The claim also keeps two nodes resuming the same job from applying a chunk twice.
+ * <p>
+ * The filter is evaluated again when a chunk runs, so products moved out of the filter in the meantime are left
+ * alone, and products added after submission aren't adjusted. Not supported on a sharded catalog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkAdjustmentService implements IBulkAdjustmentService {
+
+    private static final String PRODUCT_COLUMNS = "id, name, brand, price, inventory, category_id";
+    private static final RowMapper<ProductRow> PRODUCT_ROW = (row, rowNum) -> new ProductRow(row.getLong("id"),
+            row.getString("name"), row.getString("brand"), row.getBigDecimal("price"), row.getInt("inventory"),
+            row.getObject("category_id", Long.class));
+
+    private final BulkAdjustmentJobRepository jobRepository;
+    private final BulkAdjustmentChunkRepository chunkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CategoryTreeCache categoryTreeCache;
+    private final IOutboxService outboxService;
+    private final ICatalogStatsService catalogStatsService;
+    private final ShardRouter shardRouter;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final Set<Long> rerun = ConcurrentHashMap.newKeySet();
+    private ForkJoinPool pool;
+
+    @Value("${catalog.bulk-adjustment.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${catalog.bulk-adjustment.parallelism:4}")
+    private int parallelism;
+
+    @Value("${catalog.bulk-adjustment.max-attempts:3}")
+    private int maxAttempts;
+
+    @PostConstruct
+    void startPool() {
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("bulk-adjustment-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    void stopPool() throws InterruptedException {
+        // Chunks still running roll back when their connection goes away and are applied on resume.
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Picks up the jobs that were running when the application stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        if (shardRouter.isSharded()) {
+            return;
+        }
+        for (BulkAdjustmentJob job : jobRepository.findByStatus(Status.RUNNING)) {
+            log.info("Resuming bulk adjustment job {}", job.getId());
+            start(job.getId());
+        }
+    }
+
+    @Override
+    public BulkAdjustmentJobDto submit(BulkAdjustmentRequest request) {
+        if (shardRouter.isSharded()) {
+            throw new IllegalStateException("Bulk adjustments are not supported on a sharded catalog");
+        }
+        BulkAdjustmentJob job = toJob(request);
+        BulkAdjustmentJob saved = transactionTemplate.execute(status -> {
+            jobRepository.save(job);
+            List<BulkAdjustmentChunk> chunks = cutChunks(job.getId(), filterOf(job));
+            chunkRepository.saveAll(chunks);
+            job.setTotalChunks(chunks.size());
+            if (chunks.isEmpty()) {
+                job.setStatus(Status.COMPLETED);
+                job.setFinishedAt(Instant.now());
+            }
+            return jobRepository.save(job);
+        });
+        log.info("Submitted bulk adjustment job {} with {} chunks", saved.getId(), saved.getTotalChunks());
+        if (saved.getStatus() == Status.RUNNING) {
+            start(saved.getId());
+        }
+        return getJob(saved.getId());
+    }
+
+    @Override
+    public BulkAdjustmentJobDto getJob(Long jobId) {
+        BulkAdjustmentJob job = findJob(jobId);
+        return toDto(job, chunkRepository.findByJobIdOrderByFromIdAsc(jobId), true);
+    }
+
+    @Override
+    public List<BulkAdjustmentJobDto> getRecentJobs(int limit) {
+        return jobRepository.findAllByOrderByIdDesc(Limit.of(limit)).stream()
+                .map(job -> toDto(job, chunkRepository.findByJobIdOrderByFromIdAsc(job.getId()), false))
+                .toList();
+    }
+
+    @Override
+    public BulkAdjustmentJobDto resume(Long jobId) {
+        BulkAdjustmentJob job = findJob(jobId);
+        if (job.getStatus() == Status.COMPLETED) {
+            throw new IllegalStateException("Bulk adjustment job " + jobId + " has already completed");
+        }
+        // Marked running here, so the caller never sees the old status of a job that is about to run.
+        transactionTemplate.executeWithoutResult(status -> {
+            BulkAdjustmentJob current = findJob(jobId);
+            current.setStatus(Status.RUNNING);
+            current.setError(null);
+            current.setFinishedAt(null);
+            jobRepository.save(current);
+        });
+        start(jobId);
+        return getJob(jobId);
+    }
+
+    private BulkAdjustmentJob findJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new BulkAdjustmentJobNotFoundException("Bulk adjustment job " + jobId + " not found"));
+    }
+
+    private BulkAdjustmentJob toJob(BulkAdjustmentRequest request) {
+        if (request.getTarget() == null || request.getOperation() == null || request.getAmount() == null) {
+            throw new IllegalArgumentException("target, operation and amount are required");
+        }
+        if (request.getBrand() == null && request.getCategory() == null) {
+            throw new IllegalArgumentException("A brand or a category is required");
+        }
+        if (request.getOperation() == Operation.SET && request.getAmount().signum() < 0) {
+            throw new IllegalArgumentException("A price or inventory can't be set to a negative amount");
+        }
+        if (request.getOperation() == Operation.PERCENT && request.getAmount().compareTo(BigDecimal.valueOf(-100)) < 0) {
+            throw new IllegalArgumentException("A percentage can't reduce by more than 100%");
+        }
+        BigDecimal endingIn = request.getEndingIn();
+        if (endingIn != null && (request.getTarget() != Target.PRICE || endingIn.signum() < 0
+                || endingIn.compareTo(BigDecimal.ONE) >= 0 || endingIn.stripTrailingZeros().scale() > 2)) {
+            throw new IllegalArgumentException("endingIn must be cents between 0.00 and 0.99 and only applies to prices");
+        }
+        BulkAdjustmentJob job = new BulkAdjustmentJob();
+        job.setBrand(request.getBrand());
+        if (request.getCategory() != null) {
+            CategoryNodeDto category = categoryTreeCache.findByName(request.getCategory())
+                    .orElseThrow(() -> new CategoryNotFoundException("Category " + request.getCategory() + " not found"));
+            job.setCategoryId(category.getId());
+            job.setIncludeSubcategories(request.isIncludeSubcategories());
+        }
+        job.setTarget(request.getTarget());
+        job.setOperation(request.getOperation());
+        job.setAmount(request.getAmount());
+        job.setEndingIn(endingIn);
+        job.setStatus(Status.RUNNING);
+        job.setCreatedAt(Instant.now());
+        return job;
+    }
+
+    /**
+     * Streams the matching ids and cuts them into chunks of {@code chunk-size} products each.
+     */
+    private List<BulkAdjustmentChunk> cutChunks(Long jobId, Filter filter) {
+        List<BulkAdjustmentChunk> chunks = new ArrayList<>();
+        long[] current = new long[3];
+        jdbcTemplate.query("select id from product where " + filter.where() + " order by id", (RowCallbackHandler) row -> {
+            long id = row.getLong(1);
+            if (current[2] == 0) {
+                current[0] = id;
+            }
+            current[1] = id;
+            if (++current[2] == chunkSize) {
+                chunks.add(new BulkAdjustmentChunk(jobId, current[0], current[1]));
+                current[2] = 0;
+            }
+        }, filter.args(0, Long.MAX_VALUE));
+        if (current[2] > 0) {
+            chunks.add(new BulkAdjustmentChunk(jobId, current[0], current[1]));
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs the job, or has its running task run it once more when it is still winding down, so a resume right
+     * after a job finished is never lost.
+     */
+    private void start(Long jobId) {
+        rerun.add(jobId);
+        if (running.add(jobId)) {
+            rerun.remove(jobId);
+            pool.execute(new JobTask(jobId));
+        }
+    }
+
+    /**
+     * Applies one chunk in its own transaction.
+     *
+     * @return Whether the chunk was applied here; false if it was already done.
+     */
+    private boolean applyChunk(BulkAdjustmentJob job, Filter filter, BulkAdjustmentChunk chunk) {
+        long start = System.nanoTime();
+        Boolean applied = transactionTemplate.execute(status -> {
+            // Claiming the chunk locks it until this transaction ends, so nobody else applies it concurrently.
+            if (jdbcTemplate.update("update bulk_adjustment_chunk set attempts = attempts + 1 where id = ? and done = false",
+                    chunk.getId()) == 0) {
+                return false;
+            }
+            Object[] range = filter.args(chunk.getFromId(), chunk.getToId());
+            List<ProductRow> before = jdbcTemplate.query("select " + PRODUCT_COLUMNS + " from product where "
+                    + filter.where() + " order by id for update", PRODUCT_ROW, range);
+            if (!before.isEmpty()) {
+                Adjustment adjustment = Adjustment.of(job);
+                Object[] args = new Object[adjustment.args().length + range.length];
+                System.arraycopy(adjustment.args(), 0, args, 0, adjustment.args().length);
+                System.arraycopy(range, 0, args, adjustment.args().length, range.length);
+                jdbcTemplate.update("update product set " + adjustment.assignment() + " where " + filter.where(), args);
+                List<ProductRow> after = jdbcTemplate.query("select " + PRODUCT_COLUMNS + " from product where "
+                        + filter.where() + " order by id", PRODUCT_ROW, range);
+                List<Long> eventIds = outboxService.recordProductChanges(after.stream().map(ProductRow::toProduct).toList(),
+                        ChangeType.UPDATED);
+                Map<Long, ProductRow> previous = before.stream().collect(Collectors.toMap(ProductRow::id, Function.identity()));
+                for (int i = 0; i < after.size(); i++) {
+                    ProductRow row = after.get(i);
+                    ProductRow old = previous.get(row.id());
+                    catalogStatsService.recordChange(old != null ? old.facts() : null, row.facts(), eventIds.get(i));
+                }
+            }
+            jdbcTemplate.update("update bulk_adjustment_chunk set done = true, rows_updated = ?, millis = ?, finished_at = ?, "
+                            + "error = null where id = ?", before.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Timestamp.from(Instant.now()), chunk.getId());
+            return true;
+        });
+        return Boolean.TRUE.equals(applied);
+    }
+
+    private void recordChunkFailure(BulkAdjustmentChunk chunk, RuntimeException e) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                    "update bulk_adjustment_chunk set attempts = attempts + 1, error = ? where id = ?",
+                    String.valueOf(e.getMessage()), chunk.getId()));
+        } catch (RuntimeException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+    }
+
+    private void finish(Long jobId, String error) {
+        transactionTemplate.executeWithoutResult(status -> {
+            BulkAdjustmentJob job = findJob(jobId);
+            List<BulkAdjustmentChunk> pending = chunkRepository.findByJobIdAndDoneFalseOrderByFromIdAsc(jobId);
+            if (error == null && pending.isEmpty()) {
+                job.setStatus(Status.COMPLETED);
+                job.setError(null);
+            } else {
+                job.setStatus(Status.FAILED);
+                job.setError(error != null ? error : pending.size() + " chunks failed, resume the job to retry them");
+            }
+            job.setFinishedAt(Instant.now());
+            jobRepository.save(job);
+            log.info("Bulk adjustment job {} {}", jobId, job.getStatus() == Status.COMPLETED ? "completed" : "failed: " + job.getError());
+        });
+    }
+
+    private Filter filterOf(BulkAdjustmentJob job) {
+        String categoryPath = null;
+        if (job.getCategoryId() != null && job.isIncludeSubcategories()) {
+            categoryPath = categoryTreeCache.findById(job.getCategoryId()).map(CategoryNodeDto::getPath)
+                    .orElseThrow(() -> new CategoryNotFoundException("Category " + job.getCategoryId() + " no longer exists"));
+        }
+        return new Filter(job.getBrand(), job.getCategoryId(), categoryPath);
+    }
+
+    private static BulkAdjustmentJobDto toDto(BulkAdjustmentJob job, List<BulkAdjustmentChunk> chunks, boolean withChunks) {
+        int completed = 0;
+        long rows = 0;
+        long slowest = 0;
+        for (BulkAdjustmentChunk chunk : chunks) {
+            if (chunk.isDone()) {
+                completed++;
+                rows += chunk.getRowsUpdated();
+                slowest = Math.max(slowest, chunk.getMillis());
+            }
+        }
+        List<BulkAdjustmentJobDto.Chunk> chunkDtos = withChunks ? chunks.stream()
+                .map(chunk -> new BulkAdjustmentJobDto.Chunk(chunk.getFromId(), chunk.getToId(), chunk.isDone(),
+                        chunk.getRowsUpdated(), chunk.getMillis(), chunk.getAttempts(), chunk.getError()))
+                .toList() : null;
+        return new BulkAdjustmentJobDto(job.getId(), job.getStatus(), job.getBrand(), job.getCategoryId(),
+                job.isIncludeSubcategories(), job.getTarget(), job.getOperation(), job.getAmount(), job.getEndingIn(),
+                job.getTotalChunks(), completed, rows, slowest, job.getCreatedAt(), job.getStartedAt(),
+                job.getFinishedAt(), job.getError(), chunkDtos);
+    }
+
+    /**
+     * Runs the chunks of one job that aren't done yet and then records the outcome.
+     */
+    private final class JobTask extends RecursiveAction {
+        private final Long jobId;
+
+        private JobTask(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        protected void compute() {
+            String error = null;
+            try {
+                BulkAdjustmentJob job = transactionTemplate.execute(status -> {
+                    BulkAdjustmentJob current = findJob(jobId);
+                    current.setStatus(Status.RUNNING);
+                    current.setError(null);
+                    current.setFinishedAt(null);
+                    if (current.getStartedAt() == null) {
+                        current.setStartedAt(Instant.now());
+                    }
+                    return jobRepository.save(current);
+                });
+                Filter filter = filterOf(job);
+                List<BulkAdjustmentChunk> pending = chunkRepository.findByJobIdAndDoneFalseOrderByFromIdAsc(jobId);
+                if (!pending.isEmpty()) {
+                    new ChunkTask(job, filter, pending, 0, pending.size()).invoke();
+                }
+            } catch (RuntimeException e) {
+                log.error("Bulk adjustment job {} failed", jobId, e);
+                error = String.valueOf(e.getMessage());
+            } finally {
+                try {
+                    // A job cut short by a shutdown stays running and is resumed at the next startup.
+                    if (error != null || !pool.isShutdown()) {
+                        finish(jobId, error);
+                    }
+                } finally {
+                    running.remove(jobId);
+                    if (rerun.remove(jobId) && !pool.isShutdown()) {
+                        start(jobId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a run of chunks in halves until each task holds one chunk.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private final BulkAdjustmentJob job;
+        private final Filter filter;
+        private final List<BulkAdjustmentChunk> chunks;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(BulkAdjustmentJob job, Filter filter, List<BulkAdjustmentChunk> chunks, int from, int to) {
+            this.job = job;
+            this.filter = filter;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(job, filter, chunks, from, middle), new ChunkTask(job, filter, chunks, middle, to));
+                return;
+            }
+            BulkAdjustmentChunk chunk = chunks.get(from);
+            for (int attempt = 1; attempt <= maxAttempts && !pool.isShutdown(); attempt++) {
+                try {
+                    applyChunk(job, filter, chunk);
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Chunk [{}, {}] of bulk adjustment job {} failed on attempt {}", chunk.getFromId(),
+                            chunk.getToId(), job.getId(), attempt, e);
+                    recordChunkFailure(chunk, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The products a job applies to, restricted to one chunk's id range by the first two arguments.
+     */
+    private record Filter(String brand, Long categoryId, String categoryPath) {
+
+        String where() {
+            StringBuilder where = new StringBuilder("id between ? and ?");
+            if (brand != null) {
+                where.append(" and brand = ?");
+            }
+            if (categoryPath != null) {
+                where.append(" and category_id in (select c.id from category c where c.path >= ? and c.path < ?)");
+            } else if (categoryId != null) {
+                where.append(" and category_id = ?");
+            }
+            return where.toString();
+        }
+
+        Object[] args(long fromId, long toId) {
+            List<Object> args = new ArrayList<>(List.of(fromId, toId));
+            if (brand != null) {
+                args.add(brand);
+            }
+            if (categoryPath != null) {
+                args.add(categoryPath);
+                args.add(CategoryPath.upperBound(categoryPath));
+            } else if (categoryId != null) {
+                args.add(categoryId);
+            }
+            return args.toArray();
+        }
+    }
+
+    /**
+     * The SQL assignment of a job's adjustment. Prices are rounded to the cent, or down to the whole amount plus
+     * {@code endingIn}; inventories to whole units. Neither goes below zero.
+     */
+    private record Adjustment(String assignment, Object[] args) {
+
+        static Adjustment of(BulkAdjustmentJob job) {
+            String column = job.getTarget() == Target.PRICE ? "price" : "inventory";
+            String value = switch (job.getOperation()) {
+                case SET -> "?";
+                case ADD -> column + " + ?";
+                case PERCENT -> column + " * (100 + ?) / 100";
+            };
+            if (job.getTarget() == Target.INVENTORY) {
+                return new Adjustment("inventory = greatest(cast(round(" + value + ", 0) as integer), 0)",
+                        new Object[]{job.getAmount()});
+            }
+            if (job.getEndingIn() != null) {
+                return new Adjustment("price = greatest(floor(" + value + ") + ?, 0)",
+                        new Object[]{job.getAmount(), job.getEndingIn()});
+            }
+            return new Adjustment("price = greatest(round(" + value + ", 2), 0)", new Object[]{job.getAmount()});
+        }
+    }
+
+    private record ProductRow(long id, String name, String brand, BigDecimal price, int inventory, Long categoryId) {
+
+        ProductFacts facts() {
+            return new ProductFacts(categoryId, brand, name, price, inventory);
+        }
+
+        Product toProduct() {
+            Category category = null;
+            if (categoryId != null) {
+                category = new Category();
+                category.setId(categoryId);
+            }
+            Product product = new Product(name, brand, null, price, inventory, category);
+            product.setId(id);
+            return product;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.e_commerce.service.bulk;
+
+import com.e_commerce.dto.BulkAdjustmentJobDto;
+import com.e_commerce.request.BulkAdjustmentRequest;
+
+import java.util.List;
+
+public interface IBulkAdjustmentService {
+
+    /**
+     * Splits the matching products into chunks and starts applying the adjustment in the background.
+     * @return The job, with its chunks.
+     * @throws IllegalArgumentException if the adjustment is incomplete or out of range.
+     * @throws com.e_commerce.exceptions.CategoryNotFoundException if the category doesn't exist.
+     * @throws IllegalStateException if the catalog is sharded.
+     */
+    BulkAdjustmentJobDto submit(BulkAdjustmentRequest request);
+
+    /**
+     * @return The job with the progress and timing of each chunk.
+     * @throws com.e_commerce.exceptions.BulkAdjustmentJobNotFoundException if there is no such job.
+     */
+    BulkAdjustmentJobDto getJob(Long jobId);
+
+    /**
+     * @return The most recently submitted jobs, newest first, without their chunks.
+     */
+    List<BulkAdjustmentJobDto> getRecentJobs(int limit);
+
+    /**
+     * Applies the chunks of a failed or interrupted job that aren't done yet. Chunks already applied are skipped.
+     * @return The job, with its chunks.
+     * @throws com.e_commerce.exceptions.BulkAdjustmentJobNotFoundException if there is no such job.
+     * @throws IllegalStateException if the job has already completed.
+     */
+    BulkAdjustmentJobDto resume(Long jobId);
+}
@@ -0,0 +1,37 @@
+package com.e_commerce.service.category;
+
+/**
+ * Builds materialized category paths.
+ * <p>
+ * A path is the concatenation of zero-padded, fixed-width ids from the root down. Because paths hold digits only,
+ * they sort the same under every database collation, and the subtree of a category is exactly the half-open
+ * range {@code [path, upperBound(path))}.
+ */
+public final class CategoryPath {
+
+    static final int SEGMENT_WIDTH = 12;
+
+    private CategoryPath() {
+    }
+
+    public static String of(String parentPath, Long id) {
+        return (parentPath != null ? parentPath : "") + segment(id);
+    }
+
+    /**
+     * Returns the smallest path that sorts after every path in the subtree rooted at {@code path}.
+     */
+    public static String upperBound(String path) {
+        int lastSegment = path.length() - SEGMENT_WIDTH;
+        long id = Long.parseLong(path.substring(lastSegment));
+        return path.substring(0, lastSegment) + segment(id + 1);
+    }
+
+    public static int depth(String path) {
+        return path.length() / SEGMENT_WIDTH - 1;
+    }
+
+    private static String segment(long id) {
+        return String.format("%0" + SEGMENT_WIDTH + "d", id);
+    }
+}
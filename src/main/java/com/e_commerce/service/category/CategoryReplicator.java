@@ -0,0 +1,146 @@
+package com.e_commerce.service.category;
+
+import com.e_commerce.model.CategoryReplication;
+import com.e_commerce.repository.CategoryReplicationRepository;
+import com.e_commerce.service.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the category table identical on every shard, so products can join their category locally.
+ * <p>
+ * A category is written on one shard and copied to the others once that transaction commits, with the same id.
+ * Category ids are striped like all others, so categories created on different shards never collide. Without
+ * sharding nothing is copied.
+ * <p>
+ * Every copy is first recorded as a {@link CategoryReplication} row in the transaction of the change, and the row
+ * is removed once the target shard has the change. Copies that fail, or that were cut short by a restart, are
+ * retried periodically from these rows, each on its own so one that keeps failing doesn't hold up the others. A
+ * retry reads the source rows again, so it copies the categories as they are by then.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryReplicator {
+
+    private final ShardRouter shardRouter;
+    private final CategoryReplicationRepository categoryReplicationRepository;
+
+    /**
+     * Copies the category at the given path and all of its descendants to the other shards after the commit.
+     */
+    public void replicateAfterCommit(String path) {
+        if (shardRouter.isSharded() && path != null) {
+            record(path, null);
+        }
+    }
+
+    /**
+     * Deletes the category from the other shards after the commit.
+     */
+    public void removeAfterCommit(Long id) {
+        if (shardRouter.isSharded()) {
+            record(null, id);
+        }
+    }
+
+    /**
+     * Applies the copies still pending on every shard, oldest first.
+     */
+    @Scheduled(initialDelayString = "${catalog.sharding.category-repair-interval-ms:30000}",
+            fixedDelayString = "${catalog.sharding.category-repair-interval-ms:30000}")
+    public void repair() {
+        if (!shardRouter.isSharded()) {
+            return;
+        }
+        for (int origin = 0; origin < shardRouter.getShardCount(); origin++) {
+            List<CategoryReplication> pending = new JdbcTemplate(shardRouter.dataSource(origin)).query(
+                    "select id, target_shard, path, deleted_category_id, attempts from category_replication order by id",
+                    (row, rowNum) -> {
+                        CategoryReplication change = new CategoryReplication(row.getInt("target_shard"),
+                                row.getString("path"), row.getObject("deleted_category_id", Long.class));
+                        change.setId(row.getLong("id"));
+                        change.setAttempts(row.getInt("attempts"));
+                        return change;
+                    });
+            for (CategoryReplication change : pending) {
+                apply(origin, change);
+            }
+        }
+    }
+
+    private void record(String path, Long deletedCategoryId) {
+        int origin = shardRouter.currentShard();
+        List<CategoryReplication> changes = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            if (shard != origin) {
+                changes.add(categoryReplicationRepository.save(new CategoryReplication(shard, path, deletedCategoryId)));
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changes.forEach(change -> apply(origin, change));
+            }
+        });
+    }
+
+    /**
+     * Applies one change on its target shard and removes it from the origin's pending changes, or counts the
+     * failed attempt. Applying a change twice, e.g. by two nodes at once, is harmless.
+     */
+    private void apply(int origin, CategoryReplication change) {
+        JdbcTemplate source = new JdbcTemplate(shardRouter.dataSource(origin));
+        JdbcTemplate target = new JdbcTemplate(shardRouter.dataSource(change.getTargetShard()));
+        String action = change.getPath() != null ? "copy categories under " + change.getPath()
+                : "delete category " + change.getDeletedCategoryId();
+        try {
+            if (change.getPath() != null) {
+                copySubtree(source, target, change.getPath());
+            } else {
+                target.update("delete from category where id = ?", change.getDeletedCategoryId());
+            }
+            source.update("delete from category_replication where id = ?", change.getId());
+            if (change.getAttempts() > 0) {
+                log.info("Repaired the categories on shard {}: {}", change.getTargetShard(), action);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not {} on shard {} (attempt {}), retrying later", action, change.getTargetShard(),
+                    change.getAttempts() + 1, e);
+            try {
+                source.update("update category_replication set attempts = attempts + 1 where id = ?", change.getId());
+            } catch (DataAccessException ignored) {
+                // The count is informational; the change stays pending either way.
+            }
+        }
+    }
+
+    private static void copySubtree(JdbcTemplate source, JdbcTemplate target, String path) {
+        // Parents come before their children, so every parent_id already exists when a row is written.
+        List<CategoryRow> rows = source.query(
+                "select id, name, parent_id, path, depth from category where path >= ? and path < ? order by depth, id",
+                (row, rowNum) -> new CategoryRow(row.getLong("id"), row.getString("name"),
+                        row.getObject("parent_id", Long.class), row.getString("path"), row.getInt("depth")),
+                path, CategoryPath.upperBound(path));
+        for (CategoryRow row : rows) {
+            int updated = target.update("update category set name = ?, parent_id = ?, path = ?, depth = ? where id = ?",
+                    row.name(), row.parentId(), row.path(), row.depth(), row.id());
+            if (updated == 0) {
+                target.update("insert into category (id, name, parent_id, path, depth) values (?, ?, ?, ?, ?)",
+                        row.id(), row.name(), row.parentId(), row.path(), row.depth());
+            }
+        }
+    }
+
+    private record CategoryRow(long id, String name, Long parentId, String path, int depth) {
+    }
+}
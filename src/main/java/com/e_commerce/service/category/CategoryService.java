@@ -1,11 +1,20 @@
 package com.e_commerce.service.category;
 
+import com.e_commerce.dto.CategoryNodeDto;
 import com.e_commerce.exceptions.AlreadyExistsException;
+import com.e_commerce.exceptions.CategoryInUseException;
 import com.e_commerce.exceptions.CategoryNotFoundException;
 import com.e_commerce.model.Category;
+import com.e_commerce.model.OutboxEvent.ChangeType;
 import com.e_commerce.repository.CategoryRepository;
+import com.e_commerce.repository.ProductRepository;
+import com.e_commerce.service.outbox.IOutboxService;
+import com.e_commerce.service.sharding.ShardRouter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,6 +24,11 @@ import java.util.Optional;
 public class CategoryService implements ICategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final IOutboxService outboxService;
+    private final CategoryTreeCache categoryTreeCache;
+    private final CategoryReplicator categoryReplicator;
+    private final ProductRepository productRepository;
+    private final ShardRouter shardRouter;
 
     @Override
     public Category getCategoryById(Long id) {
@@ -32,24 +46,121 @@ public class CategoryService implements ICategoryService {
     }
 
     @Override
+    @Transactional
     public Category addCategory(Category category) {
+        return addCategory(category, null);
+    }
+
+    @Override
+    @Transactional
+    public Category addCategory(Category category, Long parentId) {
+        Category parent = parentId != null ? getCategoryById(parentId) : null;
         return Optional.of(category).filter(c -> !categoryRepository.existsByName(c.getName()))
-                .map(categoryRepository::save)
+                .map(c -> {
+                    c.setParent(parent);
+                    Category savedCategory = categoryRepository.save(c);
+                    // The path ends with the category's own id, so it can only be set once the id is assigned.
+                    savedCategory.setPath(CategoryPath.of(parent != null ? parent.getPath() : null, savedCategory.getId()));
+                    savedCategory.setDepth(CategoryPath.depth(savedCategory.getPath()));
+                    return savedCategory;
+                })
+                .map(savedCategory -> {
+                    outboxService.recordCategoryChange(savedCategory, ChangeType.CREATED);
+                    categoryReplicator.replicateAfterCommit(savedCategory.getPath());
+                    categoryTreeCache.invalidateAfterCommit();
+                    return savedCategory;
+                })
                 .orElseThrow(() -> new AlreadyExistsException(category.getName() + " already exists"));
     }
 
     @Override
+    @Transactional
     public Category updateCategory(Category category, Long id) {
         return Optional.ofNullable(getCategoryById(id)).map(oldCategory -> {
             oldCategory.setName(category.getName());
-            return categoryRepository.save(oldCategory);
+            Category updatedCategory = categoryRepository.save(oldCategory);
+            outboxService.recordCategoryChange(updatedCategory, ChangeType.UPDATED);
+            categoryReplicator.replicateAfterCommit(updatedCategory.getPath());
+            categoryTreeCache.invalidateAfterCommit();
+            return updatedCategory;
         }).orElseThrow(() -> new CategoryNotFoundException("Category not found!"));
     }
 
     @Override
+    @Transactional
     public void deleteCategoryById(Long id) {
-        categoryRepository.findById(id).ifPresentOrElse(categoryRepository::delete, () -> {
+        categoryRepository.findById(id).ifPresentOrElse(category -> {
+            // Products can live on any shard, and the foreign key only guards the shard this runs on.
+            if (!shardRouter.gather(() -> productRepository.existsByCategoryId(id) ? List.of(id) : List.<Long>of()).isEmpty()) {
+                throw new CategoryInUseException("Category " + category.getName() + " still has products");
+            }
+            // Children move up to the deleted category's parent instead of being orphaned.
+            Long parentId = category.getParentId();
+            for (Category child : categoryRepository.findByParent_Id(id)) {
+                moveCategory(child.getId(), parentId);
+            }
+            categoryRepository.findById(id).ifPresent(categoryRepository::delete);
+            outboxService.recordCategoryChange(category, ChangeType.DELETED);
+            categoryReplicator.removeAfterCommit(id);
+            categoryTreeCache.invalidateAfterCommit();
+        }, () -> {
             throw new CategoryNotFoundException("Category not found!");
         });
     }
+
+    @Override
+    @Transactional
+    public Category moveCategory(Long id, Long newParentId) {
+        Category category = getCategoryById(id);
+        Category newParent = newParentId != null ? getCategoryById(newParentId) : null;
+        String oldPath = category.getPath();
+        if (newParent != null && newParent.getPath().startsWith(oldPath)) {
+            throw new IllegalArgumentException("Cannot move category " + id + " under its own subtree");
+        }
+        String newPath = CategoryPath.of(newParent != null ? newParent.getPath() : null, id);
+        category.setParent(newParent);
+        categoryRepository.save(category);
+        // One set-based update re-roots the category and all of its descendants.
+        categoryRepository.rebaseSubtree(oldPath, CategoryPath.upperBound(oldPath), newPath, oldPath.length(),
+                CategoryPath.depth(newPath) - CategoryPath.depth(oldPath));
+
+        // The descendants' paths changed too, so each of them gets an event of its own.
+        for (Category rebased : categoryRepository.findByPathRange(newPath, CategoryPath.upperBound(newPath))) {
+            outboxService.recordCategoryChange(rebased, ChangeType.UPDATED);
+        }
+        Category movedCategory = getCategoryById(id);
+        categoryReplicator.replicateAfterCommit(movedCategory.getPath());
+        categoryTreeCache.invalidateAfterCommit();
+        return movedCategory;
+    }
+
+    @Override
+    public List<CategoryNodeDto> getCategoryTree() {
+        return categoryTreeCache.getRoots();
+    }
+
+    @Override
+    public List<CategoryNodeDto> getBreadcrumb(Long id) {
+        List<CategoryNodeDto> breadcrumb = categoryTreeCache.getBreadcrumb(id);
+        if (breadcrumb.isEmpty()) {
+            throw new CategoryNotFoundException("Category not found!");
+        }
+        return breadcrumb;
+    }
+
+    /**
+     * Categories created before the hierarchy existed have no path yet; they become roots.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void assignMissingPaths() {
+        List<Category> categories = categoryRepository.findByPathIsNull();
+        for (Category category : categories) {
+            category.setPath(CategoryPath.of(null, category.getId()));
+            category.setDepth(0);
+        }
+        if (!categories.isEmpty()) {
+            categoryTreeCache.invalidateAfterCommit();
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package com.e_commerce.service.category;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.OutboxEvent.AggregateType;
+import com.e_commerce.repository.CategoryRepository;
+import com.e_commerce.service.outbox.CatalogChangesRelayedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the whole category tree for navigation and breadcrumb reads.
+ * <p>
+ * The tree is loaded with a single query on first use and kept as an immutable snapshot. Local changes drop the
+ * snapshot once their transaction commits; changes made on other nodes arrive through the outbox relay.
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public List<CategoryNodeDto> getRoots() {
+        return snapshot().roots;
+    }
+
+    public Optional<CategoryNodeDto> findById(Long id) {
+        return Optional.ofNullable(snapshot().byId.get(id));
+    }
+
+    public Optional<CategoryNodeDto> findByName(String name) {
+        return Optional.ofNullable(snapshot().byName.get(name));
+    }
+
+    /**
+     * Returns the chain of categories from the root down to the given category, without their children.
+     */
+    public List<CategoryNodeDto> getBreadcrumb(Long id) {
+        Snapshot current = snapshot();
+        LinkedList<CategoryNodeDto> breadcrumb = new LinkedList<>();
+        for (CategoryNodeDto node = current.byId.get(id); node != null; node = current.byId.get(node.getParentId())) {
+            breadcrumb.addFirst(current.crumbs.get(node.getId()));
+        }
+        return breadcrumb;
+    }
+
+    /**
+     * Installs a tree saved earlier, so the first reads don't have to query it. Ignored once the tree has been
+     * loaded or invalidated.
+     */
+    public synchronized void seed(List<CategoryNodeDto> categories) {
+        if (snapshot == null && generation.get() == 0) {
+            List<Category> seeded = new ArrayList<>(categories.size());
+            for (CategoryNodeDto node : categories) {
+                Category category = new Category(node.getName());
+                category.setId(node.getId());
+                category.setPath(node.getPath());
+                category.setDepth(node.getDepth());
+                if (node.getParentId() != null) {
+                    category.setParent(new Category());
+                    category.getParent().setId(node.getParentId());
+                }
+                seeded.add(category);
+            }
+            snapshot = new Snapshot(seeded);
+        }
+    }
+
+    /**
+     * Drops the snapshot after the current transaction commits, or immediately when there is none.
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanges(CatalogChangesRelayedEvent event) {
+        if (event.touches(AggregateType.CATEGORY)) {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    long loadedGeneration = generation.get();
+                    current = new Snapshot(categoryRepository.findAll());
+                    // Don't publish a tree that was read before a concurrent invalidation.
+                    if (generation.get() == loadedGeneration) {
+                        snapshot = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final List<CategoryNodeDto> roots;
+        private final Map<Long, CategoryNodeDto> byId = new HashMap<>();
+        private final Map<Long, CategoryNodeDto> crumbs = new HashMap<>();
+        private final Map<String, CategoryNodeDto> byName = new HashMap<>();
+
+        private Snapshot(List<Category> categories) {
+            Map<Long, List<Category>> childrenByParent = new HashMap<>();
+            List<Category> rootCategories = new ArrayList<>();
+            for (Category category : categories) {
+                if (category.getParentId() == null) {
+                    rootCategories.add(category);
+                } else {
+                    childrenByParent.computeIfAbsent(category.getParentId(), k -> new ArrayList<>()).add(category);
+                }
+            }
+            this.roots = build(rootCategories, childrenByParent);
+        }
+
+        private List<CategoryNodeDto> build(List<Category> categories, Map<Long, List<Category>> childrenByParent) {
+            List<CategoryNodeDto> nodes = new ArrayList<>(categories.size());
+            categories.sort(Comparator.comparing(Category::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+            for (Category category : categories) {
+                List<CategoryNodeDto> children = build(childrenByParent.getOrDefault(category.getId(), new ArrayList<>()), childrenByParent);
+                CategoryNodeDto node = new CategoryNodeDto(category.getId(), category.getName(), category.getParentId(),
+                        category.getPath(), category.getDepth(), children);
+                nodes.add(node);
+                byId.put(node.getId(), node);
+                byName.put(node.getName(), node);
+                crumbs.put(node.getId(), new CategoryNodeDto(node.getId(), node.getName(), node.getParentId(),
+                        node.getPath(), node.getDepth(), List.of()));
+            }
+            return List.copyOf(nodes);
+        }
+    }
+}
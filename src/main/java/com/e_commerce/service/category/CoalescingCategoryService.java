@@ -0,0 +1,115 @@
+package com.e_commerce.service.category;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.model.Category;
+import com.e_commerce.service.singleflight.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Shares one database query between concurrent identical category reads. Writes go straight to the delegate.
+ * <p>
+ * The caller that runs a shared query gets the entities of its own session; the others get detached copies, so
+ * no thread touches another thread's session. Reads inside a transaction aren't shared, because the caller
+ * needs entities of its own session to write with.
+ */
+@Service
+@Primary
+public class CoalescingCategoryService implements ICategoryService {
+
+    private final CategoryService delegate;
+    private final SingleFlight singleFlight;
+
+    public CoalescingCategoryService(CategoryService delegate,
+                                     @Value("${catalog.single-flight.timeout-ms:5000}") long timeoutMillis) {
+        this.delegate = delegate;
+        this.singleFlight = new SingleFlight(Duration.ofMillis(timeoutMillis));
+    }
+
+    @Override
+    public Category getCategoryById(Long id) {
+        return shared(Arrays.asList("getCategoryById", id), () -> delegate.getCategoryById(id),
+                CoalescingCategoryService::detached);
+    }
+
+    @Override
+    public Category getCategoryByName(String name) {
+        return shared(Arrays.asList("getCategoryByName", name), () -> delegate.getCategoryByName(name),
+                CoalescingCategoryService::detached);
+    }
+
+    @Override
+    public List<Category> getAllCategories() {
+        return shared(List.of("getAllCategories"), delegate::getAllCategories,
+                categories -> categories.stream().map(CoalescingCategoryService::detached).toList());
+    }
+
+    @Override
+    public Category addCategory(Category category) {
+        return delegate.addCategory(category);
+    }
+
+    @Override
+    public Category addCategory(Category category, Long parentId) {
+        return delegate.addCategory(category, parentId);
+    }
+
+    @Override
+    public Category updateCategory(Category category, Long id) {
+        return delegate.updateCategory(category, id);
+    }
+
+    @Override
+    public void deleteCategoryById(Long id) {
+        delegate.deleteCategoryById(id);
+    }
+
+    @Override
+    public Category moveCategory(Long id, Long newParentId) {
+        return delegate.moveCategory(id, newParentId);
+    }
+
+    @Override
+    public List<CategoryNodeDto> getCategoryTree() {
+        return delegate.getCategoryTree();
+    }
+
+    @Override
+    public List<CategoryNodeDto> getBreadcrumb(Long id) {
+        return delegate.getBreadcrumb(id);
+    }
+
+    /**
+     * @return A copy of the category's own columns, with its parent as an id-only stub.
+     */
+    public static Category detached(Category category) {
+        if (category == null) {
+            return null;
+        }
+        Category copy = new Category(category.getName());
+        copy.setId(category.getId());
+        copy.setPath(category.getPath());
+        copy.setDepth(category.getDepth());
+        if (category.getParentId() != null) {
+            Category parent = new Category();
+            parent.setId(category.getParentId());
+            copy.setParent(parent);
+        }
+        return copy;
+    }
+
+    private <T> T shared(List<?> key, Supplier<T> loader, UnaryOperator<T> detach) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+        return singleFlight.execute(key, loader, detach);
+    }
+}
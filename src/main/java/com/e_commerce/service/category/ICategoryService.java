@@ -1,5 +1,7 @@
 package com.e_commerce.service.category;
 
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.exceptions.CategoryInUseException;
 import com.e_commerce.model.Category;
 
 import java.util.List;
@@ -9,6 +11,14 @@ public interface ICategoryService {
     Category getCategoryByName(String name);
     List<Category> getAllCategories();
     Category addCategory(Category category);
+    Category addCategory(Category category, Long parentId);
     Category updateCategory(Category category, Long id);
+    /**
+     * Deletes a category; its children move up to its parent.
+     * @throws CategoryInUseException if products are still in the category, on any shard.
+     */
     void deleteCategoryById(Long id);
+    Category moveCategory(Long id, Long newParentId);
+    List<CategoryNodeDto> getCategoryTree();
+    List<CategoryNodeDto> getBreadcrumb(Long id);
 }
@@ -14,6 +14,14 @@ public interface IImageService {
      * @return The Image object if found.
      */
     Image getImageById(Long id);
+
+    /**
+     * Reads the bytes of an image.
+     *
+     * @param id The unique identifier of the image.
+     * @return The image bytes.
+     */
+    byte[] getImageData(Long id);
     
     /**
      * Deletes an image by its unique identifier.
@@ -0,0 +1,152 @@
+package com.e_commerce.service.image;
+
+import com.e_commerce.model.Image;
+import com.e_commerce.model.ImageContent;
+import com.e_commerce.repository.DatabasePlatform;
+import com.e_commerce.repository.ImageContentRepository;
+import com.e_commerce.service.sharding.ShardRouter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Content-addressed storage of image bytes: every distinct content is stored once, keyed by its SHA-256.
+ * <p>
+ * An upload is hashed in one streaming pass. If the content is already stored, only its reference count goes up and
+ * the bytes are never written; otherwise a second pass streams them into a new content row. Concurrent uploads of
+ * the same bytes are serialized on a per-hash advisory lock on Postgres, elsewhere the unique hash is the backstop.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageContentStore {
+
+    private static final int LEGACY_BATCH_SIZE = 50;
+
+    private final ImageContentRepository imageContentRepository;
+    private final DatabasePlatform databasePlatform;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Takes a reference to the content holding the given bytes, storing them if they are new.
+     * @param source The bytes; opened once for hashing and a second time only if the content is new.
+     * @return The content, with the caller's reference already counted.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ImageContent acquire(InputStreamSource source) throws IOException {
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        }
+        byte[] hash = digest.digest();
+        String sha256 = HexFormat.of().formatHex(hash);
+
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.query("select pg_advisory_xact_lock(?)", row -> null, ByteBuffer.wrap(hash).getLong());
+        }
+        return imageContentRepository.findBySha256ForUpdate(sha256)
+                .map(content -> {
+                    content.setRefCount(content.getRefCount() + 1);
+                    return content;
+                })
+                .orElseGet(() -> {
+                    try {
+                        return imageContentRepository.save(new ImageContent(sha256, size,
+                                BlobProxy.generateProxy(source.getInputStream(), size)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Drops one reference to a content. Contents without references are removed by the ImageReaper.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(ImageContent content) {
+        if (content != null) {
+            imageContentRepository.release(content.getId(), 1);
+        }
+    }
+
+    /**
+     * Moves bytes stored before deduplication into shared contents, a small batch per transaction.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyImages() {
+        shardRouter.forEachShard(this::migrateLegacyImages);
+    }
+
+    private void migrateLegacyImages(int shard) {
+        int migrated = 0;
+        Integer batch;
+        do {
+            batch = transactionTemplate.execute(status -> migrateLegacyBatch());
+            migrated += batch != null ? batch : 0;
+        } while (batch != null && batch == LEGACY_BATCH_SIZE);
+        if (migrated > 0) {
+            log.info("Moved {} images on shard {} into deduplicated content storage", migrated, shard);
+        }
+    }
+
+    private int migrateLegacyBatch() {
+        List<Image> images = entityManager.createQuery(
+                        "select i from Image i where i.content is null and i.legacyData is not null order by i.Id", Image.class)
+                .setMaxResults(LEGACY_BATCH_SIZE)
+                .getResultList();
+        for (Image image : images) {
+            try {
+                image.setContent(acquire(() -> {
+                    try {
+                        return image.getLegacyData().getBinaryStream();
+                    } catch (SQLException e) {
+                        throw new IOException(e);
+                    }
+                }));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // The old large object is left to the ImageReaper's orphan sweep.
+            image.setLegacyData(null);
+            // Images uploaded before this change were given a download URL ending in "null".
+            image.setDownloadUrl("/api/v1/images/image/download/" + image.getId());
+        }
+        return images.size();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.e_commerce.service.image;
+
+import com.e_commerce.repository.DatabasePlatform;
+import com.e_commerce.service.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Frees the data of deleted images in the background.
+ * <p>
+ * Deletes only leave tombstones behind. The reaper removes tombstones older than a grace period, releasing their
+ * references to shared image contents, and then removes contents nobody references any more. Both run in small
+ * batches, one transaction each with a pause in between, so reclaiming a large backlog never holds long locks or
+ * saturates the database. On Postgres image data lives in large objects, which outlive their row unless unlinked
+ * explicitly; the reaper unlinks them along with their rows.
+ * <p>
+ * Large objects left behind without a row, e.g. by a crash, are swept only when
+ * {@code catalog.images.orphan-sweep.enabled} is set. The sweep takes every large object of the database user that
+ * no image references as an orphan, so it must only be enabled when no other application stores large objects as
+ * that user. A large object is only unlinked when it was found orphaned by two consecutive sweeps, so data of an
+ * upload that has not committed yet is never touched. With sharding, every shard is reaped in turn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageReaper {
+
+    // Columns that reference large objects; anything else owned by the application user is an orphan.
+    private static final List<String> LARGE_OBJECT_COLUMNS = List.of("image.image", "image_content.data");
+    private static final int INV_READ = 0x40000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ShardRouter shardRouter;
+
+    @Value("${catalog.images.reaper.grace-period:PT1M}")
+    private Duration gracePeriod;
+
+    @Value("${catalog.images.reaper.batch-size:100}")
+    private int batchSize;
+
+    @Value("${catalog.images.reaper.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${catalog.images.reaper.batch-pause-ms:200}")
+    private long batchPauseMillis;
+
+    @Value("${catalog.images.orphan-sweep.enabled:false}")
+    private boolean orphanSweepEnabled;
+
+    private final Map<Integer, Set<Long>> orphanCandidates = new HashMap<>();
+    private Counter tombstonesReaped;
+    private Counter tombstoneBytes;
+    private Counter contentsReaped;
+    private Counter contentBytes;
+    private Counter orphansSwept;
+    private Counter orphanBytes;
+
+    @PostConstruct
+    void registerMeters() {
+        tombstonesReaped = meterRegistry.counter("catalog.images.reclaimed", "source", "tombstone");
+        contentsReaped = meterRegistry.counter("catalog.images.reclaimed", "source", "content");
+        orphansSwept = meterRegistry.counter("catalog.images.reclaimed", "source", "orphan");
+        tombstoneBytes = Counter.builder("catalog.images.reclaimed.bytes").baseUnit("bytes")
+                .tag("source", "tombstone").register(meterRegistry);
+        contentBytes = Counter.builder("catalog.images.reclaimed.bytes").baseUnit("bytes")
+                .tag("source", "content").register(meterRegistry);
+        orphanBytes = Counter.builder("catalog.images.reclaimed.bytes").baseUnit("bytes")
+                .tag("source", "orphan").register(meterRegistry);
+    }
+
+    /**
+     * Removes expired tombstones, then unreferenced contents, batch by batch until none are left or the per-run
+     * budget is used up.
+     */
+    @Scheduled(fixedDelayString = "${catalog.images.reaper.interval-ms:10000}")
+    public void reap() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(gracePeriod));
+        shardRouter.forEachShard(shard -> {
+            int batches = runBatches(maxBatchesPerRun, () -> reapTombstoneBatch(cutoff));
+            runBatches(maxBatchesPerRun - batches, this::reapContentBatch);
+        });
+    }
+
+    /**
+     * Unlinks large objects that no image references and that were already orphaned during the previous sweep.
+     * Does nothing unless the sweep is enabled.
+     */
+    @Scheduled(initialDelayString = "${catalog.images.orphan-sweep.interval-ms:3600000}",
+            fixedDelayString = "${catalog.images.orphan-sweep.interval-ms:3600000}")
+    public void sweepOrphans() {
+        if (orphanSweepEnabled && databasePlatform.isPostgres()) {
+            shardRouter.forEachShard(this::sweepOrphans);
+        }
+    }
+
+    private void sweepOrphans(int shard) {
+        Set<Long> orphans = new HashSet<>(jdbcTemplate.queryForList(
+                "select m.oid from pg_largeobject_metadata m " +
+                        "where m.lomowner = (select r.oid from pg_roles r where r.rolname = current_user) " +
+                        LARGE_OBJECT_COLUMNS.stream()
+                                .map(column -> column.split("\\."))
+                                .map(column -> "and not exists (select 1 from " + column[0] + " t where t." + column[1] + " = m.oid) ")
+                                .collect(Collectors.joining()), Long.class));
+        Set<Long> candidates = orphanCandidates.getOrDefault(shard, Set.of());
+        List<Long> confirmed = orphans.stream().filter(candidates::contains).sorted().toList();
+        orphanCandidates.put(shard, orphans);
+        for (int from = 0; from < confirmed.size(); from += batchSize) {
+            List<Long> batch = confirmed.subList(from, Math.min(from + batchSize, confirmed.size()));
+            Long bytes = transactionTemplate.execute(status -> {
+                long size = measure(batch);
+                unlink(batch);
+                return size;
+            });
+            orphansSwept.increment(batch.size());
+            orphanBytes.increment(bytes != null ? bytes : 0);
+            if (from + batchSize < confirmed.size() && !pause()) {
+                return;
+            }
+        }
+        if (!confirmed.isEmpty()) {
+            log.info("Swept {} orphaned large objects on shard {}", confirmed.size(), shard);
+        }
+    }
+
+    /**
+     * Runs batches, one transaction each, until one comes back short or the budget is used up.
+     * @return The number of batches run.
+     */
+    private int runBatches(int budget, Supplier<Integer> batch) {
+        for (int run = 1; run <= budget; run++) {
+            Integer processed = transactionTemplate.execute(status -> batch.get());
+            if (processed == null || processed < batchSize || !pause()) {
+                return run;
+            }
+        }
+        return budget;
+    }
+
+    private int reapTombstoneBatch(Timestamp cutoff) {
+        List<Long> ids = new ArrayList<>();
+        List<Long> oids = new ArrayList<>();
+        Map<Long, Integer> releasedContents = new HashMap<>();
+        long bytes;
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.query("select id, image, content_id from image where deleted = true and deleted_at < ? " +
+                    "order by id limit ? for update skip locked", row -> {
+                ids.add(row.getLong("id"));
+                long oid = row.getLong("image");
+                if (!row.wasNull()) {
+                    oids.add(oid);
+                }
+                countContent(row.getLong("content_id"), row.wasNull(), releasedContents);
+            }, cutoff, batchSize);
+            bytes = measure(oids);
+            unlink(oids);
+        } else {
+            long[] total = {0};
+            jdbcTemplate.query("select id, octet_length(image) as size, content_id from image " +
+                    "where deleted = true and deleted_at < ? order by id limit ? for update", row -> {
+                ids.add(row.getLong("id"));
+                total[0] += row.getLong("size");
+                countContent(row.getLong("content_id"), row.wasNull(), releasedContents);
+            }, cutoff, batchSize);
+            bytes = total[0];
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate("update image_content set ref_count = ref_count - ? where id = ?",
+                new ArrayList<>(releasedContents.entrySet()), releasedContents.size(), (statement, released) -> {
+                    statement.setInt(1, released.getValue());
+                    statement.setLong(2, released.getKey());
+                });
+        jdbcTemplate.batchUpdate("delete from image where id = ?", ids, ids.size(), (statement, id) -> statement.setLong(1, id));
+        tombstonesReaped.increment(ids.size());
+        tombstoneBytes.increment(bytes);
+        return ids.size();
+    }
+
+    private static void countContent(long contentId, boolean isNull, Map<Long, Integer> releasedContents) {
+        if (!isNull) {
+            releasedContents.merge(contentId, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Removes contents without references. The row lock keeps a concurrent upload of the same bytes from taking a
+     * new reference to a content that is being removed; that upload then stores the bytes again.
+     */
+    private int reapContentBatch() {
+        List<Long> ids = new ArrayList<>();
+        List<Long> oids = new ArrayList<>();
+        long[] bytes = {0};
+        String lock = databasePlatform.isPostgres() ? "for update skip locked" : "for update";
+        jdbcTemplate.query("select id, size, data from image_content where ref_count <= 0 order by id limit ? " + lock, row -> {
+            ids.add(row.getLong("id"));
+            bytes[0] += row.getLong("size");
+            if (databasePlatform.isPostgres()) {
+                oids.add(row.getLong("data"));
+            }
+        }, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        unlink(oids);
+        jdbcTemplate.batchUpdate("delete from image_content where id = ?", ids, ids.size(), (statement, id) -> statement.setLong(1, id));
+        contentsReaped.increment(ids.size());
+        contentBytes.increment(bytes[0]);
+        return ids.size();
+    }
+
+    /**
+     * @return The number of bytes the given large objects hold.
+     */
+    private long measure(List<Long> oids) {
+        if (oids.isEmpty()) {
+            return 0;
+        }
+        Long bytes = jdbcTemplate.queryForObject(
+                "select coalesce(sum(s.size), 0) from (select lo_lseek64(o.fd, 0, 2) as size, lo_close(o.fd) " +
+                        "from (select lo_open(m.oid, " + INV_READ + ") as fd from pg_largeobject_metadata m " +
+                        "where m.oid = any(?::oid[])) o) s", Long.class, toArray(oids));
+        return bytes != null ? bytes : 0;
+    }
+
+    /**
+     * Unlinks the given large objects, skipping ones that are already gone.
+     */
+    private void unlink(List<Long> oids) {
+        if (!oids.isEmpty()) {
+            jdbcTemplate.queryForList("select lo_unlink(m.oid) from pg_largeobject_metadata m where m.oid = any(?::oid[])",
+                    Integer.class, toArray(oids));
+        }
+    }
+
+    private static String toArray(List<Long> oids) {
+        return oids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
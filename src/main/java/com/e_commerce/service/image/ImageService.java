@@ -3,16 +3,23 @@ package com.e_commerce.service.image;
 import com.e_commerce.dto.ImageDto;
 import com.e_commerce.exceptions.ImageNotFoundException;
 import com.e_commerce.model.Image;
+import com.e_commerce.model.ImageContent;
+import com.e_commerce.model.OutboxEvent.ChangeType;
 import com.e_commerce.model.Product;
 import com.e_commerce.repository.ImageRepository;
+import com.e_commerce.service.outbox.IOutboxService;
 import com.e_commerce.service.product.IProductService;
+import com.e_commerce.service.sharding.RouteToShard;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.sql.rowset.serial.SerialBlob;
 import java.io.IOException;
+import java.sql.Blob;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,21 +29,53 @@ import java.util.List;
 public class ImageService implements IImageService {
     private final ImageRepository imageRepository;
     private final IProductService productService;
+    private final IOutboxService outboxService;
+    private final ImageContentStore imageContentStore;
 
+    /**
+     * @return The image with its content metadata loaded; the data itself is read by {@link #getImageData(Long)}.
+     */
     @Override
+    @Transactional(readOnly = true)
+    @RouteToShard(id = "#id")
     public Image getImageById(Long id) {
         return imageRepository.findById(id)
+                .map(image -> {
+                    Hibernate.initialize(image.getContent());
+                    return image;
+                })
                 .orElseThrow(() -> new ImageNotFoundException("Image with id " + " not found!"));
     }
 
     @Override
+    @Transactional
+    @RouteToShard(id = "#id")
     public void deleteImageById(Long id) {
-        imageRepository.findById(id).ifPresentOrElse(imageRepository::delete, () -> {
+        imageRepository.findById(id).ifPresentOrElse(image -> {
+            outboxService.recordImageChange(image, ChangeType.DELETED);
+            // Only a tombstone is written here, the ImageReaper frees the data later.
+            imageRepository.tombstoneById(id, Instant.now());
+        }, () -> {
             throw new ImageNotFoundException("Image with id " + " not found!");
         });
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @RouteToShard(id = "#id")
+    public byte[] getImageData(Long id) {
+        Image image = getImageById(id);
+        Blob data = image.getContent() != null ? image.getContent().getData() : image.getLegacyData();
+        try {
+            return data.getBytes(1L, (int) data.length());
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional
+    @RouteToShard(id = "#productId")
     public List<ImageDto> saveImage(List<MultipartFile> files, Long productId) {
         Product product = productService.getProductById(productId);
         List<ImageDto> savedImageDto = new ArrayList<>();
@@ -45,12 +84,12 @@ public class ImageService implements IImageService {
                 Image image = new Image();
                 image.setFileType(file.getContentType());
                 image.setFileName(file.getOriginalFilename());
-                image.setImage(new SerialBlob(file.getBytes()));
+                image.setContent(imageContentStore.acquire(file));
                 image.setProduct(product);
 
-                String downloadUrl = "/api/v1/images/image/download/" + image.getId();
-                image.setDownloadUrl(downloadUrl);
                 Image savedImage = imageRepository.save(image);
+                savedImage.setDownloadUrl("/api/v1/images/image/download/" + savedImage.getId());
+                outboxService.recordImageChange(savedImage, ChangeType.CREATED);
 
                 ImageDto imageDto = new ImageDto();
                 imageDto.setFileName(savedImage.getFileName());
@@ -65,15 +104,22 @@ public class ImageService implements IImageService {
     }
 
     @Override
+    @Transactional
+    @RouteToShard(id = "#imageId")
     public void updateImage(MultipartFile file, Long imageId) {
         Image image = getImageById(imageId);
         try {
+            // Contents are shared, so new bytes never overwrite the old ones: the image moves to another content.
+            ImageContent previousContent = image.getContent();
             image.setFileName(file.getOriginalFilename());
             image.setFileType(file.getContentType());
-            image.setImage(new SerialBlob(file.getBytes()));
+            image.setContent(imageContentStore.acquire(file));
+            image.setLegacyData(null);
             imageRepository.save(image);
+            imageContentStore.release(previousContent);
+            outboxService.recordImageChange(image, ChangeType.UPDATED);
 
-        } catch (SQLException | IOException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e.getMessage());
         }
     }
@@ -0,0 +1,20 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.model.OutboxEvent;
+import com.e_commerce.model.OutboxEvent.AggregateType;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published locally each time the relay has read a batch of committed outbox events, so in-process read models
+ * on every node can react to changes made on any node.
+ */
+@Value
+public class CatalogChangesRelayedEvent {
+    List<OutboxEvent> events;
+
+    public boolean touches(AggregateType aggregateType) {
+        return events.stream().anyMatch(event -> event.getAggregateType() == aggregateType);
+    }
+}
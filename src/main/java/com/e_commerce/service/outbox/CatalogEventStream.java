@@ -0,0 +1,336 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.model.OutboxEvent;
+import com.e_commerce.repository.DatabasePlatform;
+import com.e_commerce.repository.OutboxEventRepository;
+import com.e_commerce.service.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Fans committed outbox events out to server-sent-event subscribers.
+ * <p>
+ * Every node tails the outbox table with its own cursor, so events reach the subscribers of all nodes.
+ * A subscriber that reconnects with a last event id is first replayed everything after that id and is then
+ * switched over to the live feed under the dispatch lock, so no event is lost or delivered twice.
+ * <p>
+ * Ids are taken when an event is inserted, not when its transaction commits, so a lower id can become visible
+ * after a higher one. The cursor therefore only moves over consecutive ids: when an id is missing, the events
+ * after it are held back until it commits. On Postgres, a missing id is skipped as rolled back once every
+ * transaction that was running when the gap was seen has ended, read from the transaction snapshot. Events are
+ * written after the change they record, so the transaction holding a missing id always has a transaction id by
+ * then. Elsewhere an id is skipped after it has been missing for {@code catalog.outbox.gap-timeout-ms}, which must
+ * exceed the longest transaction that writes events.
+ * <p>
+ * With sharding, each shard has its own outbox and cursor. An event id then is the position in every shard's
+ * outbox, the ids joined with dots, e.g. {@code 40.17.93}; events of one shard keep their order.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogEventStream {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final DatabasePlatform databasePlatform;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final Map<Integer, Gap> gaps = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray cursors;
+
+    @Value("${catalog.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${catalog.outbox.gap-timeout-ms:30000}")
+    private long gapTimeoutMillis;
+
+    @Value("${catalog.outbox.sse-timeout-ms:1800000}")
+    private long sseTimeoutMillis;
+
+    /**
+     * Ends open streams before the web server starts its graceful shutdown, so they don't hold it up.
+     */
+    @EventListener(ContextClosedEvent.class)
+    void completeSubscribers() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * Opens a new stream. When a last event id is given, all retained events after it are replayed first.
+     *
+     * @param lastEventId The id of the last event the consumer has processed, or null to receive only new events.
+     * @return The emitter bound to the HTTP response.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        long[] position = lastEventId != null ? parsePosition(lastEventId) : null;
+        Subscriber subscriber = new Subscriber(emitter, position != null ? position : snapshot());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        try {
+            if (lastEventId != null && (position == null || isPurged(position))) {
+                emitter.send(SseEmitter.event().name("resync-required").data("Events after " + lastEventId + " are no longer retained"));
+            }
+            // Replay the bulk of the backlog without blocking the relay, then finish the gap under the lock.
+            replay(subscriber, snapshot());
+            dispatchLock.lock();
+            try {
+                replay(subscriber, snapshot());
+                subscribers.add(subscriber);
+            } finally {
+                dispatchLock.unlock();
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Publishes the next batch of committed outbox events of every shard to all live subscribers, up to the first
+     * id that is still missing.
+     *
+     * @return The size of the largest batch published from a shard.
+     */
+    public int relayNextBatch() {
+        Instant now = Instant.now();
+        AtomicLongArray current = cursors();
+        int largestBatch = 0;
+        for (int shard = 0; shard < current.length(); shard++) {
+            long cursor = current.get(shard);
+            Gap gap = gaps.get(shard);
+            // Read before the events: a transaction that ended before it has its events in the read if it committed.
+            Long oldestRunning = gap != null && gap.horizon() != null
+                    ? shardRouter.on(shard, outboxEventRepository::findOldestRunningTransaction) : null;
+            List<OutboxEvent> read = shardRouter.on(shard, () -> outboxEventRepository
+                    .findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(batchSize)));
+            List<OutboxEvent> batch = consecutive(shard, cursor, read, now, oldestRunning);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            dispatchLock.lock();
+            try {
+                for (Subscriber subscriber : subscribers) {
+                    for (OutboxEvent event : batch) {
+                        if (!send(subscriber, shard, event)) {
+                            break;
+                        }
+                    }
+                }
+                current.set(shard, batch.get(batch.size() - 1).getId());
+            } finally {
+                dispatchLock.unlock();
+            }
+            eventPublisher.publishEvent(new CatalogChangesRelayedEvent(batch));
+            largestBatch = Math.max(largestBatch, batch.size());
+        }
+        return largestBatch;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return The id of the last event relayed from each shard. Later events are still to be published as
+     * {@link CatalogChangesRelayedEvent}s.
+     */
+    public long[] getPosition() {
+        return snapshot();
+    }
+
+    /**
+     * The ids of the last relayed event per shard. They start at the newest events when first needed rather than at
+     * construction, so the context can start without touching the database.
+     */
+    private AtomicLongArray cursors() {
+        AtomicLongArray current = cursors;
+        if (current == null) {
+            dispatchLock.lock();
+            try {
+                if (cursors == null) {
+                    long[] newest = new long[shardRouter.getShardCount()];
+                    for (int shard = 0; shard < newest.length; shard++) {
+                        newest[shard] = shardRouter.on(shard, outboxEventRepository::findMaxId);
+                    }
+                    cursors = new AtomicLongArray(newest);
+                }
+                current = cursors;
+            } finally {
+                dispatchLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private long[] snapshot() {
+        AtomicLongArray current = cursors();
+        long[] position = new long[current.length()];
+        for (int shard = 0; shard < position.length; shard++) {
+            position[shard] = current.get(shard);
+        }
+        return position;
+    }
+
+    /**
+     * @param oldestRunning On Postgres, the oldest transaction running before the events were read, if there is a gap.
+     * @return The leading events of the batch that directly follow the cursor, skipping missing ids whose
+     * transactions have ended.
+     */
+    private List<OutboxEvent> consecutive(int shard, long cursor, List<OutboxEvent> read, Instant now, Long oldestRunning) {
+        List<OutboxEvent> batch = new ArrayList<>(read.size());
+        long expected = nextId(shard, cursor);
+        for (OutboxEvent event : read) {
+            if (event.getId() > expected) {
+                Gap gap = gaps.get(shard);
+                if (gap == null || gap.id() != expected) {
+                    Long horizon = databasePlatform.isPostgres()
+                            ? shardRouter.on(shard, outboxEventRepository::findNextTransaction) : null;
+                    gaps.put(shard, new Gap(expected, now, horizon));
+                    break;
+                }
+                if (!hasEnded(gap, now, oldestRunning)) {
+                    break;
+                }
+                log.info("Outbox events {} to {} of shard {} were rolled back, skipping them after {} ms",
+                        expected, event.getId() - shardRouter.getShardCount(), shard,
+                        Duration.between(gap.since(), now).toMillis());
+                gaps.remove(shard);
+            }
+            batch.add(event);
+            expected = nextId(shard, event.getId());
+        }
+        return batch;
+    }
+
+    /**
+     * @return Whether the transactions that could hold the missing id have all ended.
+     */
+    private boolean hasEnded(Gap gap, Instant now, Long oldestRunning) {
+        if (gap.horizon() != null) {
+            return oldestRunning != null && oldestRunning >= gap.horizon();
+        }
+        return !gap.since().plusMillis(gapTimeoutMillis).isAfter(now);
+    }
+
+    /**
+     * @return The first id after the given one that the shard hands out.
+     */
+    private long nextId(int shard, long after) {
+        long next = after + 1;
+        return next + Math.floorMod(shard - shardRouter.shardOf(next), shardRouter.getShardCount());
+    }
+
+    /**
+     * @return The position named by an event id, or null if it doesn't name one position per shard.
+     */
+    private long[] parsePosition(String eventId) {
+        String[] ids = eventId.trim().split("\\.");
+        if (ids.length != shardRouter.getShardCount()) {
+            return null;
+        }
+        try {
+            return Arrays.stream(ids).mapToLong(Long::parseLong).toArray();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether events right after the given position were already purged from some shard's outbox.
+     */
+    private boolean isPurged(long[] position) {
+        // Ids of one shard are the shard count apart.
+        int step = shardRouter.getShardCount();
+        for (int shard = 0; shard < position.length; shard++) {
+            long after = position[shard];
+            if (after < shardRouter.on(shard, outboxEventRepository::findMinId) - step) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void replay(Subscriber subscriber, long[] upTo) throws IOException {
+        for (int shard = 0; shard < upTo.length; shard++) {
+            while (subscriber.lastSent[shard] < upTo[shard]) {
+                long after = subscriber.lastSent[shard];
+                long until = upTo[shard];
+                List<OutboxEvent> batch = shardRouter.on(shard, () -> outboxEventRepository
+                        .findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(after, until, Limit.of(batchSize)));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (OutboxEvent event : batch) {
+                    subscriber.lastSent[shard] = event.getId();
+                    subscriber.emitter.send(toSseEvent(subscriber, event));
+                }
+            }
+        }
+    }
+
+    private boolean send(Subscriber subscriber, int shard, OutboxEvent event) {
+        if (event.getId() <= subscriber.lastSent[shard]) {
+            return true;
+        }
+        try {
+            subscriber.lastSent[shard] = event.getId();
+            subscriber.emitter.send(toSseEvent(subscriber, event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping catalog event subscriber: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private SseEmitter.SseEventBuilder toSseEvent(Subscriber subscriber, OutboxEvent event) {
+        return SseEmitter.event()
+                .id(Arrays.stream(subscriber.lastSent).mapToObj(String::valueOf).collect(Collectors.joining(".")))
+                .name((event.getAggregateType() + "." + event.getChangeType()).toLowerCase(Locale.ROOT))
+                .data(event.getPayload(), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * @param horizon On Postgres, the first transaction id not handed out when the gap was seen.
+     */
+    private record Gap(long id, Instant since, Long horizon) {
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final long[] lastSent;
+
+        private Subscriber(SseEmitter emitter, long[] lastSent) {
+            this.emitter = emitter;
+            this.lastSent = lastSent;
+        }
+    }
+}
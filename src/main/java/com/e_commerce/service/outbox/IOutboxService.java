@@ -0,0 +1,47 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Image;
+import com.e_commerce.model.OutboxEvent.ChangeType;
+import com.e_commerce.model.Product;
+
+import java.util.List;
+
+public interface IOutboxService {
+
+    /**
+     * @return The origin this node writes into its events, unique per running instance.
+     */
+    String getOrigin();
+
+    /**
+     * Records a product change in the outbox. Must be called inside the transaction that performs the change.
+     * @param product The product that was changed.
+     * @param changeType The kind of change.
+     * @return The id of the recorded event.
+     */
+    long recordProductChange(Product product, ChangeType changeType);
+
+    /**
+     * Records the same kind of change for many products with one batch insert. Must be called inside the
+     * transaction that performs the changes.
+     * @param products The products that were changed; only their ids are read for deletions.
+     * @param changeType The kind of change.
+     * @return The ids of the recorded events, in the order of the products.
+     */
+    List<Long> recordProductChanges(List<Product> products, ChangeType changeType);
+
+    /**
+     * Records a category change in the outbox. Must be called inside the transaction that performs the change.
+     * @param category The category that was changed.
+     * @param changeType The kind of change.
+     */
+    void recordCategoryChange(Category category, ChangeType changeType);
+
+    /**
+     * Records an image change in the outbox. Must be called inside the transaction that performs the change.
+     * @param image The image that was changed.
+     * @param changeType The kind of change.
+     */
+    void recordImageChange(Image image, ChangeType changeType);
+}
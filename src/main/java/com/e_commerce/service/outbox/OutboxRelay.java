@@ -0,0 +1,50 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.repository.OutboxEventRepository;
+import com.e_commerce.service.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final CatalogEventStream catalogEventStream;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ShardRouter shardRouter;
+
+    @Value("${catalog.outbox.retention:P7D}")
+    private Duration retention;
+
+    @Value("${catalog.outbox.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Drains the outbox in batches until it has caught up, then waits for the next tick.
+     */
+    @Scheduled(fixedDelayString = "${catalog.outbox.relay-interval-ms:500}")
+    public void relay() {
+        int published;
+        do {
+            published = catalogEventStream.relayNextBatch();
+        } while (published == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.outbox.purge-interval-ms:3600000}")
+    public void purgeExpiredEvents() {
+        Instant cutoff = Instant.now().minus(retention);
+        shardRouter.forEachShard(shard -> {
+            int deleted = shardRouter.inTransaction(shard, () -> outboxEventRepository.deleteByCreatedAtBefore(cutoff));
+            if (deleted > 0) {
+                log.info("Purged {} outbox events older than {} on shard {}", deleted, retention, shard);
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Image;
+import com.e_commerce.model.OutboxEvent;
+import com.e_commerce.model.OutboxEvent.AggregateType;
+import com.e_commerce.model.OutboxEvent.ChangeType;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxService implements IOutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final String origin = UUID.randomUUID().toString();
+
+    @Override
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long recordProductChange(Product product, ChangeType changeType) {
+        return record(AggregateType.PRODUCT, product.getId(), changeType, productPayload(product, changeType));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> recordProductChanges(List<Product> products, ChangeType changeType) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement("insert into outbox_event (aggregate_type, aggregate_id, "
+                + "change_type, payload, created_at, origin) values (?, ?, ?, ?, ?, ?)", new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Product product = products.get(i);
+                        statement.setString(1, AggregateType.PRODUCT.name());
+                        statement.setLong(2, product.getId());
+                        statement.setString(3, changeType.name());
+                        statement.setString(4, toJson(productPayload(product, changeType)));
+                        statement.setTimestamp(5, now);
+                        statement.setString(6, origin);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return products.size();
+                    }
+                }, keys);
+        // The only generated column; its name is upper case on some databases.
+        return keys.getKeyList().stream().map(key -> ((Number) key.values().iterator().next()).longValue()).toList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCategoryChange(Category category, ChangeType changeType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", category.getId());
+        if (changeType != ChangeType.DELETED) {
+            payload.put("name", category.getName());
+            payload.put("parentId", category.getParentId());
+            payload.put("path", category.getPath());
+        }
+        record(AggregateType.CATEGORY, category.getId(), changeType, payload);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordImageChange(Image image, ChangeType changeType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", image.getId());
+        payload.put("productId", image.getProduct() != null ? image.getProduct().getId() : null);
+        if (changeType != ChangeType.DELETED) {
+            payload.put("fileName", image.getFileName());
+            payload.put("fileType", image.getFileType());
+            payload.put("downloadUrl", image.getDownloadUrl());
+        }
+        record(AggregateType.IMAGE, image.getId(), changeType, payload);
+    }
+
+    private static Map<String, Object> productPayload(Product product, ChangeType changeType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", product.getId());
+        if (changeType != ChangeType.DELETED) {
+            payload.put("name", product.getName());
+            payload.put("brand", product.getBrand());
+            payload.put("price", product.getPrice());
+            payload.put("inventory", product.getInventory());
+            payload.put("categoryId", product.getCategory() != null ? product.getCategory().getId() : null);
+        }
+        return payload;
+    }
+
+    private long record(AggregateType aggregateType, Long aggregateId, ChangeType changeType, Map<String, Object> payload) {
+        OutboxEvent event = new OutboxEvent(aggregateType, aggregateId, changeType, toJson(payload));
+        event.setOrigin(origin);
+        return outboxEventRepository.save(event).getId();
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outbox payload", e);
+        }
+    }
+}
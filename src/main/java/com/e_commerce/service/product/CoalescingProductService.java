@@ -0,0 +1,227 @@
+package com.e_commerce.service.product;
+
+import com.e_commerce.dto.ImageDto;
+import com.e_commerce.dto.ProductDto;
+import com.e_commerce.dto.ProductLookupDto;
+import com.e_commerce.model.Image;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ProductFilter;
+import com.e_commerce.request.AddProductRequest;
+import com.e_commerce.request.ProductUpdateRequest;
+import com.e_commerce.request.ProductUpsertRequest;
+import com.e_commerce.service.category.CoalescingCategoryService;
+import com.e_commerce.service.singleflight.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Shares one database query between concurrent identical product reads. Writes go straight to the delegate.
+ * <p>
+ * The caller that runs a shared query gets the entities of its own session. The others get detached copies of the
+ * products, their category and their images, made from state the delegate already loaded, so no thread touches
+ * another thread's session. Batch lookups and sparse field maps are copied the same way. Reads inside a transaction
+ * aren't shared, because the caller needs entities of its own session to write with.
+ */
+@Service
+@Primary
+public class CoalescingProductService implements IProductService {
+
+    private final ProductService delegate;
+    private final SingleFlight singleFlight;
+
+    public CoalescingProductService(ProductService delegate,
+                                    @Value("${catalog.single-flight.timeout-ms:5000}") long timeoutMillis) {
+        this.delegate = delegate;
+        this.singleFlight = new SingleFlight(Duration.ofMillis(timeoutMillis));
+    }
+
+    @Override
+    public Product addProduct(AddProductRequest request) {
+        return delegate.addProduct(request);
+    }
+
+    @Override
+    public Product getProductById(Long id) {
+        return shared(Arrays.asList("getProductById", id), () -> delegate.getProductById(id),
+                CoalescingProductService::detached);
+    }
+
+    @Override
+    public void deleteProductById(Long id) {
+        delegate.deleteProductById(id);
+    }
+
+    @Override
+    public Product updateProduct(ProductUpdateRequest request, Long productId) {
+        return delegate.updateProduct(request, productId);
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return shared(List.of("getAllProducts"), delegate::getAllProducts, CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByCategory(String categoryName) {
+        return shared(Arrays.asList("getProductByCategory", categoryName),
+                () -> delegate.getProductByCategory(categoryName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByCategoryTree(String categoryName) {
+        return shared(Arrays.asList("getProductByCategoryTree", categoryName),
+                () -> delegate.getProductByCategoryTree(categoryName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByBrand(String brandName) {
+        return shared(Arrays.asList("getProductByBrand", brandName),
+                () -> delegate.getProductByBrand(brandName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByCategoryAndBrand(String categoryName, String brandName) {
+        return shared(Arrays.asList("getProductByCategoryAndBrand", categoryName, brandName),
+                () -> delegate.getProductByCategoryAndBrand(categoryName, brandName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByName(String productName) {
+        return shared(Arrays.asList("getProductByName", productName),
+                () -> delegate.getProductByName(productName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public List<Product> getProductByBrandAndName(String brandName, String productName) {
+        return shared(Arrays.asList("getProductByBrandAndName", brandName, productName),
+                () -> delegate.getProductByBrandAndName(brandName, productName), CoalescingProductService::detachedAll);
+    }
+
+    @Override
+    public Long countProductsByBrandAndName(String brandName, String productName) {
+        // Served from the in-memory statistics, nothing to coalesce.
+        return delegate.countProductsByBrandAndName(brandName, productName);
+    }
+
+    @Override
+    public List<ProductLookupDto<ProductDto>> getProductsByIds(List<Long> ids) {
+        return shared(Arrays.asList("getProductsByIds", ids), () -> delegate.getProductsByIds(ids),
+                lookups -> detachedLookups(lookups, CoalescingProductService::detachedDto));
+    }
+
+    @Override
+    public List<ProductDto> upsertProducts(List<ProductUpsertRequest> requests) {
+        return delegate.upsertProducts(requests);
+    }
+
+    @Override
+    public List<Map<String, Object>> getProductFields(ProductFilter filter, Set<String> fields) {
+        return shared(Arrays.asList("getProductFields", filter, fields), () -> delegate.getProductFields(filter, fields),
+                products -> products.stream().map(CoalescingProductService::detachedFields).toList());
+    }
+
+    @Override
+    public List<ProductLookupDto<Map<String, Object>>> getProductFieldsByIds(List<Long> ids, Set<String> fields) {
+        return shared(Arrays.asList("getProductFieldsByIds", ids, fields), () -> delegate.getProductFieldsByIds(ids, fields),
+                lookups -> detachedLookups(lookups, CoalescingProductService::detachedFields));
+    }
+
+    @Override
+    public ProductDto convertToDto(Product product) {
+        return delegate.convertToDto(product);
+    }
+
+    private <T> T shared(List<?> key, Supplier<T> loader, UnaryOperator<T> detach) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+        return singleFlight.execute(key, loader, detach);
+    }
+
+    private static <T> List<ProductLookupDto<T>> detachedLookups(List<ProductLookupDto<T>> lookups, UnaryOperator<T> detach) {
+        return lookups.stream()
+                .map(lookup -> new ProductLookupDto<>(lookup.getId(), lookup.isFound(),
+                        lookup.getProduct() != null ? detach.apply(lookup.getProduct()) : null))
+                .toList();
+    }
+
+    private static ProductDto detachedDto(ProductDto product) {
+        ProductDto copy = new ProductDto();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setBrand(product.getBrand());
+        copy.setDescription(product.getDescription());
+        copy.setPrice(product.getPrice());
+        copy.setInventory(product.getInventory());
+        copy.setCategory(CoalescingCategoryService.detached(product.getCategory()));
+        if (product.getImages() != null) {
+            List<ImageDto> images = new ArrayList<>(product.getImages().size());
+            for (ImageDto image : product.getImages()) {
+                ImageDto imageCopy = new ImageDto();
+                imageCopy.setId(image.getId());
+                imageCopy.setFileName(image.getFileName());
+                imageCopy.setDownloadUrl(image.getDownloadUrl());
+                images.add(imageCopy);
+            }
+            copy.setImages(images);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the maps and lists of a sparse product; the values in them are immutable.
+     */
+    private static Map<String, Object> detachedFields(Map<String, Object> fields) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        fields.forEach((name, value) -> copy.put(name, detachedValue(value)));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object detachedValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return detachedFields((Map<String, Object>) map);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(CoalescingProductService::detachedValue).collect(Collectors.toCollection(ArrayList::new));
+        }
+        return value;
+    }
+
+    private static List<Product> detachedAll(List<Product> products) {
+        return products.stream().map(CoalescingProductService::detached).toList();
+    }
+
+    private static Product detached(Product product) {
+        Product copy = new Product(product.getName(), product.getBrand(), product.getDescription(), product.getPrice(),
+                product.getInventory(), CoalescingCategoryService.detached(product.getCategory()));
+        copy.setId(product.getId());
+        if (product.getImages() != null) {
+            List<Image> images = new ArrayList<>(product.getImages().size());
+            for (Image image : product.getImages()) {
+                Image imageCopy = new Image();
+                imageCopy.setId(image.getId());
+                imageCopy.setFileName(image.getFileName());
+                imageCopy.setFileType(image.getFileType());
+                imageCopy.setDownloadUrl(image.getDownloadUrl());
+                imageCopy.setProduct(copy);
+                images.add(imageCopy);
+            }
+            copy.setImages(images);
+        }
+        return copy;
+    }
+}
@@ -1,18 +1,26 @@
 package com.e_commerce.service.product;
 
 import com.e_commerce.dto.ProductDto;
+import com.e_commerce.dto.ProductLookupDto;
 import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ProductFilter;
 import com.e_commerce.request.AddProductRequest;
 import com.e_commerce.request.ProductUpdateRequest;
+import com.e_commerce.request.ProductUpsertRequest;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface IProductService {
 
     /**
-     * Adds a new product to the system based on the provided request.
+     * Adds a new product to the system based on the provided request. Adding a product whose brand and name
+     * already exist changes nothing, so a retried request doesn't create a duplicate.
      * @param request The request object containing details for the new product.
-     * @return The product object that was added.
+     * @return The product object that was added, or the existing product with the same brand and name.
+     * @throws com.e_commerce.exceptions.AlreadyExistsException if a product with the same brand and name exists
+     * with another description, price, inventory or category.
      */
     Product addProduct(AddProductRequest request);
 
@@ -37,6 +45,7 @@ public interface IProductService {
      * @param productId The ID of the product to update.
      * @return The updated product object.
      * @throws com.e_commerce.exceptions.ProductNotFoundException if product with given ID is not found.
+     * @throws com.e_commerce.exceptions.AlreadyExistsException if another product has the requested brand and name.
      */
     Product updateProduct(ProductUpdateRequest request, Long productId);
 
@@ -53,6 +62,13 @@ public interface IProductService {
      */
     List<Product> getProductByCategory(String categoryName);
 
+    /**
+     * Retrieves all products in the named category and in any of its descendant categories.
+     * @param categoryName The name of the category at the root of the subtree.
+     * @return A list of product objects anywhere under the specified category, or an empty list if it doesn't exist.
+     */
+    List<Product> getProductByCategoryTree(String categoryName);
+
     /**
      * Retrieves a list of products filtered by brand name.
      * @param brandName The name of the brand to filter by.
@@ -91,6 +107,41 @@ public interface IProductService {
      */
     Long countProductsByBrandAndName(String brandName, String productName);
 
+    /**
+     * Retrieves several products at once with a single product query and a single image metadata query.
+     * @param ids The IDs of the products to retrieve.
+     * @return One entry per requested ID, in request order, marking IDs that were not found.
+     * @throws IllegalArgumentException if more IDs are requested than a batch allows.
+     */
+    List<ProductLookupDto<ProductDto>> getProductsByIds(List<Long> ids);
+
+    /**
+     * Creates or updates several products in one transaction. Entries with an ID update that product, entries
+     * without one update the product with the same brand and name or create a new one; missing categories are created.
+     * @param requests The products to write.
+     * @return The written products, in request order.
+     * @throws com.e_commerce.exceptions.ProductNotFoundException if an entry refers to an unknown product ID.
+     * @throws IllegalArgumentException if the batch is larger than allowed or names a brand and name twice without IDs.
+     * @throws com.e_commerce.exceptions.AlreadyExistsException if an entry gives a product the brand and name of another.
+     */
+    List<ProductDto> upsertProducts(List<ProductUpsertRequest> requests);
+
+    /**
+     * Retrieves only the requested fields of the matching products, reading only the columns those fields need.
+     * @param filter The criteria the products must match.
+     * @param fields Validated ProductDto field names, see {@link com.e_commerce.dto.ProductFields}.
+     * @return One map per product holding exactly the requested fields, ordered by product ID.
+     */
+    List<Map<String, Object>> getProductFields(ProductFilter filter, Set<String> fields);
+
+    /**
+     * Sparse variant of {@link #getProductsByIds(List)}.
+     * @param ids The product IDs to look up, at most the configured batch size.
+     * @param fields Validated ProductDto field names.
+     * @return One entry per requested ID, in request order, holding only the requested fields of found products.
+     */
+    List<ProductLookupDto<Map<String, Object>>> getProductFieldsByIds(List<Long> ids, Set<String> fields);
+
     /**
      * Converts a Product entity to a ProductDto.
      * @param product The Product entity to convert.
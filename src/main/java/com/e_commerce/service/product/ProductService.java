@@ -1,23 +1,59 @@
 package com.e_commerce.service.product;
 
+import com.e_commerce.dto.CategoryNodeDto;
 import com.e_commerce.dto.ImageDto;
 import com.e_commerce.dto.ProductDto;
+import com.e_commerce.dto.ProductLookupDto;
+import com.e_commerce.exceptions.AlreadyExistsException;
 import com.e_commerce.exceptions.ProductNotFoundException;
 import com.e_commerce.model.Category;
 import com.e_commerce.model.Image;
+import com.e_commerce.model.OutboxEvent.ChangeType;
 import com.e_commerce.model.Product;
 import com.e_commerce.repository.CategoryRepository;
 import com.e_commerce.repository.ImageRepository;
+import com.e_commerce.repository.ProductCreateRepository;
+import com.e_commerce.repository.ProductProjectionRepository;
 import com.e_commerce.repository.ProductRepository;
+import com.e_commerce.repository.projection.ImageSummary;
+import com.e_commerce.repository.projection.ProductFilter;
 import com.e_commerce.request.AddProductRequest;
 import com.e_commerce.request.ProductUpdateRequest;
+import com.e_commerce.request.ProductUpsertRequest;
+import com.e_commerce.service.category.CategoryPath;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.category.ICategoryService;
+import com.e_commerce.service.outbox.IOutboxService;
+import com.e_commerce.service.sharding.RouteToShard;
+import com.e_commerce.service.sharding.ShardRouter;
+import com.e_commerce.service.stats.ICatalogStatsService;
+import com.e_commerce.service.stats.ProductFacts;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+/**
+ * Product reads and writes. Products are returned with their images loaded, so they can be used after the
+ * persistence context that loaded them is gone.
+ * <p>
+ * When the catalog is sharded, single-product methods run on the shard that holds the product and list reads
+ * query all shards in parallel, merging the results by id.
+ */
 @Service
 @RequiredArgsConstructor
 public class ProductService implements IProductService {
@@ -26,86 +62,266 @@ public class ProductService implements IProductService {
     private final CategoryRepository categoryRepository;
     private final ImageRepository imageRepository;
     private final ModelMapper modelMapper;
+    private final IOutboxService outboxService;
+    private final ICategoryService categoryService;
+    private final CategoryTreeCache categoryTreeCache;
+    private final ProductProjectionRepository productProjectionRepository;
+    private final ICatalogStatsService catalogStatsService;
+    private final ShardRouter shardRouter;
+    private final ProductCreateRepository productCreateRepository;
 
+    private final Lock[] createLocks = IntStream.range(0, 64).mapToObj(i -> new ReentrantLock()).toArray(Lock[]::new);
+
+    @Value("${catalog.batch.max-size:200}")
+    private int maxBatchSize;
+
+    /**
+     * On Postgres a new product in a cached category takes a single statement, as does a retry. Elsewhere, creates
+     * of one brand and name take turns on this node, and a create that collides with one committed by another node
+     * runs again and finds that product.
+     */
     @Override
+    @RouteToShard(category = "#request.category?.name")
     public Product addProduct(AddProductRequest request) {
-        // check if the category is found in the database.
-        // If yes, set it as the new product category.
-        // if no, then save it as a new category.
-        // Then set it as a new product category.
-
-        Category category = Optional.ofNullable(categoryRepository.findByName(request.getCategory().getName()))
-                .orElseGet(() -> {
-                 Category newCategory = new Category(request.getCategory().getName());
-                 return categoryRepository.save(newCategory);
-                });
+        int shard = shardRouter.currentShard();
+        Supplier<Product> create = () -> shardRouter.inTransaction(shard, () -> createOrGet(request));
+        if (productCreateRepository.isUpsertSupported()) {
+            return create.get();
+        }
+        Lock lock = createLocks[Math.floorMod(Objects.hash(request.getBrand(), request.getName()), createLocks.length)];
+        lock.lock();
+        try {
+            return create.get();
+        } catch (DataIntegrityViolationException e) {
+            if (!ProductCreateRepository.isNaturalKeyViolation(e)) {
+                throw e;
+            }
+            return create.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Product createOrGet(AddProductRequest request) {
+        Category category = resolveCategory(request.getCategory().getName());
         request.setCategory(category);
-        return productRepository.save(createProduct(request, category));
+        ProductCreateRepository.Result result = productCreateRepository.createOrGet(createProduct(request, category));
+        Product product = result.product();
+        if (!result.created()) {
+            if (!describes(request, product)) {
+                throw new AlreadyExistsException("Product " + request.getName() + " of brand " + request.getBrand()
+                        + " already exists with other details");
+            }
+            return product;
+        }
+        long eventId = outboxService.recordProductChange(product, ChangeType.CREATED);
+        catalogStatsService.recordChange(null, ProductFacts.of(product), eventId);
+        return product;
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @RouteToShard(id = "#id")
     public Product getProductById(Long id) {
         return productRepository.findById(id)
+                .map(ProductService::withImages)
                 .orElseThrow(()-> new ProductNotFoundException("Product not found!"));
     }
 
     @Override
+    @Transactional
+    @RouteToShard(id = "#id")
     public void deleteProductById(Long id) {
         productRepository.findById(id)
                 .ifPresentOrElse( deletedProduct -> {
+                        ProductFacts before = ProductFacts.of(deletedProduct);
+                        for (ImageSummary image : imageRepository.findSummariesByProductIdIn(List.of(id))) {
+                            Image deletedImage = new Image();
+                            deletedImage.setId(image.getId());
+                            deletedImage.setProduct(deletedProduct);
+                            outboxService.recordImageChange(deletedImage, ChangeType.DELETED);
+                        }
+                        // Image data is freed in the background, the delete only leaves tombstones behind.
+                        imageRepository.tombstoneByProductId(id, Instant.now());
                         deletedProduct.setCategory(null);       // Set Category to be null first to detach the product element in DB
                         productRepository.delete(deletedProduct);
+                        long eventId = outboxService.recordProductChange(deletedProduct, ChangeType.DELETED);
+                        catalogStatsService.recordChange(before, null, eventId);
                         },
                         ()-> {throw new ProductNotFoundException("Product not found!");});
     }
 
     @Override
+    @Transactional
+    @RouteToShard(id = "#productId")
     public Product updateProduct(ProductUpdateRequest request, Long productId) {
         return productRepository.findById(productId)
-                .map(existingProduct -> updateExistingProduct(existingProduct, request))
-                .map(productRepository :: save)
+                .map(existingProduct -> {
+                    ProductFacts before = ProductFacts.of(existingProduct);
+                    Product updatedProduct = checkingNaturalKey(() -> productRepository.save(updateExistingProduct(existingProduct, request)),
+                            "Product " + request.getName() + " of brand " + request.getBrand() + " already exists");
+                    long eventId = outboxService.recordProductChange(updatedProduct, ChangeType.UPDATED);
+                    catalogStatsService.recordChange(before, ProductFacts.of(updatedProduct), eventId);
+                    return withImages(updatedProduct);
+                })
                 .orElseThrow(() -> new ProductNotFoundException("Product not found!"));
     }
 
     @Override
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return gatherProducts(productRepository::findAll);
     }
 
     @Override
     public List<Product> getProductByCategory(String categoryName) {
-        return productRepository.findByCategoryName(categoryName);
+        return gatherProducts(() -> productRepository.findByCategoryName(categoryName));
+    }
+
+    @Override
+    public List<Product> getProductByCategoryTree(String categoryName) {
+        return categoryTreeCache.findByName(categoryName)
+                .map(category -> gatherProducts(() -> productRepository.findByCategoryPathRange(category.getPath(), CategoryPath.upperBound(category.getPath()))))
+                .orElseGet(List::of);
     }
 
     @Override
     public List<Product> getProductByBrand(String brandName) {
-        return productRepository.findByBrand(brandName);
+        return gatherProducts(() -> productRepository.findByBrand(brandName));
     }
 
     @Override
     public List<Product> getProductByCategoryAndBrand(String categoryName, String brandName) {
-        return productRepository.findByCategoryNameAndBrand(categoryName, brandName);
+        return gatherProducts(() -> productRepository.findByCategoryNameAndBrand(categoryName, brandName));
     }
 
     @Override
     public List<Product> getProductByName(String productName) {
-        return productRepository.findByName(productName);
+        return gatherProducts(() -> productRepository.findByName(productName));
     }
 
     @Override
     public List<Product> getProductByBrandAndName(String brandName, String productName) {
-        return productRepository.findByBrandAndName(brandName, productName);
+        return gatherProducts(() -> productRepository.findByBrandAndName(brandName, productName));
     }
 
     @Override
     public Long countProductsByBrandAndName(String brandName, String productName) {
-        return productRepository.countByBrandAndName(brandName, productName);
+        if (catalogStatsService.isLoaded()) {
+            return catalogStatsService.countByBrandAndName(brandName, productName);
+        }
+        return shardRouter.gather(() -> List.of(productRepository.countByBrandAndName(brandName, productName))).stream()
+                .mapToLong(Long::longValue)
+                .sum();
     }
 
     @Override
+    public List<ProductLookupDto<ProductDto>> getProductsByIds(List<Long> ids) {
+        checkBatchSize(ids.size());
+        Map<Long, ProductDto> dtosById = shardRouter.gatherByShard(new LinkedHashSet<>(ids),
+                        shardIds -> convertToDtos(productRepository.findAllById(shardIds)), Comparator.comparing(ProductDto::getId))
+                .stream()
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+        return ids.stream()
+                .map(id -> new ProductLookupDto<>(id, dtosById.containsKey(id), dtosById.get(id)))
+                .toList();
+    }
+
+    /**
+     * With sharding, the batch is written in one transaction per shard, one shard after the other. Each shard's rows
+     * commit or fail together; a failure leaves the shards written before it committed.
+     */
+    @Override
+    public List<ProductDto> upsertProducts(List<ProductUpsertRequest> requests) {
+        checkBatchSize(requests.size());
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ProductUpsertRequest request = requests.get(i);
+            int shard = request.getId() != null ? shardRouter.shardOf(request.getId()) : shardRouter.shardFor(request.getCategory().getName());
+            positionsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+        ProductDto[] results = new ProductDto[requests.size()];
+        positionsByShard.forEach((shard, positions) -> {
+            List<ProductDto> saved = shardRouter.inTransaction(shard, () -> upsertOnShard(positions.stream().map(requests::get).toList()));
+            for (int i = 0; i < positions.size(); i++) {
+                results[positions.get(i)] = saved.get(i);
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    private List<ProductDto> upsertOnShard(List<ProductUpsertRequest> requests) {
+        Map<String, Category> categoriesByName = resolveCategories(requests);
+        Set<Long> ids = requests.stream().map(ProductUpsertRequest::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, Product> existingById = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<List<String>, Product> existingByKey = findByNaturalKey(requests);
+
+        List<Product> products = new ArrayList<>(requests.size());
+        List<ProductFacts> before = new ArrayList<>(requests.size());
+        for (ProductUpsertRequest request : requests) {
+            Category category = categoriesByName.get(request.getCategory().getName());
+            // Without an id, the brand and name pick the product to update, if there is one.
+            Product product = request.getId() != null ? existingById.get(request.getId())
+                    : existingByKey.get(Arrays.asList(request.getBrand(), request.getName()));
+            if (product == null && request.getId() == null) {
+                products.add(new Product(request.getName(), request.getBrand(), request.getDescription(),
+                        request.getPrice(), request.getInventory(), category));
+                before.add(null);
+                continue;
+            }
+            if (product == null) {
+                throw new ProductNotFoundException("Product id " + request.getId() + " not found!");
+            }
+            before.add(ProductFacts.of(product));
+            product.setName(request.getName());
+            product.setBrand(request.getBrand());
+            product.setDescription(request.getDescription());
+            product.setPrice(request.getPrice());
+            product.setInventory(request.getInventory());
+            product.setCategory(category);
+            products.add(product);
+        }
+
+        List<Product> savedProducts = checkingNaturalKey(() -> productRepository.saveAll(products),
+                "An entry renames a product to the brand and name of another product");
+        for (int i = 0; i < savedProducts.size(); i++) {
+            long eventId = outboxService.recordProductChange(savedProducts.get(i),
+                    before.get(i) == null ? ChangeType.CREATED : ChangeType.UPDATED);
+            catalogStatsService.recordChange(before.get(i), ProductFacts.of(savedProducts.get(i)), eventId);
+        }
+        return convertToDtos(savedProducts);
+    }
+
+    @Override
+    public List<Map<String, Object>> getProductFields(ProductFilter filter, Set<String> fields) {
+        if (filter.getIds() != null) {
+            checkBatchSize(filter.getIds().size());
+        }
+        if (filter.getCategoryTree() != null) {
+            Optional<String> categoryPath = categoryTreeCache.findByName(filter.getCategoryTree()).map(category -> category.getPath());
+            if (categoryPath.isEmpty()) {
+                return List.of();
+            }
+            filter = filter.withCategoryPath(categoryPath.get());
+        }
+        return new ArrayList<>(findFields(filter, fields).values());
+    }
+
+    @Override
+    public List<ProductLookupDto<Map<String, Object>>> getProductFieldsByIds(List<Long> ids, Set<String> fields) {
+        checkBatchSize(ids.size());
+        Map<Long, Map<String, Object>> productsById = findFields(ProductFilter.byIds(ids), fields);
+        return ids.stream()
+                .map(id -> new ProductLookupDto<>(id, productsById.containsKey(id), productsById.get(id)))
+                .toList();
+    }
+
+    @Override
+    @RouteToShard(id = "#product.id")
     public ProductDto convertToDto(Product product) {
         ProductDto productDto = modelMapper.map(product, ProductDto.class);
-        List<Image> images = imageRepository.findByProductId(product.getId());
+        List<Image> images = product.getImages() != null && Hibernate.isInitialized(product.getImages())
+                ? product.getImages() : imageRepository.findByProductId(product.getId());
         List<ImageDto> imageDtos = images.stream()
                 .map(image -> modelMapper.map(image, ImageDto.class))
                 .toList();
@@ -113,6 +329,169 @@ public class ProductService implements IProductService {
         return productDto;
     }
 
+    /**
+     * Runs a product query on every shard, loading the images of the found products before the transaction ends.
+     */
+    private List<Product> gatherProducts(Supplier<List<Product>> query) {
+        return shardRouter.gather(() -> withImages(query.get()), Comparator.comparing(Product::getId));
+    }
+
+    /**
+     * Runs a projected query on the shards holding the filtered ids, or on all shards without an id filter.
+     *
+     * @return The selected fields keyed and ordered by product id.
+     */
+    private Map<Long, Map<String, Object>> findFields(ProductFilter filter, Set<String> fields) {
+        Function<ProductFilter, List<Map.Entry<Long, Map<String, Object>>>> query =
+                shardFilter -> new ArrayList<>(productProjectionRepository.findFields(shardFilter, fields).entrySet());
+        List<Map.Entry<Long, Map<String, Object>>> rows = filter.getIds() != null
+                ? shardRouter.gatherByShard(filter.getIds(), shardIds -> query.apply(filter.withIds(shardIds)), Map.Entry.comparingByKey())
+                : shardRouter.gather(() -> query.apply(filter), Map.Entry.comparingByKey());
+        Map<Long, Map<String, Object>> productsById = new LinkedHashMap<>();
+        rows.forEach(row -> productsById.put(row.getKey(), row.getValue()));
+        return productsById;
+    }
+
+    private static Product withImages(Product product) {
+        Hibernate.initialize(product.getImages());
+        return product;
+    }
+
+    private static List<Product> withImages(List<Product> products) {
+        products.forEach(ProductService::withImages);
+        return products;
+    }
+
+    /**
+     * Converts products to DTOs, loading the image metadata of all of them with a single query.
+     *
+     * @param products The products to convert.
+     * @return The DTOs in the iteration order of the given products.
+     */
+    private List<ProductDto> convertToDtos(Collection<Product> products) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<ImageDto>> imagesByProductId = new HashMap<>();
+        for (ImageSummary image : imageRepository.findSummariesByProductIdIn(products.stream().map(Product::getId).toList())) {
+            ImageDto imageDto = new ImageDto();
+            imageDto.setId(image.getId());
+            imageDto.setFileName(image.getFileName());
+            imageDto.setDownloadUrl(image.getDownloadUrl());
+            imagesByProductId.computeIfAbsent(image.getProductId(), id -> new ArrayList<>()).add(imageDto);
+        }
+        return products.stream().map(product -> {
+            ProductDto productDto = modelMapper.map(product, ProductDto.class);
+            productDto.setImages(imagesByProductId.getOrDefault(product.getId(), List.of()));
+            return productDto;
+        }).toList();
+    }
+
+    /**
+     * Loads the existing products named by the id-less requests of a batch, keyed by brand and name.
+     *
+     * @throws IllegalArgumentException if two id-less requests name the same brand and name.
+     */
+    private Map<List<String>, Product> findByNaturalKey(List<ProductUpsertRequest> requests) {
+        Set<List<String>> keys = new HashSet<>();
+        for (ProductUpsertRequest request : requests) {
+            if (request.getId() == null && !keys.add(Arrays.asList(request.getBrand(), request.getName()))) {
+                throw new IllegalArgumentException("The batch names brand " + request.getBrand() + " and name "
+                        + request.getName() + " more than once");
+            }
+        }
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        Set<String> brands = keys.stream().map(key -> key.get(0)).collect(Collectors.toSet());
+        Set<String> names = keys.stream().map(key -> key.get(1)).collect(Collectors.toSet());
+        Map<List<String>, Product> productsByKey = new HashMap<>();
+        for (Product product : productRepository.findByBrandInAndNameIn(brands, names)) {
+            List<String> key = Arrays.asList(product.getBrand(), product.getName());
+            if (keys.contains(key)) {
+                productsByKey.putIfAbsent(key, product);
+            }
+        }
+        return productsByKey;
+    }
+
+    /**
+     * Finds a category in the category tree cache, falling back to the database and creating it when missing.
+     */
+    private Category resolveCategory(String name) {
+        return categoryTreeCache.findByName(name)
+                .map(ProductService::toCategory)
+                .orElseGet(() -> Optional.ofNullable(categoryRepository.findByName(name))
+                        .orElseGet(() -> categoryService.addCategory(new Category(name))));
+    }
+
+    /**
+     * A detached category holding the cached attributes, enough to reference it and to render it.
+     */
+    private static Category toCategory(CategoryNodeDto node) {
+        Category category = new Category(node.getName());
+        category.setId(node.getId());
+        category.setPath(node.getPath());
+        category.setDepth(node.getDepth());
+        if (node.getParentId() != null) {
+            Category parent = new Category();
+            parent.setId(node.getParentId());
+            category.setParent(parent);
+        }
+        return category;
+    }
+
+    /**
+     * Looks up the categories of a batch with one query and creates the missing ones.
+     */
+    private Map<String, Category> resolveCategories(List<ProductUpsertRequest> requests) {
+        Set<String> names = requests.stream().map(request -> request.getCategory().getName()).collect(Collectors.toSet());
+        Map<String, Category> categoriesByName = categoryRepository.findByNameIn(names).stream()
+                .collect(Collectors.toMap(Category::getName, Function.identity()));
+        for (String name : names) {
+            categoriesByName.computeIfAbsent(name, missing -> categoryService.addCategory(new Category(missing)));
+        }
+        return categoriesByName;
+    }
+
+    /**
+     * Runs a write and flushes it, so that a product taking the brand and name of another fails here, as a conflict.
+     */
+    private <T> T checkingNaturalKey(Supplier<T> write, String conflictMessage) {
+        try {
+            T result = write.get();
+            productRepository.flush();
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            if (ProductCreateRepository.isNaturalKeyViolation(e)) {
+                throw new AlreadyExistsException(conflictMessage);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a create request describes a stored product, as a retry of the request that created it does. The price
+     * is compared at the precision it is stored with.
+     */
+    private static boolean describes(AddProductRequest request, Product product) {
+        BigDecimal price = request.getPrice();
+        if (price != null && product.getPrice() != null) {
+            price = price.setScale(product.getPrice().scale(), RoundingMode.HALF_UP);
+        }
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        return Objects.equals(request.getDescription(), product.getDescription())
+                && (price == null ? product.getPrice() == null : product.getPrice() != null && price.compareTo(product.getPrice()) == 0)
+                && request.getInventory() == product.getInventory()
+                && Objects.equals(request.getCategory().getId(), categoryId);
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new IllegalArgumentException("A batch may contain at most " + maxBatchSize + " products, got " + size);
+        }
+    }
+
     /**
      * Creates a new Product object from the provided AddProductRequest and Category.
      *
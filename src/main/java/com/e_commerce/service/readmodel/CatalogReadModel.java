@@ -0,0 +1,442 @@
+package com.e_commerce.service.readmodel;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.model.OutboxEvent;
+import com.e_commerce.model.OutboxEvent.AggregateType;
+import com.e_commerce.model.OutboxEvent.ChangeType;
+import com.e_commerce.repository.OutboxEventRepository;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.outbox.CatalogChangesRelayedEvent;
+import com.e_commerce.service.outbox.CatalogEventStream;
+import com.e_commerce.service.outbox.IOutboxService;
+import com.e_commerce.service.sharding.ShardRouter;
+import com.e_commerce.service.stats.ProductFacts;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * The product facts of the whole catalog and the category tree, kept on local disk so a restarting node doesn't
+ * have to rebuild its in-memory state from the database.
+ * <p>
+ * The model is saved periodically and at shutdown to a memory-mapped {@link ReadModelFile}, together with the id of
+ * the last outbox event applied on every shard. At startup the file is mapped and only the outbox events after
+ * those watermarks are replayed from the database. A file whose watermark events are no longer in the outbox,
+ * because they were purged or the file belongs to another database, is ignored and the model is built from the
+ * products table instead. Changes made since the file was mapped are kept in memory on top of it, fed by the
+ * outbox relay, until the next save.
+ * <p>
+ * Relayed product changes written by other nodes are republished as a {@link RemoteProductChangesEvent}, with the
+ * product as the model knew it before the change.
+ * <p>
+ * Writes that bypass the outbox, such as manual SQL, aren't seen; the statistics built from the model still
+ * reconcile with the database periodically.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogReadModel {
+
+    private static final ProductFacts DELETED = new ProductFacts(null, null, null, null, 0);
+
+    private final DataSource dataSource;
+    private final OutboxEventRepository outboxEventRepository;
+    private final CatalogEventStream catalogEventStream;
+    private final CategoryTreeCache categoryTreeCache;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final IOutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, ProductFacts> changes = new ConcurrentHashMap<>();
+    // Also read without the lock, by findCategoryId.
+    private volatile ReadModelFile file;
+    private long[] applied;
+    private Instant[] appliedTimes;
+    private volatile boolean loaded;
+    private boolean dirty;
+
+    @Value("${catalog.read-model.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.read-model.path:${java.io.tmpdir}/e-commerce/catalog-read-model.bin}")
+    private Path path;
+
+    @Value("${catalog.outbox.batch-size:500}")
+    private int batchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Maps the saved file and replays the outbox events after it, or builds the model from the database when there
+     * is no usable file. Does nothing when already loaded.
+     */
+    public void load() {
+        boolean built;
+        lock.lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            ReadModelFile saved = openSaved();
+            built = saved == null;
+            if (built) {
+                build();
+                log.info("Built the read model of {} products from the database in {} ms", changes.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                file = saved;
+                applied = saved.watermarks();
+                appliedTimes = saved.watermarkTimes();
+                categoryTreeCache.seed(saved.categories());
+                int replayed = catchUp();
+                log.info("Mapped the read model of {} products saved at {} and replayed {} outbox events in {} ms",
+                        saved.productCount(), saved.savedAt(), replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+        if (built) {
+            save();
+        }
+    }
+
+    /**
+     * Discards the model and builds it again from the database, e.g. after rows were loaded without outbox events.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            build();
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+        save();
+    }
+
+    /**
+     * Passes every product to the consumer, in ascending id order, while holding off changes.
+     *
+     * @return The id of the last outbox event applied on each shard; the products passed reflect exactly the events
+     * up to these ids.
+     */
+    public long[] forEachProduct(BiConsumer<Long, ProductFacts> consumer) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<Long, ProductFacts>> products = merged(file, new TreeMap<>(changes));
+            while (products.hasNext()) {
+                Map.Entry<Long, ProductFacts> product = products.next();
+                consumer.accept(product.getKey(), product.getValue());
+            }
+            return applied.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks the product up without waiting for a load, save or catch-up in progress.
+     *
+     * @return The product's category as the model knows it, or empty when the model isn't loaded or doesn't know
+     * the product or its category.
+     */
+    public Optional<Long> findCategoryId(long productId) {
+        if (!loaded) {
+            return Optional.empty();
+        }
+        ProductFacts product = find(productId);
+        return product != null ? Optional.ofNullable(product.categoryId()) : Optional.empty();
+    }
+
+    @EventListener
+    public void onCatalogChanges(CatalogChangesRelayedEvent event) {
+        List<RemoteProductChangesEvent.Change> remote = new ArrayList<>();
+        lock.lock();
+        try {
+            // Events relayed before loading are replayed by the catch-up.
+            if (loaded) {
+                for (OutboxEvent outboxEvent : event.getEvents()) {
+                    RemoteProductChangesEvent.Change change = apply(outboxEvent);
+                    if (change != null && !outboxService.getOrigin().equals(outboxEvent.getOrigin())) {
+                        remote.add(change);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!remote.isEmpty()) {
+            eventPublisher.publishEvent(new RemoteProductChangesEvent(remote));
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void saveOnShutdown() {
+        save();
+    }
+
+    /**
+     * Writes the model to disk and maps the written file in place of the changes it now contains.
+     */
+    @Scheduled(initialDelayString = "${catalog.read-model.save-interval-ms:300000}",
+            fixedDelayString = "${catalog.read-model.save-interval-ms:300000}")
+    public void save() {
+        TreeMap<Long, ProductFacts> saved;
+        ReadModelFile base;
+        long[] watermarks;
+        Instant[] watermarkTimes;
+        lock.lock();
+        try {
+            if (!loaded || !dirty) {
+                return;
+            }
+            saved = new TreeMap<>(changes);
+            base = file;
+            watermarks = applied.clone();
+            watermarkTimes = appliedTimes.clone();
+            dirty = false;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            long start = System.nanoTime();
+            ReadModelFile.write(path, watermarks, watermarkTimes, flatten(categoryTreeCache.getRoots()), merged(base, saved));
+            ReadModelFile written = ReadModelFile.open(path, watermarks.length);
+            lock.lock();
+            try {
+                file = written;
+                // Changes made while writing aren't in the file and stay.
+                saved.forEach(changes::remove);
+            } finally {
+                lock.unlock();
+            }
+            log.info("Saved the read model of {} products to {} in {} ms", written.productCount(), path,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save the read model to {}", path, e);
+            lock.lock();
+            try {
+                dirty = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return The saved file if its watermark events are still in the outbox, otherwise null.
+     */
+    private ReadModelFile openSaved() {
+        ReadModelFile saved;
+        try {
+            saved = ReadModelFile.open(path, shardRouter.getShardCount());
+        } catch (IOException e) {
+            log.warn("Ignoring the saved read model: {}", e.getMessage());
+            return null;
+        }
+        if (saved == null) {
+            return null;
+        }
+        long[] watermarks = saved.watermarks();
+        Instant[] times = saved.watermarkTimes();
+        for (int shard = 0; shard < watermarks.length; shard++) {
+            long watermark = watermarks[shard];
+            Instant time = times[shard];
+            Optional<OutboxEvent> event = shardRouter.on(shard, () -> outboxEventRepository.findById(watermark));
+            if (time == null || event.isEmpty() || !time.equals(event.get().getCreatedAt().truncatedTo(ChronoUnit.MICROS))) {
+                log.info("Ignoring the read model saved at {}: its outbox events are no longer retained or belong to another database",
+                        saved.savedAt());
+                return null;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Replays the outbox events between the watermarks and the events the relay will publish next.
+     */
+    private int catchUp() {
+        long[] upTo = catalogEventStream.getPosition();
+        int replayed = 0;
+        for (int shard = 0; shard < upTo.length; shard++) {
+            int current = shard;
+            while (applied[shard] < upTo[shard]) {
+                long after = applied[shard];
+                List<OutboxEvent> batch = shardRouter.on(shard, () -> outboxEventRepository
+                        .findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(after, upTo[current], Limit.of(batchSize)));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (OutboxEvent event : batch) {
+                    if (event.getAggregateType() == AggregateType.CATEGORY) {
+                        // The seeded tree predates this change.
+                        categoryTreeCache.invalidateAfterCommit();
+                    }
+                    apply(event);
+                }
+                replayed += batch.size();
+            }
+        }
+        return replayed;
+    }
+
+    private void build() {
+        // Taken first: changes committed during the scan are in the products and are also replayed after it.
+        long[] position = catalogEventStream.getPosition();
+        file = null;
+        changes.clear();
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(1000);
+        shardRouter.forEachShard(shard -> shardRouter.inTransaction(shard, () -> {
+            cursor.query("select id, category_id, brand, name, price, inventory from product", (RowCallbackHandler) row ->
+                    changes.put(row.getLong("id"), new ProductFacts(row.getObject("category_id", Long.class),
+                            row.getString("brand"), row.getString("name"), row.getBigDecimal("price"), row.getInt("inventory"))));
+            return null;
+        }));
+        applied = position;
+        appliedTimes = new Instant[position.length];
+        for (int shard = 0; shard < position.length; shard++) {
+            long id = position[shard];
+            appliedTimes[shard] = shardRouter.on(shard, () -> outboxEventRepository.findById(id))
+                    .map(event -> event.getCreatedAt().truncatedTo(ChronoUnit.MICROS))
+                    .orElse(null);
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return The product before and after the event, or null when the event isn't a product change or was applied
+     * already.
+     */
+    private RemoteProductChangesEvent.Change apply(OutboxEvent event) {
+        int shard = shardRouter.shardOf(event.getId());
+        if (event.getId() <= applied[shard]) {
+            return null;
+        }
+        applied[shard] = event.getId();
+        appliedTimes[shard] = event.getCreatedAt().truncatedTo(ChronoUnit.MICROS);
+        dirty = true;
+        if (event.getAggregateType() != AggregateType.PRODUCT) {
+            return null;
+        }
+        ProductFacts before = find(event.getAggregateId());
+        if (event.getChangeType() == ChangeType.DELETED) {
+            changes.put(event.getAggregateId(), DELETED);
+            return before != null ? new RemoteProductChangesEvent.Change(before, null, event.getId()) : null;
+        }
+        try {
+            JsonNode payload = objectMapper.readTree(event.getPayload());
+            ProductFacts after = new ProductFacts(
+                    payload.path("categoryId").isNumber() ? payload.get("categoryId").asLong() : null,
+                    payload.path("brand").textValue(), payload.path("name").textValue(),
+                    payload.path("price").isNumber() ? payload.get("price").decimalValue() : null,
+                    payload.path("inventory").asInt());
+            changes.put(event.getAggregateId(), after);
+            return new RemoteProductChangesEvent.Change(before, after, event.getId());
+        } catch (JsonProcessingException e) {
+            log.error("Skipping unreadable outbox event {} in the read model", event.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The product as the model knows it, or null when it doesn't exist.
+     */
+    private ProductFacts find(long id) {
+        ProductFacts changed = changes.get(id);
+        if (changed != null) {
+            return changed != DELETED ? changed : null;
+        }
+        return file != null ? file.find(id) : null;
+    }
+
+    /**
+     * Merges the saved products with the changes made since, in ascending id order and without deleted products.
+     */
+    private static Iterator<Map.Entry<Long, ProductFacts>> merged(ReadModelFile base, NavigableMap<Long, ProductFacts> overlay) {
+        Iterator<Map.Entry<Long, ProductFacts>> changed = overlay.entrySet().iterator();
+        int count = base != null ? base.productCount() : 0;
+        return new Iterator<>() {
+            private int index;
+            private Map.Entry<Long, ProductFacts> nextChange = changed.hasNext() ? changed.next() : null;
+            private Map.Entry<Long, ProductFacts> next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<Long, ProductFacts> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Long, ProductFacts> current = next;
+                next = advance();
+                return current;
+            }
+
+            private Map.Entry<Long, ProductFacts> advance() {
+                while (index < count || nextChange != null) {
+                    long savedId = index < count ? base.productId(index) : Long.MAX_VALUE;
+                    Map.Entry<Long, ProductFacts> candidate;
+                    if (nextChange != null && nextChange.getKey() <= savedId) {
+                        if (nextChange.getKey() == savedId) {
+                            index++;
+                        }
+                        candidate = nextChange;
+                        nextChange = changed.hasNext() ? changed.next() : null;
+                    } else {
+                        candidate = Map.entry(savedId, base.product(index++));
+                    }
+                    if (candidate.getValue() != DELETED) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static List<CategoryNodeDto> flatten(List<CategoryNodeDto> roots) {
+        List<CategoryNodeDto> categories = new ArrayList<>();
+        Deque<CategoryNodeDto> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            CategoryNodeDto category = pending.poll();
+            categories.add(category);
+            pending.addAll(category.getChildren());
+        }
+        return categories;
+    }
+}
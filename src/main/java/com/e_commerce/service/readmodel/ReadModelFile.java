@@ -0,0 +1,312 @@
+package com.e_commerce.service.readmodel;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.service.stats.ProductFacts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The file the read model is saved in, read through a memory mapping.
+ * <p>
+ * Layout: a header with the outbox watermark of every shard, fixed-width product records sorted by id, fixed-width
+ * category records, and the strings both refer to by offset. A CRC32C covers the body and then the header, all but
+ * the checksum field itself, so a damaged watermark or offset is caught as well as damaged records.
+ * Opening the file only verifies the checksum; records are decoded from the mapping when they are iterated.
+ */
+final class ReadModelFile {
+
+    static final int VERSION = 2;
+
+    private static final long MAGIC = 0x4341545245414431L; // "CATREAD1"
+    private static final int HEADER_SIZE = 72;
+    private static final int CHECKSUM_OFFSET = 52;
+    private static final int PRODUCT_SIZE = 40;
+    private static final int CATEGORY_SIZE = 32;
+    private static final long NO_ID = Long.MIN_VALUE;
+    private static final short NO_PRICE = Short.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final long[] watermarks;
+    private final Instant[] watermarkTimes;
+    private final Instant savedAt;
+    private final int productCount;
+    private final int categoryCount;
+    private final int productsOffset;
+    private final int categoriesOffset;
+    private final int stringsOffset;
+
+    private ReadModelFile(ByteBuffer buffer, int shardCount) {
+        this.buffer = buffer;
+        this.savedAt = Instant.ofEpochMilli(buffer.getLong(12));
+        this.productCount = buffer.getInt(20);
+        this.categoryCount = buffer.getInt(24);
+        this.productsOffset = buffer.getInt(28);
+        this.categoriesOffset = buffer.getInt(32);
+        this.stringsOffset = buffer.getInt(36);
+        this.watermarks = new long[shardCount];
+        this.watermarkTimes = new Instant[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            watermarks[shard] = buffer.getLong(HEADER_SIZE + shard * 16);
+            long micros = buffer.getLong(HEADER_SIZE + shard * 16 + 8);
+            watermarkTimes[shard] = micros != NO_ID ? Instant.EPOCH.plusNanos(micros * 1000) : null;
+        }
+    }
+
+    /**
+     * Maps a saved file.
+     *
+     * @return The file, or null if it doesn't exist.
+     * @throws IOException if the file can't be read, or isn't a complete read model of this version and shard count.
+     */
+    static ReadModelFile open(Path path, int shardCount) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Read model file has an invalid size of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION) {
+                throw new IOException("Not a read model file of version " + VERSION);
+            }
+            if (buffer.getInt(40) != shardCount) {
+                throw new IOException("Read model file was saved for " + buffer.getInt(40) + " shards");
+            }
+            int bodyOffset = buffer.getInt(28);
+            if (bodyOffset != HEADER_SIZE + shardCount * 16 || buffer.getLong(44) != size - bodyOffset) {
+                throw new IOException("Read model file is truncated");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(bodyOffset, (int) size - bodyOffset));
+            updateWithHeader(crc, buffer, bodyOffset);
+            if ((int) crc.getValue() != buffer.getInt(CHECKSUM_OFFSET)) {
+                throw new IOException("Read model file checksum mismatch");
+            }
+            return new ReadModelFile(buffer, shardCount);
+        }
+    }
+
+    /**
+     * Writes a read model to a temporary file and moves it over the given path once it's complete.
+     *
+     * @param products Products in ascending id order.
+     * @param watermarkTimes The creation time of each watermark event, or null if unknown.
+     */
+    static void write(Path path, long[] watermarks, Instant[] watermarkTimes, List<CategoryNodeDto> categories,
+                      Iterator<Map.Entry<Long, ProductFacts>> products) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        int bodyOffset = HEADER_SIZE + watermarks.length * 16;
+        StringTable strings = new StringTable();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(bodyOffset);
+            CRC32C crc = new CRC32C();
+            DataOutputStream body = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc));
+            int productCount = 0;
+            long previousId = NO_ID;
+            while (products.hasNext()) {
+                Map.Entry<Long, ProductFacts> entry = products.next();
+                if (entry.getKey() <= previousId) {
+                    throw new IllegalArgumentException("Products must be written in ascending id order");
+                }
+                previousId = entry.getKey();
+                writeProduct(body, entry.getKey(), entry.getValue(), strings);
+                productCount++;
+            }
+            for (CategoryNodeDto category : categories) {
+                body.writeLong(category.getId());
+                body.writeLong(category.getParentId() != null ? category.getParentId() : NO_ID);
+                body.writeInt(category.getDepth());
+                body.writeInt(strings.ref(category.getName()));
+                body.writeInt(strings.ref(category.getPath()));
+                body.writeInt(0);
+            }
+            strings.bytes.writeTo(body);
+            body.flush();
+            long bodyLength = (long) productCount * PRODUCT_SIZE + (long) categories.size() * CATEGORY_SIZE + strings.bytes.size();
+            if (bodyOffset + bodyLength > Integer.MAX_VALUE) {
+                throw new IOException("Read model is too large to be mapped");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(bodyOffset);
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putLong(12, System.currentTimeMillis());
+            header.putInt(20, productCount);
+            header.putInt(24, categories.size());
+            header.putInt(28, bodyOffset);
+            header.putInt(32, (int) (bodyOffset + (long) productCount * PRODUCT_SIZE));
+            header.putInt(36, (int) (bodyOffset + (long) productCount * PRODUCT_SIZE + (long) categories.size() * CATEGORY_SIZE));
+            header.putInt(40, watermarks.length);
+            header.putLong(44, bodyLength);
+            for (int shard = 0; shard < watermarks.length; shard++) {
+                Instant time = watermarkTimes[shard];
+                header.putLong(HEADER_SIZE + shard * 16, watermarks[shard]);
+                header.putLong(HEADER_SIZE + shard * 16 + 8, time != null
+                        ? time.getEpochSecond() * 1_000_000 + time.getNano() / 1000 : NO_ID);
+            }
+            updateWithHeader(crc, header, bodyOffset);
+            header.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the header, without the checksum field, to a checksum that already covers the body.
+     */
+    private static void updateWithHeader(CRC32C crc, ByteBuffer buffer, int bodyOffset) {
+        crc.update(buffer.slice(0, CHECKSUM_OFFSET));
+        crc.update(buffer.slice(CHECKSUM_OFFSET + 4, bodyOffset - CHECKSUM_OFFSET - 4));
+    }
+
+    long[] watermarks() {
+        return watermarks.clone();
+    }
+
+    /**
+     * @return The creation time of each shard's watermark event, truncated to microseconds, or null where unknown.
+     */
+    Instant[] watermarkTimes() {
+        return watermarkTimes.clone();
+    }
+
+    Instant savedAt() {
+        return savedAt;
+    }
+
+    int productCount() {
+        return productCount;
+    }
+
+    long productId(int index) {
+        return buffer.getLong(productsOffset + index * PRODUCT_SIZE);
+    }
+
+    ProductFacts product(int index) {
+        return readProduct(productsOffset + index * PRODUCT_SIZE);
+    }
+
+    /**
+     * @return The saved product with the given id, found by binary search, or null when there is none.
+     */
+    ProductFacts find(long id) {
+        int low = 0;
+        int high = productCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = productId(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return product(middle);
+            }
+        }
+        return null;
+    }
+
+    List<CategoryNodeDto> categories() {
+        List<CategoryNodeDto> categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            int offset = categoriesOffset + i * CATEGORY_SIZE;
+            long parentId = buffer.getLong(offset + 8);
+            categories.add(new CategoryNodeDto(buffer.getLong(offset), readString(buffer.getInt(offset + 20)),
+                    parentId != NO_ID ? parentId : null, readString(buffer.getInt(offset + 24)),
+                    buffer.getInt(offset + 16), List.of()));
+        }
+        return categories;
+    }
+
+    private ProductFacts readProduct(int offset) {
+        long categoryId = buffer.getLong(offset + 8);
+        short scale = buffer.getShort(offset + 24);
+        BigDecimal price = scale != NO_PRICE ? BigDecimal.valueOf(buffer.getLong(offset + 16), scale) : null;
+        return new ProductFacts(categoryId != NO_ID ? categoryId : null, readString(buffer.getInt(offset + 32)),
+                readString(buffer.getInt(offset + 36)), price, buffer.getInt(offset + 28));
+    }
+
+    private String readString(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int offset = stringsOffset + ref;
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeProduct(DataOutputStream out, long id, ProductFacts product, StringTable strings) throws IOException {
+        long unscaled = 0;
+        short scale = NO_PRICE;
+        if (product.price() != null) {
+            BigInteger value = product.price().unscaledValue();
+            if (value.bitLength() > 63 || product.price().scale() != (short) product.price().scale()) {
+                throw new IOException("Price of product " + id + " doesn't fit a read model record");
+            }
+            unscaled = value.longValue();
+            scale = (short) product.price().scale();
+        }
+        out.writeLong(id);
+        out.writeLong(product.categoryId() != null ? product.categoryId() : NO_ID);
+        out.writeLong(unscaled);
+        out.writeShort(scale);
+        out.writeShort(0);
+        out.writeInt(product.inventory());
+        out.writeInt(strings.ref(product.brand()));
+        out.writeInt(strings.ref(product.name()));
+    }
+
+    /**
+     * Collects the strings of a file being written, storing each distinct string once.
+     */
+    private static final class StringTable {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        int ref(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            return refs.computeIfAbsent(value, string -> {
+                int ref = bytes.size();
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                bytes.writeBytes(ByteBuffer.allocate(4).putInt(encoded.length).array());
+                bytes.writeBytes(encoded);
+                return ref;
+            });
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.e_commerce.service.readmodel;
+
+import com.e_commerce.service.stats.ProductFacts;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published by the read model for relayed product changes written by other nodes, with the product as it was
+ * before each change, so in-memory aggregates can apply them as deltas. Changes written by this node aren't
+ * included; they are applied where they are made.
+ */
+@Value
+public class RemoteProductChangesEvent {
+    List<Change> changes;
+
+    /**
+     * @param before The product before the change, or null when it was created.
+     * @param after The product after the change, or null when it was deleted.
+     * @param eventId The id of the outbox event of the change.
+     */
+    public record Change(ProductFacts before, ProductFacts after, long eventId) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.e_commerce.service.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated method, including its transaction, on one shard. Exactly one of the attributes is set; both
+ * are SpEL expressions over the method parameters, e.g. {@code #productId} or {@code #request.category?.name}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RouteToShard {
+
+    /**
+     * The id of a row on the target shard. Ids are striped, so any product, image or content id names its shard.
+     */
+    String id() default "";
+
+    /**
+     * The name of the category that places a new product.
+     */
+    String category() default "";
+}
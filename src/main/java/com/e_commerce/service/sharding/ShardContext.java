@@ -0,0 +1,33 @@
+package com.e_commerce.service.sharding;
+
+/**
+ * The shard the current thread works on. When none is set, connections come from shard 0.
+ */
+final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static Integer get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return The previously set shard, to be handed to {@link #restore(Integer)}.
+     */
+    static Integer set(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.e_commerce.service.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Knows where catalog rows live and runs work on the right shard.
+ * <p>
+ * Every identity column advances by the shard count, starting at the shard's index + 1, so an id alone tells which
+ * shard holds the row. New products are placed by the hash of their category name. Without sharding there is a
+ * single shard 0 and every method runs its work directly on the calling thread.
+ * <p>
+ * The sharding beans are conditional on {@code catalog.sharding.enabled}, which an ahead-of-time processed build
+ * evaluates once at build time, so such a build refuses to start when sharding is requested only at runtime.
+ */
+@Component
+public class ShardRouter {
+
+    private final List<DataSource> shards;
+    private final int shardCount;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate snapshotTransaction;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardRouter(ObjectProvider<ShardRoutingDataSource> routingDataSource, PlatformTransactionManager transactionManager,
+                       Environment environment) {
+        ShardRoutingDataSource dataSource = routingDataSource.getIfAvailable();
+        if (dataSource == null && AotDetector.useGeneratedArtifacts()
+                && environment.getProperty("catalog.sharding.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("catalog.sharding.enabled is set, but this build was processed ahead of time "
+                    + "without sharding; start it without spring.aot.enabled or process it with the sharded profile");
+        }
+        this.shards = dataSource != null ? dataSource.getShards() : List.of();
+        this.shardCount = Math.max(1, shards.size());
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return The shard holding the row with the given id.
+     */
+    public int shardOf(long id) {
+        return Math.floorMod(id - 1, shardCount);
+    }
+
+    /**
+     * @return The shard a new product of the given category is placed on.
+     */
+    public int shardFor(String categoryName) {
+        return Math.floorMod(Objects.hashCode(categoryName), shardCount);
+    }
+
+    public int currentShard() {
+        Integer shard = ShardContext.get();
+        return shard != null ? shard : 0;
+    }
+
+    /**
+     * @return The connection pool of one shard, bypassing the routing.
+     */
+    public DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    /**
+     * Runs the work in a transaction on the given shard.
+     */
+    public <T> T inTransaction(int shard, Supplier<T> work) {
+        return on(shard, () -> transaction.execute(status -> work.get()));
+    }
+
+    /**
+     * Runs the work on every shard in turn. A failing shard doesn't keep the others from running; the first
+     * failure is rethrown at the end.
+     */
+    public void forEachShard(IntConsumer work) {
+        RuntimeException failure = null;
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            try {
+                on(current, () -> {
+                    work.accept(current);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a query on every shard in parallel, each in its own read-only transaction.
+     *
+     * @return The concatenated results, in shard order.
+     */
+    public <T> List<T> gather(Supplier<List<T>> query) {
+        Map<Integer, Supplier<List<T>>> queries = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            queries.put(shard, query);
+        }
+        return gather(queries, readOnlyTransaction);
+    }
+
+    /**
+     * Like {@link #gather(Supplier)}, with all statements of the query on one shard reading the same snapshot.
+     */
+    public <T> List<T> gatherInSnapshot(Supplier<List<T>> query) {
+        Map<Integer, Supplier<List<T>>> queries = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            queries.put(shard, query);
+        }
+        return gather(queries, snapshotTransaction);
+    }
+
+    /**
+     * Like {@link #gather(Supplier)}, sorting the merged results when they come from more than one shard.
+     */
+    public <T> List<T> gather(Supplier<List<T>> query, Comparator<? super T> order) {
+        return sorted(gather(query), order);
+    }
+
+    /**
+     * Splits ids by shard and runs the query only on the shards holding any of them, in parallel.
+     *
+     * @param query Called with the ids on one shard, in the given order.
+     * @return The merged results, sorted when they come from more than one shard.
+     */
+    public <T> List<T> gatherByShard(Collection<Long> ids, Function<List<Long>, List<T>> query, Comparator<? super T> order) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Integer, Supplier<List<T>>> queries = new TreeMap<>();
+        idsByShard.forEach((shard, shardIds) -> queries.put(shard, () -> query.apply(shardIds)));
+        return sorted(gather(queries, readOnlyTransaction), order);
+    }
+
+    private <T> List<T> gather(Map<Integer, Supplier<List<T>>> queries, TransactionTemplate template) {
+        if (queries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!isSharded()) {
+            return new ArrayList<>(template.execute(status -> queries.get(0).get()));
+        }
+        // Shards are queried on their own threads, so a transaction of the caller never decides the shard.
+        List<Future<List<T>>> futures = new ArrayList<>(queries.size());
+        queries.forEach((shard, query) -> futures.add(executor.submit(
+                () -> on(shard, () -> template.execute(status -> query.get())))));
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private <T> List<T> sorted(List<T> results, Comparator<? super T> order) {
+        if (isSharded()) {
+            results.sort(order);
+        }
+        return results;
+    }
+}
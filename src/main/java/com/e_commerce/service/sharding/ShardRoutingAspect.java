@@ -0,0 +1,69 @@
+package com.e_commerce.service.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sets the shard of {@link RouteToShard} methods. It is ordered before the transaction advice, which runs last, so
+ * the transaction takes its connection from the chosen shard.
+ */
+@Aspect
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "catalog.sharding.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ShardRoutingAspect {
+
+    private final ShardRouter shardRouter;
+    private final ExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(routeToShard)")
+    public Object route(ProceedingJoinPoint joinPoint, RouteToShard routeToShard) throws Throwable {
+        int shard = shardOf(joinPoint, routeToShard);
+        int current = shardRouter.currentShard();
+        if (shard != current && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(joinPoint.getSignature().toShortString() + " needs shard " + shard
+                    + " but is called inside a transaction on shard " + current);
+        }
+        Integer previous = ShardContext.set(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private int shardOf(ProceedingJoinPoint joinPoint, RouteToShard routeToShard) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, joinPoint.getArgs(), parameterNames);
+        if (!routeToShard.id().isEmpty()) {
+            Number id = evaluate(routeToShard.id(), context, Number.class);
+            // Without an id there is nothing to find; the call fails on the current shard as it would unsharded.
+            return id != null ? shardRouter.shardOf(id.longValue()) : shardRouter.currentShard();
+        }
+        return shardRouter.shardFor(evaluate(routeToShard.category(), context, String.class));
+    }
+
+    private <T> T evaluate(String expression, MethodBasedEvaluationContext context, Class<T> type) {
+        return expressions.computeIfAbsent(expression, parser::parseExpression).getValue(context, type);
+    }
+}
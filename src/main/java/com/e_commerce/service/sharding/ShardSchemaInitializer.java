@@ -0,0 +1,92 @@
+package com.e_commerce.service.sharding;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.DelayedDropRegistryNotAvailableImpl;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Prepares every shard before the application serves requests.
+ * <p>
+ * Hibernate applies the configured schema action ({@code spring.jpa.hibernate.ddl-auto}) only to the connection it
+ * bootstraps with, which is shard 0; this applies the same action to the other shards. It then stripes the identity
+ * columns, so shard {@code i} of {@code n} hands out the ids {@code i + 1, i + 1 + n, ...}. Striping starts above
+ * the highest existing id and is done once; the shard count can't change after that without moving data.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "catalog.sharding.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ShardSchemaInitializer implements Integrator, SmartInitializingSingleton {
+
+    // Tables whose rows can be created on any shard.
+    private static final List<String> IDENTITY_TABLES = List.of("category", "product", "image", "image_content", "outbox_event");
+
+    // Not the ShardRouter: this is needed to build the entity manager factory, which the router's transactions need.
+    private final ShardRoutingDataSource dataSource;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Waits for the persistence unit if it is bootstrapped in the background.
+        entityManagerFactory.getObject().getMetamodel();
+        var settings = sessionFactory.getServiceRegistry().requireService(ConfigurationService.class).getSettings();
+        int shardCount = dataSource.getShards().size();
+        for (int shard = 1; shard < shardCount; shard++) {
+            Integer previous = ShardContext.set(shard);
+            try {
+                SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(), settings,
+                        DelayedDropRegistryNotAvailableImpl.INSTANCE);
+            } finally {
+                ShardContext.restore(previous);
+            }
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            stripeIdentities(shard);
+        }
+    }
+
+    private void stripeIdentities(int shard) {
+        int shardCount = dataSource.getShards().size();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource.getShards().get(shard));
+        for (String table : IDENTITY_TABLES) {
+            Long increment = jdbcTemplate.queryForObject("select identity_increment from information_schema.columns " +
+                    "where lower(table_name) = ? and lower(column_name) = 'id' and table_schema = current_schema", Long.class, table);
+            if (increment != null && increment == shardCount) {
+                continue;
+            }
+            long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+            long next = maxId + 1 + Math.floorMod(shard - maxId, shardCount);
+            jdbcTemplate.execute("alter table " + table + " alter column id set increment by " + shardCount);
+            jdbcTemplate.execute("alter table " + table + " alter column id restart with " + next);
+            log.info("Striped {}.id on shard {}: ids continue at {} in steps of {}", table, shard, next, shardCount);
+        }
+    }
+}
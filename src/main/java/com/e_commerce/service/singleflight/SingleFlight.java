@@ -0,0 +1,88 @@
+package com.e_commerce.service.singleflight;
+
+import com.e_commerce.exceptions.CoalescedCallTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent calls with the same key into a single execution.
+ * <p>
+ * The first caller for a key runs the loader on its own thread; callers arriving while it is still running wait
+ * for the same result (or exception) instead of running the loader again. Nothing is cached: once the call
+ * completes, the next caller starts a fresh execution.
+ */
+public final class SingleFlight {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Duration timeout;
+
+    public SingleFlight(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Runs the loader, or joins an identical call that is already running.
+     *
+     * @param key The identity of the call, compared with {@code equals}.
+     * @param loader The call to make when no identical call is in flight.
+     * @return The result of the shared call.
+     * @throws CoalescedCallTimeoutException if the shared call doesn't complete within the timeout.
+     */
+    public <T> T execute(Object key, Supplier<T> loader) {
+        return execute(key, loader, UnaryOperator.identity());
+    }
+
+    /**
+     * Like {@link #execute(Object, Supplier)}, but callers that join a running call get their own copy of its
+     * result, made on their thread. Use it for results that must not be shared between threads.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> loader, UnaryOperator<T> copy) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, call);
+        if (running == null) {
+            try {
+                T result = loader.get();
+                call.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        }
+        T shared = (T) await(running);
+        return shared != null ? copy.apply(shared) : null;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private Object await(CompletableFuture<Object> running) {
+        try {
+            return running.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CoalescedCallTimeoutException("Timed out after " + timeout.toMillis() + " ms waiting for a shared call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CoalescedCallTimeoutException("Interrupted while waiting for a shared call");
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.dto.SnapshotSummaryDto;
+import com.e_commerce.repository.DatabasePlatform;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.readmodel.CatalogReadModel;
+import com.e_commerce.service.sharding.ShardRouter;
+import com.e_commerce.service.stats.ICatalogStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Exports the catalog into a snapshot file and restores it, for seeding environments and disaster recovery.
+ * <p>
+ * Both directions stream: the export reads each table through a cursor and the restore reads one chunk at a time,
+ * so memory is bounded by a few chunks. The export runs in one repeatable-read transaction and therefore sees a
+ * consistent catalog. The restore inserts the chunks of a table in parallel batches, one transaction per chunk,
+ * after dropping the secondary indexes on Postgres; they are rebuilt once all rows are in. Categories are inserted
+ * in file order, parents first.
+ * <p>
+ * Image bytes stored before uploads were deduplicated are not part of a snapshot; they are moved into contents at
+ * startup. Sharded catalogs can't be snapshotted.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogSnapshotService implements ICatalogSnapshotService {
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final DatabasePlatform databasePlatform;
+    private final ShardRouter shardRouter;
+    private final CategoryTreeCache categoryTreeCache;
+    private final ICatalogStatsService catalogStatsService;
+    private final CatalogReadModel catalogReadModel;
+
+    @Value("${catalog.snapshot.chunk-rows:1000}")
+    private int chunkRows;
+
+    @Value("${catalog.snapshot.chunk-bytes:8388608}")
+    private int chunkBytes;
+
+    @Value("${catalog.snapshot.restore-threads:4}")
+    private int restoreThreads;
+
+    @Override
+    public SnapshotSummaryDto exportSnapshot(OutputStream out) throws IOException {
+        requireUnsharded();
+        long start = System.nanoTime();
+        SnapshotWriter writer = new SnapshotWriter(out, chunkRows, chunkBytes);
+        AtomicLong imageBytes = new AtomicLong();
+        // Postgres only streams result sets through a cursor inside a transaction with a fetch size.
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(chunkRows);
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setReadOnly(true);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        try {
+            snapshot.executeWithoutResult(status -> {
+                export(cursor, writer, SnapshotTable.CATEGORY,
+                        "select id, name, parent_id, path, depth from category order by depth, id", row -> {
+                            writer.writeLong(row.getLong("id"));
+                            writer.writeString(row.getString("name"));
+                            writer.writeLong(row.getObject("parent_id", Long.class));
+                            writer.writeString(row.getString("path"));
+                            writer.writeInt(row.getInt("depth"));
+                        });
+                export(cursor, writer, SnapshotTable.PRODUCT,
+                        "select id, name, brand, description, price, inventory, category_id from product order by id", row -> {
+                            writer.writeLong(row.getLong("id"));
+                            writer.writeString(row.getString("name"));
+                            writer.writeString(row.getString("brand"));
+                            writer.writeString(row.getString("description"));
+                            writer.writeDecimal(row.getBigDecimal("price"));
+                            writer.writeInt(row.getInt("inventory"));
+                            writer.writeLong(row.getObject("category_id", Long.class));
+                        });
+                export(cursor, writer, SnapshotTable.IMAGE_CONTENT,
+                        "select id, sha256, size, ref_count, created_at, data from image_content order by id", row -> {
+                            writer.writeLong(row.getLong("id"));
+                            writer.writeString(row.getString("sha256"));
+                            writer.writeInt(row.getInt("ref_count"));
+                            writer.writeInstant(toInstant(row.getTimestamp("created_at")));
+                            Blob data = row.getBlob("data");
+                            long length = data != null ? data.length() : 0;
+                            writer.writeStream(data != null ? data.getBinaryStream() : null, length);
+                            imageBytes.addAndGet(length);
+                        });
+                export(cursor, writer, SnapshotTable.IMAGE,
+                        "select id, file_name, file_type, download_url, product_id, content_id, deleted, deleted_at from image order by id", row -> {
+                            writer.writeLong(row.getLong("id"));
+                            writer.writeString(row.getString("file_name"));
+                            writer.writeString(row.getString("file_type"));
+                            writer.writeString(row.getString("download_url"));
+                            writer.writeLong(row.getObject("product_id", Long.class));
+                            writer.writeLong(row.getObject("content_id", Long.class));
+                            writer.writeBoolean(row.getBoolean("deleted"));
+                            writer.writeInstant(toInstant(row.getTimestamp("deleted_at")));
+                        });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        SnapshotSummaryDto summary = new SnapshotSummaryDto(writer.rowCount(SnapshotTable.CATEGORY),
+                writer.rowCount(SnapshotTable.PRODUCT), writer.rowCount(SnapshotTable.IMAGE_CONTENT),
+                writer.rowCount(SnapshotTable.IMAGE), imageBytes.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Exported catalog snapshot: {}", summary);
+        return summary;
+    }
+
+    @Override
+    public SnapshotSummaryDto restoreSnapshot(InputStream in) throws IOException {
+        requireUnsharded();
+        requireEmpty();
+        long start = System.nanoTime();
+        SnapshotReader reader = new SnapshotReader(in);
+        long[] rows = new long[SnapshotTable.values().length];
+        AtomicLong imageBytes = new AtomicLong();
+        List<String> deferredIndexes = dropSecondaryIndexes();
+        ExecutorService workers = Executors.newFixedThreadPool(restoreThreads);
+        // Bounds the chunks held in memory to the ones being inserted plus one queued per worker.
+        Semaphore inFlight = new Semaphore(2 * restoreThreads);
+        boolean restored = false;
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            SnapshotTable table = null;
+            SnapshotReader.Chunk chunk;
+            while ((chunk = reader.next()) != null) {
+                if (chunk.table != table) {
+                    // Rows of a table may reference all rows of the tables before it.
+                    awaitAll(pending);
+                    table = chunk.table;
+                }
+                rows[table.ordinal()] += chunk.rows;
+                if (table == SnapshotTable.CATEGORY) {
+                    insert(chunk, imageBytes);
+                    continue;
+                }
+                SnapshotReader.Chunk next = chunk;
+                inFlight.acquire();
+                pending.add(workers.submit(() -> {
+                    try {
+                        insert(next, imageBytes);
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+                pending.removeIf(this::doneOrFailed);
+            }
+            awaitAll(pending);
+            restartIdentities();
+            restored = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while restoring a snapshot", e);
+        } finally {
+            workers.shutdownNow();
+            recreateIndexes(deferredIndexes);
+            if (!restored) {
+                clearCatalog();
+            }
+            categoryTreeCache.invalidateAfterCommit();
+        }
+        // The restored rows have no outbox events, so the read model can't follow them.
+        catalogReadModel.rebuild();
+        catalogStatsService.reconcile();
+        SnapshotSummaryDto summary = new SnapshotSummaryDto(rows[SnapshotTable.CATEGORY.ordinal()],
+                rows[SnapshotTable.PRODUCT.ordinal()], rows[SnapshotTable.IMAGE_CONTENT.ordinal()],
+                rows[SnapshotTable.IMAGE.ordinal()], imageBytes.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Restored catalog snapshot: {}", summary);
+        return summary;
+    }
+
+    private void export(JdbcTemplate cursor, SnapshotWriter writer, SnapshotTable table, String sql, RowWriter rowWriter) {
+        try {
+            writer.startTable(table);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cursor.query(sql, (RowCallbackHandler) row -> {
+            try {
+                rowWriter.write(row);
+                writer.endRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Inserts the rows of one chunk with one batch in its own transaction.
+     */
+    private void insert(SnapshotReader.Chunk chunk, AtomicLong imageBytes) {
+        List<Object[]> rows = new ArrayList<>(chunk.rows);
+        try {
+            for (int i = 0; i < chunk.rows; i++) {
+                rows.add(readRow(chunk));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String sql = switch (chunk.table) {
+            case CATEGORY -> "insert into category (id, name, parent_id, path, depth) values (?, ?, ?, ?, ?)";
+            case PRODUCT -> "insert into product (id, name, brand, description, price, inventory, category_id) values (?, ?, ?, ?, ?, ?, ?)";
+            case IMAGE_CONTENT -> "insert into image_content (id, sha256, ref_count, created_at, data, size) values (?, ?, ?, ?, ?, ?)";
+            case IMAGE -> "insert into image (id, file_name, file_type, download_url, product_id, content_id, deleted, deleted_at) values (?, ?, ?, ?, ?, ?, ?, ?)";
+        };
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(sql, rows, rows.size(), (statement, row) -> bind(chunk.table, statement, row, imageBytes)));
+    }
+
+    private static Object[] readRow(SnapshotReader.Chunk chunk) throws IOException {
+        return switch (chunk.table) {
+            case CATEGORY -> new Object[]{chunk.readLong(), chunk.readString(), chunk.readLong(), chunk.readString(), chunk.readInt()};
+            case PRODUCT -> new Object[]{chunk.readLong(), chunk.readString(), chunk.readString(), chunk.readString(),
+                    chunk.readDecimal(), chunk.readInt(), chunk.readLong()};
+            case IMAGE_CONTENT -> new Object[]{chunk.readLong(), chunk.readString(), chunk.readInt(),
+                    toTimestamp(chunk.readInstant()), chunk.readStream()};
+            case IMAGE -> new Object[]{chunk.readLong(), chunk.readString(), chunk.readString(), chunk.readString(),
+                    chunk.readLong(), chunk.readLong(), chunk.readBoolean(), toTimestamp(chunk.readInstant())};
+        };
+    }
+
+    private static void bind(SnapshotTable table, PreparedStatement statement, Object[] row, AtomicLong imageBytes)
+            throws SQLException {
+        int values = table == SnapshotTable.IMAGE_CONTENT ? row.length - 1 : row.length;
+        for (int i = 0; i < values; i++) {
+            statement.setObject(i + 1, row[i]);
+        }
+        if (table == SnapshotTable.IMAGE_CONTENT) {
+            // Image data goes in as a blob, which Postgres keeps as a large object like Hibernate does.
+            byte[] data = (byte[]) row[values];
+            if (data != null) {
+                statement.setBlob(values + 1, new ByteArrayInputStream(data), data.length);
+                imageBytes.addAndGet(data.length);
+            } else {
+                statement.setNull(values + 1, Types.BLOB);
+            }
+            statement.setLong(values + 2, data != null ? data.length : 0);
+        }
+    }
+
+    private boolean doneOrFailed(Future<?> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+        return true;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws InterruptedException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } finally {
+            futures.clear();
+        }
+    }
+
+    private static RuntimeException rethrow(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+    }
+
+    private void requireUnsharded() {
+        if (shardRouter.isSharded()) {
+            throw new IllegalStateException("Snapshots of a sharded catalog are not supported");
+        }
+    }
+
+    private void requireEmpty() {
+        for (SnapshotTable table : SnapshotTable.values()) {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "select exists (select 1 from " + table.tableName + ")", Boolean.class))) {
+                throw new IllegalStateException("A snapshot can only be restored into an empty catalog, but "
+                        + table.tableName + " has rows");
+            }
+        }
+    }
+
+    /**
+     * Drops the non-unique indexes of the snapshot tables on Postgres, so the bulk load doesn't maintain them row by
+     * row. Unique indexes stay, they guard the data being loaded.
+     *
+     * @return The statements that recreate the dropped indexes.
+     */
+    private List<String> dropSecondaryIndexes() {
+        if (!databasePlatform.isPostgres()) {
+            return List.of();
+        }
+        String tables = Arrays.stream(SnapshotTable.values()).map(table -> "'" + table.tableName + "'").collect(Collectors.joining(", "));
+        List<String[]> indexes = jdbcTemplate.query("select indexname, indexdef from pg_indexes where schemaname = current_schema() "
+                + "and tablename in (" + tables + ") and indexdef not like 'CREATE UNIQUE INDEX%'",
+                (row, rowNum) -> new String[]{row.getString("indexname"), row.getString("indexdef")});
+        List<String> definitions = new ArrayList<>();
+        for (String[] index : indexes) {
+            jdbcTemplate.execute("drop index if exists \"" + index[0] + "\"");
+            definitions.add(index[1]);
+        }
+        log.info("Dropped {} indexes for the restore", definitions.size());
+        return definitions;
+    }
+
+    private void recreateIndexes(List<String> definitions) {
+        for (String definition : definitions) {
+            try {
+                jdbcTemplate.execute(definition);
+            } catch (RuntimeException e) {
+                log.error("Could not recreate index after the restore, run it manually: {}", definition, e);
+            }
+        }
+    }
+
+    /**
+     * Moves every identity past the restored ids, so new rows don't collide with them.
+     */
+    private void restartIdentities() {
+        for (SnapshotTable table : SnapshotTable.values()) {
+            Long next = jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1 from " + table.tableName, Long.class);
+            jdbcTemplate.execute("alter table " + table.tableName + " alter column id restart with " + next);
+        }
+    }
+
+    /**
+     * Removes the rows of a failed restore. Large objects already written are unlinked by the orphan sweep.
+     */
+    private void clearCatalog() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (int i = SnapshotTable.values().length - 1; i >= 0; i--) {
+                    jdbcTemplate.update("delete from " + SnapshotTable.values()[i].tableName);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not remove the rows of the failed restore, empty the catalog before retrying", e);
+        }
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(java.sql.ResultSet row) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,26 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.dto.SnapshotSummaryDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface ICatalogSnapshotService {
+
+    /**
+     * Writes all categories, products and images, including image data, as a consistent snapshot.
+     * @param out The stream to write to; it is flushed but not closed.
+     * @throws IllegalStateException if the catalog is sharded.
+     */
+    SnapshotSummaryDto exportSnapshot(OutputStream out) throws IOException;
+
+    /**
+     * Loads a snapshot into an empty catalog, keeping all ids. Restoring publishes no catalog events.
+     * @param in The snapshot; it is read to the end but not closed.
+     * @throws IllegalStateException if the catalog is sharded or not empty.
+     * @throws com.e_commerce.exceptions.InvalidSnapshotException if the snapshot is corrupt or truncated; the catalog
+     * is emptied again.
+     */
+    SnapshotSummaryDto restoreSnapshot(InputStream in) throws IOException;
+}
@@ -0,0 +1,68 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.dto.SnapshotSummaryDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Exports or restores a snapshot from the command line and exits, e.g.
+ * {@code java -jar app.jar --snapshot-export=catalog.snapshot} or {@code --snapshot-restore=catalog.snapshot}.
+ * Without either option the application starts as usual.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SnapshotCommandRunner implements ApplicationRunner {
+
+    static final String EXPORT_OPTION = "snapshot-export";
+    static final String RESTORE_OPTION = "snapshot-restore";
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String export = singleValue(args, EXPORT_OPTION);
+        String restore = singleValue(args, RESTORE_OPTION);
+        if (export == null && restore == null) {
+            return;
+        }
+        int exitCode = 0;
+        try {
+            SnapshotSummaryDto summary;
+            if (export != null) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(export)))) {
+                    summary = catalogSnapshotService.exportSnapshot(out);
+                }
+            } else {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(restore)))) {
+                    summary = catalogSnapshotService.restoreSnapshot(in);
+                }
+            }
+            log.info("Snapshot {} finished: {}", export != null ? "export" : "restore", summary);
+        } catch (Exception e) {
+            log.error("Snapshot {} failed", export != null ? "export" : "restore", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    private static String singleValue(ApplicationArguments args, String option) {
+        List<String> values = args.getOptionValues(option);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+}
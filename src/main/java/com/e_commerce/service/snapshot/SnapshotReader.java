@@ -0,0 +1,155 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.exceptions.InvalidSnapshotException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the chunks of a file written by {@link SnapshotWriter}, verifying each chunk's checksum and, at the end,
+ * the row counts of the trailer.
+ */
+final class SnapshotReader {
+
+    private final DataInputStream in;
+    private final long[] rowCounts = new long[SnapshotTable.values().length];
+
+    SnapshotReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        try {
+            this.in.readFully(magic);
+            if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+                throw new InvalidSnapshotException("Not a catalog snapshot");
+            }
+            int version = this.in.readInt();
+            if (version != SnapshotWriter.VERSION) {
+                throw new InvalidSnapshotException("Unsupported snapshot version " + version);
+            }
+        } catch (EOFException e) {
+            throw new InvalidSnapshotException("Not a catalog snapshot");
+        }
+    }
+
+    /**
+     * @return The next chunk of rows, or null after the trailer was read and matched.
+     * @throws InvalidSnapshotException if the file is truncated or a checksum or row count doesn't match.
+     */
+    Chunk next() throws IOException {
+        try {
+            int tableCode = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int rows = in.readInt();
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (rows < 0 || length < 0) {
+                throw new InvalidSnapshotException("Corrupt chunk header");
+            }
+            byte[] stored = new byte[length];
+            in.readFully(stored);
+            CRC32C crc = new CRC32C();
+            crc.update(stored);
+            if ((int) crc.getValue() != checksum) {
+                throw new InvalidSnapshotException("Checksum mismatch in chunk of table code " + tableCode);
+            }
+            if (tableCode == SnapshotWriter.TRAILER) {
+                verifyTrailer(stored);
+                return null;
+            }
+            SnapshotTable table = SnapshotTable.of(tableCode);
+            rowCounts[table.ordinal()] += rows;
+            InputStream payload = new ByteArrayInputStream(stored);
+            if ((flags & SnapshotWriter.FLAG_DEFLATED) != 0) {
+                payload = new InflaterInputStream(payload);
+            }
+            return new Chunk(table, rows, new DataInputStream(payload));
+        } catch (EOFException e) {
+            throw new InvalidSnapshotException("Snapshot is truncated");
+        }
+    }
+
+    private void verifyTrailer(byte[] trailer) throws IOException {
+        DataInputStream counts = new DataInputStream(new ByteArrayInputStream(trailer));
+        for (SnapshotTable table : SnapshotTable.values()) {
+            long expected = counts.readLong();
+            if (expected != rowCounts[table.ordinal()]) {
+                throw new InvalidSnapshotException("Snapshot holds " + rowCounts[table.ordinal()] + " rows of "
+                        + table.tableName + ", its trailer says " + expected);
+            }
+        }
+    }
+
+    /**
+     * The rows of one chunk. The values of each row are read in the order they were written.
+     */
+    static final class Chunk {
+        final SnapshotTable table;
+        final int rows;
+        private final DataInputStream data;
+
+        private Chunk(SnapshotTable table, int rows, DataInputStream data) {
+            this.table = table;
+            this.rows = rows;
+            this.data = data;
+        }
+
+        Long readLong() throws IOException {
+            return data.readBoolean() ? data.readLong() : null;
+        }
+
+        int readInt() throws IOException {
+            return data.readInt();
+        }
+
+        boolean readBoolean() throws IOException {
+            return data.readBoolean();
+        }
+
+        String readString() throws IOException {
+            byte[] bytes = readBytes();
+            return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+        }
+
+        BigDecimal readDecimal() throws IOException {
+            byte[] unscaled = readBytes();
+            return unscaled != null ? new BigDecimal(new BigInteger(unscaled), data.readInt()) : null;
+        }
+
+        Instant readInstant() throws IOException {
+            return data.readBoolean() ? Instant.ofEpochSecond(data.readLong(), data.readInt()) : null;
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = data.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            data.readFully(bytes);
+            return bytes;
+        }
+
+        /**
+         * Reads a value written by {@link SnapshotWriter#writeStream}.
+         */
+        byte[] readStream() throws IOException {
+            long length = data.readLong();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[Math.toIntExact(length)];
+            data.readFully(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.exceptions.InvalidSnapshotException;
+
+/**
+ * The tables of a snapshot, in the order they are written and restored. Each table's rows only reference rows of
+ * tables before it, or, for categories, earlier rows of the same table.
+ */
+enum SnapshotTable {
+    CATEGORY(1, "category"),
+    PRODUCT(2, "product"),
+    IMAGE_CONTENT(3, "image_content"),
+    IMAGE(4, "image");
+
+    final int code;
+    final String tableName;
+
+    SnapshotTable(int code, String tableName) {
+        this.code = code;
+        this.tableName = tableName;
+    }
+
+    static SnapshotTable of(int code) {
+        for (SnapshotTable table : values()) {
+            if (table.code == code) {
+                return table;
+            }
+        }
+        throw new InvalidSnapshotException("Unknown table code " + code);
+    }
+}
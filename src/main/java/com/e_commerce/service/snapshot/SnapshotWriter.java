@@ -0,0 +1,175 @@
+package com.e_commerce.service.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a snapshot file: a header, then chunks of rows of one table each, then a trailer with the row count of
+ * every table.
+ * <p>
+ * A chunk is {@code table code, flags, row count, stored length, CRC32C of the stored bytes} followed by the
+ * stored bytes, which are deflated unless they hold image data. Rows are buffered until a chunk reaches its row or
+ * byte limit, so memory stays bounded by one chunk whatever the size of the catalog.
+ */
+final class SnapshotWriter {
+
+    static final byte[] MAGIC = "CATSNAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATED = 1;
+    static final int TRAILER = 0;
+
+    private final DataOutputStream out;
+    private final int chunkRows;
+    private final int chunkBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream row = new DataOutputStream(buffer);
+    private final long[] rowCounts = new long[SnapshotTable.values().length];
+    private SnapshotTable table;
+    private int rowsInChunk;
+
+    SnapshotWriter(OutputStream out, int chunkRows, int chunkBytes) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.chunkRows = chunkRows;
+        this.chunkBytes = chunkBytes;
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    /**
+     * Starts the rows of the next table, flushing the rows of the previous one.
+     */
+    void startTable(SnapshotTable next) throws IOException {
+        flushChunk();
+        table = next;
+    }
+
+    /**
+     * Ends the current row; the row's values must have been written in between.
+     */
+    void endRow() throws IOException {
+        rowCounts[table.ordinal()]++;
+        if (++rowsInChunk >= chunkRows || buffer.size() >= chunkBytes) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Flushes the last chunk and writes the trailer. The underlying stream is flushed but left open.
+     */
+    void finish() throws IOException {
+        flushChunk();
+        ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+        DataOutputStream counts = new DataOutputStream(trailer);
+        for (long count : rowCounts) {
+            counts.writeLong(count);
+        }
+        writeChunk(TRAILER, 0, 0, trailer.toByteArray());
+        out.flush();
+    }
+
+    long rowCount(SnapshotTable of) {
+        return rowCounts[of.ordinal()];
+    }
+
+    void writeLong(Long value) throws IOException {
+        row.writeBoolean(value != null);
+        if (value != null) {
+            row.writeLong(value);
+        }
+    }
+
+    void writeInt(int value) throws IOException {
+        row.writeInt(value);
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        row.writeBoolean(value);
+    }
+
+    void writeString(String value) throws IOException {
+        writeBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    void writeDecimal(BigDecimal value) throws IOException {
+        writeBytes(value != null ? value.unscaledValue().toByteArray() : null);
+        if (value != null) {
+            row.writeInt(value.scale());
+        }
+    }
+
+    void writeInstant(Instant value) throws IOException {
+        row.writeBoolean(value != null);
+        if (value != null) {
+            row.writeLong(value.getEpochSecond());
+            row.writeInt(value.getNano());
+        }
+    }
+
+    void writeBytes(byte[] value) throws IOException {
+        row.writeInt(value != null ? value.length : -1);
+        if (value != null) {
+            row.write(value);
+        }
+    }
+
+    /**
+     * Writes the given number of bytes from the stream, or a null value for a null stream.
+     */
+    void writeStream(InputStream value, long length) throws IOException {
+        row.writeLong(value != null ? length : -1);
+        if (value != null) {
+            long copied = value.transferTo(row);
+            if (copied != length) {
+                throw new IOException("Expected " + length + " bytes of image data, read " + copied);
+            }
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        if (rowsInChunk == 0) {
+            return;
+        }
+        row.flush();
+        byte[] stored = buffer.toByteArray();
+        int flags = 0;
+        // Image data is compressed already; deflating it costs time and gains nothing.
+        if (table != SnapshotTable.IMAGE_CONTENT) {
+            stored = deflate(stored);
+            flags |= FLAG_DEFLATED;
+        }
+        writeChunk(table.code, flags, rowsInChunk, stored);
+        buffer.reset();
+        rowsInChunk = 0;
+    }
+
+    private void writeChunk(int tableCode, int flags, int rows, byte[] stored) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(stored);
+        out.writeByte(tableCode);
+        out.writeByte(flags);
+        out.writeInt(rows);
+        out.writeInt(stored.length);
+        out.writeInt((int) crc.getValue());
+        out.write(stored);
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(deflated, deflater)) {
+            stream.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return deflated.toByteArray();
+    }
+}
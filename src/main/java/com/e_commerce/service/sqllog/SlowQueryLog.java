@@ -0,0 +1,157 @@
+package com.e_commerce.service.sqllog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs SQL statements that ran longer than a threshold, plus a random sample of the others.
+ * <p>
+ * Statements are timed by {@link #wrap wrapped} data sources. An entry holds the statement's duration including
+ * fetching its rows, the row count, the types and lengths of its bind parameters (never their values) and the
+ * endpoint that issued it. Entries are handed to a bounded queue and written by a background thread, so request
+ * threads never wait for log output; when the queue is full, entries are dropped and counted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlowQueryLog {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${catalog.sql-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.sql-log.threshold-ms:200}")
+    private long thresholdMillis;
+
+    @Value("${catalog.sql-log.sample-rate:0}")
+    private double sampleRate;
+
+    @Value("${catalog.sql-log.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private long thresholdNanos;
+    private BlockingQueue<Entry> queue;
+    private Counter dropped;
+    private Thread writer;
+
+    @PostConstruct
+    void start() {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        dropped = meterRegistry.counter("catalog.sql.log.dropped");
+        Gauge.builder("catalog.sql.log.queued", queue, BlockingQueue::size).register(meterRegistry);
+        writer = Thread.ofPlatform().name("slow-query-log").daemon().start(this::writeEntries);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * @return A data source whose statements are timed into this log, or the given one if the log is disabled.
+     */
+    public DataSource wrap(DataSource dataSource) {
+        return enabled && !(dataSource instanceof TimedDataSource) ? new TimedDataSource(dataSource, this) : dataSource;
+    }
+
+    /**
+     * Queues an entry for a finished statement if it was slow or is sampled.
+     *
+     * @param parameters The bound parameter values by index, starting at 1; only their shapes are logged.
+     * @param batchSize The number of batched parameter sets, or 0 if the statement was not batched.
+     * @param rows The rows returned or changed, or -1 if unknown.
+     */
+    void record(String sql, Object[] parameters, int batchSize, long nanos, long rows) {
+        boolean slow = nanos >= thresholdNanos;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        Entry entry = new Entry(slow, nanos, rows, batchSize, shapes(parameters), endpoint(), sql);
+        if (!queue.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeEntries() {
+        try {
+            while (true) {
+                write(queue.take());
+            }
+        } catch (InterruptedException e) {
+            List<Entry> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            remaining.forEach(this::write);
+        }
+    }
+
+    private void write(Entry entry) {
+        String sql = entry.sql != null ? entry.sql.replaceAll("\\s+", " ").trim() : "?";
+        String batch = entry.batchSize > 0 ? " batch=" + entry.batchSize : "";
+        if (entry.slow) {
+            log.warn("Slow SQL {} ms rows={}{} endpoint=[{}] params={} sql={}",
+                    TimeUnit.NANOSECONDS.toMillis(entry.nanos), entry.rows, batch, entry.endpoint, entry.parameterShapes, sql);
+        } else {
+            log.info("Sampled SQL {} µs rows={}{} endpoint=[{}] params={} sql={}",
+                    TimeUnit.NANOSECONDS.toMicros(entry.nanos), entry.rows, batch, entry.endpoint, entry.parameterShapes, sql);
+        }
+    }
+
+    private static List<String> shapes(Object[] parameters) {
+        if (parameters == null) {
+            return List.of();
+        }
+        List<String> shapes = new ArrayList<>(parameters.length);
+        for (int index = 1; index < parameters.length; index++) {
+            shapes.add(shape(parameters[index]));
+        }
+        return shapes;
+    }
+
+    private static String shape(Object value) {
+        return switch (value) {
+            case null -> "null";
+            case String string -> "String(" + string.length() + ")";
+            case byte[] bytes -> "byte[" + bytes.length + "]";
+            case InputStream ignored -> "stream";
+            case Reader ignored -> "reader";
+            default -> value.getClass().getSimpleName();
+        };
+    }
+
+    private static String endpoint() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+        }
+        return "thread " + Thread.currentThread().getName();
+    }
+
+    private record Entry(boolean slow, long nanos, long rows, int batchSize, List<String> parameterShapes,
+                         String endpoint, String sql) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.e_commerce.service.sqllog;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Times the statements of every data source bean. Routing data sources are left alone: their connections come from
+ * their targets, which are wrapped where they are built.
+ */
+@Component
+@RequiredArgsConstructor
+public class SlowQueryLogPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof AbstractRoutingDataSource)) {
+            return slowQueryLog.getObject().wrap(dataSource);
+        }
+        return bean;
+    }
+}
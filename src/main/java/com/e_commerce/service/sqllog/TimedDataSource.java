@@ -0,0 +1,38 @@
+package com.e_commerce.service.sqllog;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out connections whose statements report their timings to the {@link SlowQueryLog}. Closing it closes the
+ * wrapped pool.
+ */
+final class TimedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final SlowQueryLog slowQueryLog;
+
+    TimedDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return TimedJdbc.connection(super.getConnection(), slowQueryLog);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return TimedJdbc.connection(super.getConnection(username, password), slowQueryLog);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
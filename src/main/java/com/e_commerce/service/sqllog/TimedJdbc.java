@@ -0,0 +1,252 @@
+package com.e_commerce.service.sqllog;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * JDBC proxies that time statements for the {@link SlowQueryLog}.
+ * <p>
+ * A statement's time is its execution plus the time spent in {@link ResultSet#next()}, so a query is reported when
+ * its result set is closed, with the number of rows read. Updates and batches are reported when they return.
+ */
+final class TimedJdbc {
+
+    private TimedJdbc() {
+    }
+
+    static Connection connection(Connection connection, SlowQueryLog slowQueryLog) {
+        return proxy(Connection.class, new ConnectionHandler(connection, slowQueryLog));
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(TimedJdbc.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Forwards every call to the target, with proxy identity for equals and hashCode.
+     */
+    private abstract static class Handler implements InvocationHandler {
+        final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> intercept(method, args);
+            };
+        }
+
+        abstract Object intercept(Method method, Object[] args) throws Throwable;
+
+        Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class ConnectionHandler extends Handler {
+        private final SlowQueryLog slowQueryLog;
+
+        ConnectionHandler(Connection connection, SlowQueryLog slowQueryLog) {
+            super(connection);
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @Override
+        Object intercept(Method method, Object[] args) throws Throwable {
+            Object result = forward(method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> proxy(Statement.class, new StatementHandler(result, null, slowQueryLog));
+                case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler(result, (String) args[0], slowQueryLog));
+                case "prepareCall" -> proxy(CallableStatement.class, new StatementHandler(result, (String) args[0], slowQueryLog));
+                default -> result;
+            };
+        }
+    }
+
+    private static final class StatementHandler extends Handler {
+        private final SlowQueryLog slowQueryLog;
+        private String sql;
+        private Object[] parameters;
+        private int lastIndex;
+        private int batchSize;
+        private Execution pending;
+        private ResultSetHandler openResultSet;
+
+        StatementHandler(Object statement, String sql, SlowQueryLog slowQueryLog) {
+            super(statement);
+            this.sql = sql;
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @Override
+        Object intercept(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            // Setters of bind parameters take the index first and the value second; setNull binds no value.
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+            }
+            switch (name) {
+                case "clearParameters" -> {
+                    parameters = null;
+                    lastIndex = 0;
+                }
+                case "addBatch" -> {
+                    batchSize++;
+                    if (sql == null && args != null) {
+                        sql = (String) args[0];
+                    }
+                }
+                case "clearBatch" -> batchSize = 0;
+                case "getResultSet" -> {
+                    Object resultSet = forward(method, args);
+                    if (resultSet != null && pending != null) {
+                        Execution execution = pending;
+                        pending = null;
+                        return resultSet((ResultSet) resultSet, execution);
+                    }
+                    return resultSet;
+                }
+                case "close" -> finishOpen();
+                default -> {
+                }
+            }
+            return forward(method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishOpen();
+            String statementSql = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+            long start = System.nanoTime();
+            Object result = forward(method, args);
+            long nanos = System.nanoTime() - start;
+            Object[] bound = parameters != null ? Arrays.copyOf(parameters, lastIndex + 1) : null;
+            int batch = batchSize;
+            batchSize = 0;
+            switch (method.getName()) {
+                case "executeQuery" -> {
+                    return resultSet((ResultSet) result, new Execution(statementSql, bound, batch, nanos));
+                }
+                case "execute" -> {
+                    if ((Boolean) result) {
+                        pending = new Execution(statementSql, bound, batch, nanos);
+                    } else {
+                        slowQueryLog.record(statementSql, bound, batch, nanos, ((Statement) target).getUpdateCount());
+                    }
+                }
+                case "executeUpdate", "executeLargeUpdate" ->
+                        slowQueryLog.record(statementSql, bound, batch, nanos, ((Number) result).longValue());
+                case "executeBatch" ->
+                        slowQueryLog.record(statementSql, bound, batch, nanos, rows(Arrays.stream((int[]) result).asLongStream().toArray()));
+                case "executeLargeBatch" -> slowQueryLog.record(statementSql, bound, batch, nanos, rows((long[]) result));
+                default -> slowQueryLog.record(statementSql, bound, batch, nanos, -1);
+            }
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            if (parameters == null || parameters.length <= index) {
+                int capacity = Math.max(index + 1, parameters != null ? 2 * parameters.length : 8);
+                parameters = parameters != null ? Arrays.copyOf(parameters, capacity) : new Object[capacity];
+            }
+            parameters[index] = value;
+            lastIndex = Math.max(lastIndex, index);
+        }
+
+        private ResultSet resultSet(ResultSet resultSet, Execution execution) {
+            openResultSet = new ResultSetHandler(resultSet, execution, slowQueryLog);
+            return proxy(ResultSet.class, openResultSet);
+        }
+
+        private void finishOpen() {
+            if (openResultSet != null) {
+                openResultSet.finish();
+                openResultSet = null;
+            }
+            if (pending != null) {
+                pending.record(slowQueryLog, 0, -1);
+                pending = null;
+            }
+        }
+
+        /**
+         * @return The sum of the batch's update counts, or -1 if the driver didn't report them.
+         */
+        private static long rows(long[] counts) {
+            long rows = 0;
+            for (long count : counts) {
+                if (count < 0) {
+                    return -1;
+                }
+                rows += count;
+            }
+            return rows;
+        }
+    }
+
+    private static final class ResultSetHandler extends Handler {
+        private final Execution execution;
+        private final SlowQueryLog slowQueryLog;
+        private long fetchNanos;
+        private long rows;
+        private boolean finished;
+
+        ResultSetHandler(ResultSet resultSet, Execution execution, SlowQueryLog slowQueryLog) {
+            super(resultSet);
+            this.execution = execution;
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @Override
+        Object intercept(Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next" -> {
+                    long start = System.nanoTime();
+                    Object hasRow = forward(method, args);
+                    fetchNanos += System.nanoTime() - start;
+                    if ((Boolean) hasRow) {
+                        rows++;
+                    }
+                    return hasRow;
+                }
+                case "close" -> finish();
+                default -> {
+                }
+            }
+            return forward(method, args);
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                execution.record(slowQueryLog, fetchNanos, rows);
+            }
+        }
+    }
+
+    private record Execution(String sql, Object[] parameters, int batchSize, long nanos) {
+
+        void record(SlowQueryLog slowQueryLog, long fetchNanos, long rows) {
+            slowQueryLog.record(sql, parameters, batchSize, nanos + fetchNanos, rows);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.e_commerce.service.stats;
+
+import com.e_commerce.dto.CatalogStatsDto;
+import com.e_commerce.repository.OutboxEventRepository;
+import com.e_commerce.repository.ProductRepository;
+import com.e_commerce.repository.projection.ProductStatsRow;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.outbox.CatalogEventStream;
+import com.e_commerce.service.readmodel.CatalogReadModel;
+import com.e_commerce.service.readmodel.RemoteProductChangesEvent;
+import com.e_commerce.service.sharding.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Keeps product counts, stock totals and price sums per category, brand and brand + name in memory.
+ * <p>
+ * Committed product changes are applied as deltas, so every read is a map lookup. Changes made on other nodes are
+ * applied as they are relayed, when the read model is enabled and can tell what they changed. A periodic
+ * reconciliation recomputes the aggregates with one grouped query and swaps them in, which corrects drift from
+ * writes that bypass this service or the outbox.
+ * <p>
+ * The deltas applied while the query runs are recorded, each with the id of its outbox event, and those the query
+ * didn't see are replayed onto its result before the swap. Events up to the relay position taken before the
+ * recording started have committed, so the query saw them. Of the later ones, the query saw those whose ids it
+ * read from the outbox in the same snapshot as the products. A load from the read model saw exactly the events up
+ * to the model's watermarks.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogStatsService implements ICatalogStatsService {
+
+    private final ProductRepository productRepository;
+    private final CategoryTreeCache categoryTreeCache;
+    private final MeterRegistry meterRegistry;
+    private final ShardRouter shardRouter;
+    private final CatalogReadModel catalogReadModel;
+    private final CatalogEventStream catalogEventStream;
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final List<Queue<Change>> recordings = new CopyOnWriteArrayList<>();
+    private volatile Aggregates aggregates = new Aggregates();
+    private volatile boolean loaded;
+
+    @Override
+    public void recordChange(ProductFacts before, ProductFacts after, long eventId) {
+        Change change = new Change(before, after, eventId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    @EventListener
+    public void onRemoteProductChanges(RemoteProductChangesEvent event) {
+        event.getChanges().forEach(change -> apply(new Change(change.before(), change.after(), change.eventId())));
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public long countByBrandAndName(String brandName, String productName) {
+        return aggregates.byBrandAndName.getOrDefault(new BrandAndName(brandName, productName), StatsAggregate.EMPTY).productCount();
+    }
+
+    @Override
+    public CatalogStatsDto getTotals() {
+        return toDto(null, aggregates.total.get());
+    }
+
+    @Override
+    public List<CatalogStatsDto> getCategoryStats() {
+        List<CatalogStatsDto> stats = new ArrayList<>();
+        aggregates.byCategory.forEach((categoryId, aggregate) -> categoryTreeCache.findById(categoryId)
+                .ifPresent(category -> stats.add(toDto(category.getName(), aggregate))));
+        stats.sort(Comparator.comparing(CatalogStatsDto::getKey));
+        return stats;
+    }
+
+    @Override
+    public Optional<CatalogStatsDto> getCategoryStats(String categoryName) {
+        return categoryTreeCache.findByName(categoryName)
+                .map(category -> toDto(category.getName(), aggregates.byCategory.getOrDefault(category.getId(), StatsAggregate.EMPTY)));
+    }
+
+    @Override
+    public List<CatalogStatsDto> getBrandStats() {
+        List<CatalogStatsDto> stats = new ArrayList<>();
+        aggregates.byBrand.forEach((brand, aggregate) -> stats.add(toDto(brand, aggregate)));
+        stats.sort(Comparator.comparing(CatalogStatsDto::getKey));
+        return stats;
+    }
+
+    @Override
+    public CatalogStatsDto getBrandStats(String brandName) {
+        return toDto(brandName, aggregates.byBrand.getOrDefault(brandName, StatsAggregate.EMPTY));
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${catalog.stats.reconcile-interval-ms:60000}",
+            fixedDelayString = "${catalog.stats.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        long[] relayed = catalogEventStream.getPosition();
+        Queue<Change> changes = startRecording();
+        try {
+            Aggregates recomputed = new Aggregates();
+            List<Set<Long>> seenEvents = new ArrayList<>(Collections.nCopies(relayed.length, Set.of()));
+            for (ShardStats shard : shardRouter.gatherInSnapshot(() -> List.of(readStats(relayed)))) {
+                // Groups found on several shards are simply added up.
+                for (ProductStatsRow row : shard.rows()) {
+                    recomputed.add(row.getCategoryId(), row.getBrand(), row.getName(), new StatsAggregate(row.getProductCount(),
+                            row.getInventoryTotal(), Objects.requireNonNullElse(row.getPriceTotal(), BigDecimal.ZERO),
+                            row.getPricedCount()));
+                }
+                seenEvents.set(shard.shard(), shard.seenEvents());
+            }
+            swapIn(recomputed, changes, change -> {
+                int shard = shardRouter.shardOf(change.eventId());
+                return change.eventId() <= relayed[shard] || seenEvents.get(shard).contains(change.eventId());
+            });
+        } finally {
+            recordings.remove(changes);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (catalogReadModel.isEnabled()) {
+            try {
+                catalogReadModel.load();
+                loadFromReadModel();
+            } catch (RuntimeException e) {
+                log.warn("Could not load catalog statistics from the read model, computing them in the database", e);
+            }
+        }
+        if (!loaded) {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.warn("Catalog statistics not loaded yet, counts are read from the database until the next reconciliation", e);
+            }
+        }
+    }
+
+    /**
+     * Computes the aggregates in memory from the read model, which saves the grouped query at startup.
+     */
+    private void loadFromReadModel() {
+        Queue<Change> changes = startRecording();
+        try {
+            Aggregates recomputed = new Aggregates();
+            long[] watermarks = catalogReadModel.forEachProduct((id, product) -> recomputed.add(product.categoryId(),
+                    product.brand(), product.name(), StatsAggregate.of(product, 1)));
+            swapIn(recomputed, changes, change -> change.eventId() <= watermarks[shardRouter.shardOf(change.eventId())]);
+        } finally {
+            recordings.remove(changes);
+        }
+    }
+
+    /**
+     * @return A queue that receives every delta applied from now on, until it is removed from the recordings.
+     */
+    private Queue<Change> startRecording() {
+        Queue<Change> changes = new ConcurrentLinkedQueue<>();
+        recordings.add(changes);
+        return changes;
+    }
+
+    /**
+     * Runs on one shard, in a single snapshot.
+     */
+    private ShardStats readStats(long[] relayed) {
+        int shard = shardRouter.currentShard();
+        List<ProductStatsRow> rows = productRepository.aggregateStats();
+        return new ShardStats(shard, rows, new HashSet<>(outboxEventRepository.findIdsGreaterThan(relayed[shard])));
+    }
+
+    /**
+     * Replays the recorded deltas the recomputed aggregates don't contain yet and replaces the current ones with them.
+     *
+     * @param seen Whether the recomputed aggregates already contain a change.
+     */
+    private void swapIn(Aggregates recomputed, Queue<Change> changes, Predicate<Change> seen) {
+        swapLock.writeLock().lock();
+        try {
+            // No delta is applied while the write lock is held, so none can be missed between the replay and the swap.
+            recordings.remove(changes);
+            int replayed = 0;
+            for (Change change : changes) {
+                if (!seen.test(change)) {
+                    recomputed.apply(change.before(), change.after());
+                    replayed++;
+                }
+            }
+            if (replayed > 0) {
+                log.debug("Replayed {} of {} product changes made during reconciliation", replayed, changes.size());
+            }
+            int corrected = loaded ? aggregates.countDifferences(recomputed) : 0;
+            aggregates = recomputed;
+            loaded = true;
+            meterRegistry.counter("catalog.stats.reconciliations", "outcome", "applied").increment();
+            if (corrected > 0) {
+                meterRegistry.counter("catalog.stats.corrected_groups").increment(corrected);
+                log.info("Reconciled catalog statistics, corrected {} groups", corrected);
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Change change) {
+        swapLock.readLock().lock();
+        try {
+            aggregates.apply(change.before(), change.after());
+            for (Queue<Change> recording : recordings) {
+                recording.add(change);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static CatalogStatsDto toDto(String key, StatsAggregate aggregate) {
+        return new CatalogStatsDto(key, aggregate.productCount(), aggregate.inventoryTotal(), aggregate.averagePrice());
+    }
+
+    private record BrandAndName(String brand, String name) {
+    }
+
+    private record Change(ProductFacts before, ProductFacts after, long eventId) {
+    }
+
+    private record ShardStats(int shard, List<ProductStatsRow> rows, Set<Long> seenEvents) {
+    }
+
+    private static final class Aggregates {
+        private final AtomicReference<StatsAggregate> total = new AtomicReference<>(StatsAggregate.EMPTY);
+        private final Map<Long, StatsAggregate> byCategory = new ConcurrentHashMap<>();
+        private final Map<String, StatsAggregate> byBrand = new ConcurrentHashMap<>();
+        private final Map<BrandAndName, StatsAggregate> byBrandAndName = new ConcurrentHashMap<>();
+
+        private void apply(ProductFacts before, ProductFacts after) {
+            if (before != null) {
+                add(before.categoryId(), before.brand(), before.name(), StatsAggregate.of(before, -1));
+            }
+            if (after != null) {
+                add(after.categoryId(), after.brand(), after.name(), StatsAggregate.of(after, 1));
+            }
+        }
+
+        private void add(Long categoryId, String brand, String name, StatsAggregate delta) {
+            total.accumulateAndGet(delta, StatsAggregate::plus);
+            if (categoryId != null) {
+                merge(byCategory, categoryId, delta);
+            }
+            if (brand != null) {
+                merge(byBrand, brand, delta);
+            }
+            merge(byBrandAndName, new BrandAndName(brand, name), delta);
+        }
+
+        private static <K> void merge(Map<K, StatsAggregate> map, K key, StatsAggregate delta) {
+            // Returning null removes groups that no longer have products.
+            map.merge(key, delta, (current, change) -> {
+                StatsAggregate merged = current.plus(change);
+                return merged.isEmpty() ? null : merged;
+            });
+        }
+
+        private int countDifferences(Aggregates other) {
+            return differences(byCategory, other.byCategory) + differences(byBrand, other.byBrand)
+                    + differences(byBrandAndName, other.byBrandAndName);
+        }
+
+        private static <K> int differences(Map<K, StatsAggregate> current, Map<K, StatsAggregate> recomputed) {
+            Set<K> keys = new HashSet<>(current.keySet());
+            keys.addAll(recomputed.keySet());
+            int differences = 0;
+            for (K key : keys) {
+                StatsAggregate a = current.get(key);
+                StatsAggregate b = recomputed.get(key);
+                if (a == null || b == null || a.productCount() != b.productCount() || a.inventoryTotal() != b.inventoryTotal()
+                        || a.pricedCount() != b.pricedCount() || a.priceTotal().compareTo(b.priceTotal()) != 0) {
+                    differences++;
+                }
+            }
+            return differences;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.e_commerce.service.stats;
+
+import com.e_commerce.dto.CatalogStatsDto;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ICatalogStatsService {
+
+    /**
+     * Applies a product change to the statistics once the current transaction commits.
+     * @param before The product as it was before the change, or null if it was created.
+     * @param after The product as it is after the change, or null if it was deleted.
+     * @param eventId The id of the outbox event recorded for the change.
+     */
+    void recordChange(ProductFacts before, ProductFacts after, long eventId);
+
+    /**
+     * @return Whether the statistics have been loaded from the database and can be served.
+     */
+    boolean isLoaded();
+
+    /**
+     * @return The number of products with the given brand and name.
+     */
+    long countByBrandAndName(String brandName, String productName);
+
+    /**
+     * @return Totals over all products.
+     */
+    CatalogStatsDto getTotals();
+
+    /**
+     * @return Statistics of every category that has products, keyed by category name.
+     */
+    List<CatalogStatsDto> getCategoryStats();
+
+    /**
+     * @return Statistics of the products directly in the named category, or empty if there is no such category.
+     */
+    Optional<CatalogStatsDto> getCategoryStats(String categoryName);
+
+    /**
+     * @return Statistics of every brand that has products.
+     */
+    List<CatalogStatsDto> getBrandStats();
+
+    /**
+     * @return Statistics of the given brand.
+     */
+    CatalogStatsDto getBrandStats(String brandName);
+
+    /**
+     * Recomputes the statistics from the database and replaces the in-memory aggregates, correcting any drift.
+     * Product changes applied while they are computed are replayed onto them, unless the computation saw them.
+     */
+    void reconcile();
+}
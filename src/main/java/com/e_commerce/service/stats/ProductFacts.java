@@ -0,0 +1,16 @@
+package com.e_commerce.service.stats;
+
+import com.e_commerce.model.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * The attributes of a product that catalog statistics depend on, captured at one point in time.
+ */
+public record ProductFacts(Long categoryId, String brand, String name, BigDecimal price, int inventory) {
+
+    public static ProductFacts of(Product product) {
+        return new ProductFacts(product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getBrand(), product.getName(), product.getPrice(), product.getInventory());
+    }
+}
@@ -0,0 +1,31 @@
+package com.e_commerce.service.stats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable running totals of a group of products. Products without a price count towards everything but the average.
+ */
+record StatsAggregate(long productCount, long inventoryTotal, BigDecimal priceTotal, long pricedCount) {
+
+    static final StatsAggregate EMPTY = new StatsAggregate(0, 0, BigDecimal.ZERO, 0);
+
+    static StatsAggregate of(ProductFacts product, int sign) {
+        boolean priced = product.price() != null;
+        return new StatsAggregate(sign, (long) sign * product.inventory(),
+                priced ? product.price().multiply(BigDecimal.valueOf(sign)) : BigDecimal.ZERO, priced ? sign : 0);
+    }
+
+    StatsAggregate plus(StatsAggregate other) {
+        return new StatsAggregate(productCount + other.productCount, inventoryTotal + other.inventoryTotal,
+                priceTotal.add(other.priceTotal), pricedCount + other.pricedCount);
+    }
+
+    boolean isEmpty() {
+        return productCount == 0;
+    }
+
+    BigDecimal averagePrice() {
+        return pricedCount == 0 ? null : priceTotal.divide(BigDecimal.valueOf(pricedCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,28 @@
+package com.e_commerce.service.trending;
+
+import com.e_commerce.dto.TrendingProductDto;
+
+import java.util.List;
+
+public interface ITrendingService {
+
+    /**
+     * Counts one view of a product. Cheap enough to call on every read.
+     * @param categoryName The product's category, or null if the read didn't load it.
+     */
+    void recordView(long productId, String categoryName);
+
+    /**
+     * Counts one view of a product whose category the read didn't load, taking the category from the catalog read
+     * model when it knows the product.
+     */
+    void recordView(long productId);
+
+    /**
+     * @param limit The maximum number of products to return.
+     * @param categoryName Only return products of this category, or null for all.
+     * @return The most viewed products of the trending window, most views first.
+     * @throws IllegalArgumentException if the limit is not positive or exceeds the number of tracked products.
+     */
+    List<TrendingProductDto> getTrending(int limit, String categoryName);
+}
@@ -0,0 +1,92 @@
+package com.e_commerce.service.trending;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch over a sliding window of time buckets.
+ * <p>
+ * Every item is counted twice: in the bucket of the current period and in a running window total. Advancing to the
+ * next period subtracts the oldest bucket from the window and reuses it, so an estimate is a single row minimum
+ * over the window and never sums buckets. Counting is one atomic add per cell, without locks or retry loops.
+ * Estimates never undercount; they overcount by at most a few per mille of the window's total with the default size.
+ */
+final class SlidingCountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final AtomicIntegerArray[] buckets;
+    private final AtomicLongArray window;
+    private volatile int current;
+
+    /**
+     * @param depth The number of hash rows.
+     * @param width The number of counters per row, rounded up to a power of two.
+     * @param bucketCount The number of periods in the window, including the current one.
+     */
+    SlidingCountMinSketch(int depth, int width, int bucketCount) {
+        if (depth < 1 || width < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Sketch depth, width and bucket count must be positive");
+        }
+        this.depth = depth;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = this.width - 1;
+        this.buckets = new AtomicIntegerArray[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new AtomicIntegerArray(depth * this.width);
+        }
+        this.window = new AtomicLongArray(depth * this.width);
+    }
+
+    /**
+     * Counts one occurrence in the current period.
+     *
+     * @return The estimated count over the window, including this occurrence.
+     */
+    long increment(long item) {
+        AtomicIntegerArray bucket = buckets[current];
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(item, row);
+            bucket.getAndIncrement(cell);
+            estimate = Math.min(estimate, window.incrementAndGet(cell));
+        }
+        return estimate;
+    }
+
+    /**
+     * @return The estimated count over the window.
+     */
+    long estimate(long item) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, window.get(cell(item, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Starts the next period and drops the oldest one from the window. Only one thread may advance at a time.
+     */
+    void advance() {
+        int next = (current + 1) % buckets.length;
+        // Nobody writes the oldest bucket, so its counts can be moved out of the window without losing increments.
+        AtomicIntegerArray expiring = buckets[next];
+        for (int cell = 0; cell < expiring.length(); cell++) {
+            int count = expiring.getAndSet(cell, 0);
+            if (count != 0) {
+                window.addAndGet(cell, -count);
+            }
+        }
+        current = next;
+    }
+
+    private int cell(long item, int row) {
+        long hash = item * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return row * width + (int) (hash & mask);
+    }
+}
@@ -0,0 +1,153 @@
+package com.e_commerce.service.trending;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.dto.TrendingProductDto;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.readmodel.CatalogReadModel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the most viewed products of the last hour in memory, without touching the database.
+ * <p>
+ * Views are counted in a {@link SlidingCountMinSketch} of one bucket per minute. Next to it a bounded set of
+ * candidates holds the products that may be in the top list: a product enters while the set has room, or when its
+ * estimate beats the weakest candidate of the last ranking. Rankings run when the window advances and on every
+ * query; they read the candidates' estimates, drop the weakest beyond the capacity and raise the entry bar.
+ * <p>
+ * A view counted without its category takes it from the catalog read model and the category cache.
+ * <p>
+ * Category lists are filtered from the same candidates, so a category whose products all rank below the capacity
+ * appears empty. The list is per node.
+ */
+@Service
+@RequiredArgsConstructor
+public class TrendingService implements ITrendingService {
+
+    private static final Comparator<Ranked> MOST_VIEWED = Comparator.comparingLong(Ranked::views).reversed()
+            .thenComparingLong(Ranked::productId);
+
+    private final MeterRegistry meterRegistry;
+    private final CatalogReadModel catalogReadModel;
+    private final CategoryTreeCache categoryTreeCache;
+    private final Map<Long, Candidate> candidates = new ConcurrentHashMap<>();
+    private final LongAdder views = new LongAdder();
+    private volatile long entryThreshold;
+    private SlidingCountMinSketch sketch;
+
+    @Value("${catalog.trending.window-buckets:60}")
+    private int windowBuckets;
+
+    @Value("${catalog.trending.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${catalog.trending.sketch-width:4096}")
+    private int sketchWidth;
+
+    @Value("${catalog.trending.capacity:1000}")
+    private int capacity;
+
+    @PostConstruct
+    void init() {
+        sketch = new SlidingCountMinSketch(sketchDepth, sketchWidth, windowBuckets);
+        FunctionCounter.builder("catalog.trending.views", views, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("catalog.trending.candidates", candidates, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public void recordView(long productId) {
+        recordView(productId, catalogReadModel.findCategoryId(productId)
+                .flatMap(categoryTreeCache::findById)
+                .map(CategoryNodeDto::getName)
+                .orElse(null));
+    }
+
+    @Override
+    public void recordView(long productId, String categoryName) {
+        views.increment();
+        long estimate = sketch.increment(productId);
+        Candidate candidate = candidates.get(productId);
+        if (candidate != null) {
+            if (categoryName != null && !categoryName.equals(candidate.category)) {
+                candidate.category = categoryName;
+            }
+            return;
+        }
+        // The set may overshoot the capacity between rankings, but never by more than the capacity again.
+        if (estimate > entryThreshold && candidates.size() < 2 * capacity) {
+            candidates.putIfAbsent(productId, new Candidate(categoryName));
+        }
+    }
+
+    @Override
+    public List<TrendingProductDto> getTrending(int limit, String categoryName) {
+        if (limit < 1 || limit > capacity) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + capacity);
+        }
+        List<TrendingProductDto> trending = new ArrayList<>(limit);
+        for (Ranked ranked : rank()) {
+            if (trending.size() == limit) {
+                break;
+            }
+            if (categoryName == null || categoryName.equals(ranked.candidate.category)) {
+                trending.add(new TrendingProductDto(ranked.productId, ranked.candidate.category, ranked.views));
+            }
+        }
+        return trending;
+    }
+
+    /**
+     * Moves the window on by one bucket and ranks the candidates against the shrunk window.
+     */
+    @Scheduled(initialDelayString = "${catalog.trending.bucket-ms:60000}", fixedRateString = "${catalog.trending.bucket-ms:60000}")
+    public synchronized void advanceWindow() {
+        sketch.advance();
+        rank();
+    }
+
+    private synchronized List<Ranked> rank() {
+        List<Ranked> ranked = new ArrayList<>(candidates.size());
+        candidates.forEach((productId, candidate) -> {
+            long estimate = sketch.estimate(productId);
+            if (estimate == 0) {
+                candidates.remove(productId, candidate);
+            } else {
+                ranked.add(new Ranked(productId, candidate, estimate));
+            }
+        });
+        ranked.sort(MOST_VIEWED);
+        if (ranked.size() < capacity) {
+            entryThreshold = 0;
+            return ranked;
+        }
+        for (Ranked dropped : ranked.subList(capacity, ranked.size())) {
+            candidates.remove(dropped.productId, dropped.candidate);
+        }
+        entryThreshold = ranked.get(capacity - 1).views;
+        return ranked.subList(0, capacity);
+    }
+
+    private static final class Candidate {
+        private volatile String category;
+
+        private Candidate(String category) {
+            this.category = category;
+        }
+    }
+
+    private record Ranked(long productId, Candidate candidate, long views) {
+    }
+}
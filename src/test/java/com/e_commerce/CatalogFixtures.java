@@ -0,0 +1,25 @@
+package com.e_commerce;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.request.AddProductRequest;
+
+import java.math.BigDecimal;
+
+/**
+ * Requests shared by the catalog tests.
+ */
+public final class CatalogFixtures {
+
+    private CatalogFixtures() {
+    }
+
+    public static AddProductRequest addProductRequest(String name, String brand, String categoryName, String price, int inventory) {
+        AddProductRequest request = new AddProductRequest();
+        request.setName(name);
+        request.setBrand(brand);
+        request.setPrice(new BigDecimal(price));
+        request.setInventory(inventory);
+        request.setCategory(new Category(categoryName));
+        return request;
+    }
+}
@@ -0,0 +1,103 @@
+package com.e_commerce.config;
+
+import com.e_commerce.dto.ImageDto;
+import com.e_commerce.dto.ProductDto;
+import com.e_commerce.model.Category;
+import com.e_commerce.response.ApiResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares bytes on the wire and encode/decode throughput of the negotiated response formats for a product list.
+ * Run with {@code mvn test -Pbenchmark}; the results are logged as one table.
+ */
+@Slf4j
+@Tag("benchmark")
+class ResponseEncodingBenchmarkTest {
+
+    private static final int PRODUCTS = 500;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    @Test
+    void compareEncodings() throws Exception {
+        ApiResponse response = new ApiResponse("Found", products());
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("application/json", builder().build());
+        mappers.put("application/cbor", builder().factory(new CBORFactory()).build());
+        mappers.put("application/x-jackson-smile", builder().factory(new SmileFactory()).build());
+
+        ObjectMapper json = mappers.get("application/json");
+        JsonNode expected = json.readTree(json.writeValueAsBytes(response));
+        StringBuilder report = new StringBuilder(String.format("%-28s %10s %14s %14s", "format", "bytes", "encode ops/s", "decode ops/s"));
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+            byte[] encoded = mapper.writeValueAsBytes(response);
+            assertEquals(expected, mapper.readTree(encoded));
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                mapper.writeValueAsBytes(response);
+                mapper.readTree(encoded);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                mapper.writeValueAsBytes(response);
+            }
+            double encodeOps = MEASURED_ROUNDS / ((System.nanoTime() - start) / 1e9);
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                mapper.readTree(encoded);
+            }
+            double decodeOps = MEASURED_ROUNDS / ((System.nanoTime() - start) / 1e9);
+            report.append(String.format("%n%-28s %10d %14.0f %14.0f", entry.getKey(), encoded.length, encodeOps, decodeOps));
+        }
+        log.info("Response encodings of {} products:{}{}", PRODUCTS, System.lineSeparator(), report);
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        // Decode prices as BigDecimal in every format, so the decoded trees can be compared exactly.
+        return Jackson2ObjectMapperBuilder.json().featuresToEnable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    }
+
+    private static List<ProductDto> products() {
+        List<ProductDto> products = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            Category category = new Category("Category " + id % 20);
+            category.setId(id % 20);
+            ProductDto product = new ProductDto();
+            product.setId(id);
+            product.setName("Product " + id);
+            product.setBrand("Brand " + id % 50);
+            product.setDescription("A reasonably detailed description of product " + id + " for list views.");
+            product.setPrice(BigDecimal.valueOf(1999 + id, 2));
+            product.setInventory((int) (id % 100));
+            product.setCategory(category);
+            List<ImageDto> images = new ArrayList<>();
+            for (long image = 1; image <= 3; image++) {
+                ImageDto imageDto = new ImageDto();
+                imageDto.setId(id * 10 + image);
+                imageDto.setFileName("product-" + id + "-" + image + ".png");
+                imageDto.setDownloadUrl("/api/v1/images/image/download/" + (id * 10 + image));
+                images.add(imageDto);
+            }
+            product.setImages(images);
+            products.add(product);
+        }
+        return products;
+    }
+}
@@ -0,0 +1,61 @@
+package com.e_commerce.filter;
+
+import com.e_commerce.service.admission.AdmissionControlService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    @Test
+    void ignoresClientHeadersFromUntrustedCallers() {
+        AdmissionControlFilter filter = filter(List.of());
+
+        assertEquals("203.0.113.7", filter.clientId(request("203.0.113.7", "random-1", null)));
+        assertEquals("203.0.113.7", filter.clientId(request("203.0.113.7", null, "198.51.100.1")));
+    }
+
+    @Test
+    void believesTrustedProxies() {
+        AdmissionControlFilter filter = filter(List.of("10.0.0.0/8", "192.168.1.5"));
+
+        assertEquals("tenant-42", filter.clientId(request("10.1.2.3", "tenant-42", "198.51.100.1")));
+        assertEquals("198.51.100.1", filter.clientId(request("10.1.2.3", null, "forged, 198.51.100.1, 192.168.1.5")));
+        assertEquals("10.1.2.3", filter.clientId(request("10.1.2.3", null, null)));
+        assertEquals("192.168.1.6", filter.clientId(request("192.168.1.6", "tenant-42", null)));
+    }
+
+    @Test
+    void neverTrustsHostNames() {
+        AdmissionControlFilter filter = filter(List.of("10.0.0.0/8"));
+
+        assertEquals("localhost", filter.clientId(request("10.0.0.1", null, "localhost")));
+    }
+
+    private static AdmissionControlFilter filter(List<String> trustedProxies) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(new AdmissionControlService(new SimpleMeterRegistry()),
+                new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "clientIdHeader", "X-Client-Id");
+        ReflectionTestUtils.setField(filter, "trustedProxyAddresses", trustedProxies);
+        filter.parseTrustedProxies();
+        return filter;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress, String clientId, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/product/get-all-products");
+        request.setRemoteAddr(remoteAddress);
+        if (clientId != null) {
+            request.addHeader("X-Client-Id", clientId);
+        }
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
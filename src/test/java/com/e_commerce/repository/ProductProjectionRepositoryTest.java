@@ -0,0 +1,175 @@
+package com.e_commerce.repository;
+
+import com.e_commerce.dto.ProductFields;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.projection.ProductFilter;
+import com.e_commerce.service.image.IImageService;
+import com.e_commerce.service.product.IProductService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Reads sparse products on H2 and checks the SQL Hibernate runs for them, captured on the test thread only.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalog-projection;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.e_commerce.repository.ProductProjectionRepositoryTest$CapturedStatements"})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class ProductProjectionRepositoryTest {
+
+    @Autowired
+    private ProductProjectionRepository projectionRepository;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = productService.addProduct(addProductRequest("Kettle " + System.nanoTime(), "Projected", "Kitchen", "25.00", 4));
+        imageService.saveImage(List.of(new MockMultipartFile("file", "kettle.png", "image/png", "kettle".getBytes())),
+                product.getId());
+        CapturedStatements.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        CapturedStatements.stop();
+    }
+
+    @Test
+    void returnsExactlyTheRequestedFieldsInRequestOrder() {
+        Map<String, Object> fields = find("price,name,id");
+
+        assertEquals(List.of("price", "name", "id"), new ArrayList<>(fields.keySet()));
+        assertEquals(0, new BigDecimal("25.00").compareTo((BigDecimal) fields.get("price")));
+        assertEquals(product.getName(), fields.get("name"));
+        assertEquals(product.getId(), fields.get("id"));
+    }
+
+    @Test
+    void selectsOnlyTheRequestedColumns() {
+        find("name");
+
+        String select = productSelect();
+        assertTrue(select.contains(".name"), select);
+        assertFalse(select.contains(".brand"), select);
+        assertFalse(select.contains(".description"), select);
+        assertFalse(select.contains(".price"), select);
+        assertFalse(select.contains(".inventory"), select);
+        assertFalse(select.contains("join"), select);
+        assertEquals(List.of(), imageSelects());
+    }
+
+    @Test
+    void joinsTheCategoryOnlyWhenRequested() {
+        Map<String, Object> fields = find("name,category");
+
+        assertTrue(productSelect().contains("join category"), productSelect());
+        Map<?, ?> category = (Map<?, ?>) fields.get("category");
+        assertEquals(product.getCategory().getId(), category.get("id"));
+        assertEquals("Kitchen", category.get("name"));
+    }
+
+    @Test
+    void loadsImagesOnlyWhenRequested() {
+        Map<String, Object> fields = find("images");
+
+        assertEquals(1, imageSelects().size());
+        List<?> images = (List<?>) fields.get("images");
+        assertEquals(1, images.size());
+        assertEquals("kettle.png", ((Map<?, ?>) images.get(0)).get("fileName"));
+        assertFalse(productSelect().contains("join"), productSelect());
+    }
+
+    @Test
+    void rejectsUnknownAndEmptyFieldLists() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> ProductFields.parse("name,secret"));
+        assertThrows(IllegalArgumentException.class, () -> ProductFields.parse(" , "));
+
+        mockMvc.perform(get("/api/v1/product/get-product/id/{id}", product.getId()).param("fields", "secret"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/product/get-product/id/{id}", product.getId()).param("fields", ""))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/product/get-products").param("ids", String.valueOf(product.getId())).param("fields", ","))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/product/get-product/id/{id}", product.getId()).param("fields", "name"))
+                .andExpect(status().isOk());
+    }
+
+    private Map<String, Object> find(String fields) {
+        Map<Long, Map<String, Object>> products = projectionRepository.findFields(
+                ProductFilter.byIds(List.of(product.getId())), ProductFields.parse(fields));
+        assertEquals(List.of(product.getId()), new ArrayList<>(products.keySet()));
+        return products.get(product.getId());
+    }
+
+    private static String productSelect() {
+        List<String> selects = CapturedStatements.matching(" from product ");
+        assertEquals(1, selects.size(), selects.toString());
+        return selects.get(0);
+    }
+
+    private static List<String> imageSelects() {
+        return CapturedStatements.matching(" from image ");
+    }
+
+    /**
+     * Collects the statements Hibernate prepares on the thread that started the capture.
+     */
+    public static class CapturedStatements implements StatementInspector {
+
+        private static final List<String> statements = new CopyOnWriteArrayList<>();
+        private static volatile Thread capturing;
+
+        static void start() {
+            statements.clear();
+            capturing = Thread.currentThread();
+        }
+
+        static void stop() {
+            capturing = null;
+        }
+
+        static List<String> matching(String fragment) {
+            return statements.stream().filter(sql -> sql.toLowerCase(Locale.ROOT).contains(fragment)).toList();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == capturing) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.e_commerce.service.admission;
+
+import com.e_commerce.service.admission.AdmissionControlService.Decision;
+import com.e_commerce.service.admission.AdmissionControlService.Rejection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlServiceTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private AdmissionControlService admissionControlService;
+
+    @BeforeEach
+    void setUp() {
+        admissionControlService = new AdmissionControlService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(admissionControlService, "permitsPerSecond", 1000.0);
+        ReflectionTestUtils.setField(admissionControlService, "burst", 1000);
+        ReflectionTestUtils.setField(admissionControlService, "heavyMaxConcurrent", 2);
+        ReflectionTestUtils.setField(admissionControlService, "standardMaxConcurrent", 3);
+        ReflectionTestUtils.setField(admissionControlService, "heavyEndpoints", List.of("GET /api/v1/product/get-all-products"));
+        ReflectionTestUtils.setField(admissionControlService, "exemptPaths", List.of("/api/v1/events/**"));
+        admissionControlService.registerMeters();
+    }
+
+    @Test
+    void tokenBucketAllowsABurstThenTheSustainedRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+        long wait = bucket.tryAcquire(0);
+
+        assertEquals(SECOND / 10, wait);
+        assertTrue(bucket.tryAcquire(SECOND / 10 - 1) > 0);
+        assertEquals(0, bucket.tryAcquire(SECOND / 10));
+        assertFalse(bucket.isIdle(SECOND / 10));
+        assertTrue(bucket.isIdle(SECOND));
+    }
+
+    @Test
+    void rateLimitsEachClientSeparately() {
+        ReflectionTestUtils.setField(admissionControlService, "permitsPerSecond", 1.0);
+        ReflectionTestUtils.setField(admissionControlService, "burst", 2);
+
+        release(admissionControlService.admit("a", "GET", "/api/v1/product/get-product/id/1"));
+        release(admissionControlService.admit("a", "GET", "/api/v1/product/get-product/id/1"));
+        Decision limited = admissionControlService.admit("a", "GET", "/api/v1/product/get-product/id/1");
+        Decision other = admissionControlService.admit("b", "GET", "/api/v1/product/get-product/id/1");
+
+        assertFalse(limited.isAdmitted());
+        assertEquals(Rejection.RATE_LIMITED, limited.rejection());
+        assertTrue(limited.retryAfterSeconds() >= 1);
+        assertTrue(other.isAdmitted());
+    }
+
+    @Test
+    void bulkheadsRejectWhenFullAndAdmitAfterRelease() {
+        List<Decision> heavy = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            heavy.add(admissionControlService.admit("a", "GET", "/api/v1/product/get-all-products"));
+        }
+        Decision rejected = admissionControlService.admit("a", "GET", "/api/v1/product/get-all-products");
+        Decision standard = admissionControlService.admit("a", "GET", "/api/v1/product/get-product/id/1");
+
+        assertTrue(heavy.stream().allMatch(Decision::isAdmitted));
+        assertEquals(Rejection.BULKHEAD_FULL, rejected.rejection());
+        assertTrue(standard.isAdmitted());
+
+        release(heavy.get(0));
+        release(standard);
+        assertTrue(admissionControlService.admit("a", "GET", "/api/v1/product/get-all-products").isAdmitted());
+    }
+
+    @Test
+    void exemptPathsTakeNoBulkheadPermit() {
+        for (int i = 0; i < 10; i++) {
+            Decision decision = admissionControlService.admit("a", "GET", "/api/v1/events/catalog");
+            assertTrue(decision.isAdmitted());
+            assertNull(decision.bulkhead());
+        }
+    }
+
+    @Test
+    void bulkheadCountsPermitsInUse() {
+        Bulkhead bulkhead = new Bulkhead("test", 1);
+
+        assertTrue(bulkhead.tryEnter());
+        assertFalse(bulkhead.tryEnter());
+        assertEquals(1, bulkhead.getInUse());
+        bulkhead.exit();
+        assertEquals(0, bulkhead.getInUse());
+        assertTrue(bulkhead.tryEnter());
+    }
+
+    private void release(Decision decision) {
+        assertTrue(decision.isAdmitted());
+        admissionControlService.release(decision);
+    }
+}
@@ -0,0 +1,144 @@
+package com.e_commerce.service.bulk;
+
+import com.e_commerce.dto.BulkAdjustmentJobDto;
+import com.e_commerce.model.BulkAdjustmentJob;
+import com.e_commerce.model.BulkAdjustmentJob.Operation;
+import com.e_commerce.model.BulkAdjustmentJob.Status;
+import com.e_commerce.model.BulkAdjustmentJob.Target;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.BulkAdjustmentJobRepository;
+import com.e_commerce.request.BulkAdjustmentRequest;
+import com.e_commerce.service.category.ICategoryService;
+import com.e_commerce.service.product.IProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs bulk adjustments on H2 with chunks of two products, as set by the h2 test profile.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class BulkAdjustmentServiceTest {
+
+    @Autowired
+    private IBulkAdjustmentService bulkAdjustmentService;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private BulkAdjustmentJobRepository jobRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void raisesPricesOfTheMatchingProductsOnly() throws Exception {
+        Category lighting = categoryService.addCategory(new Category("Lighting"));
+        categoryService.addCategory(new Category("Desk lamps"), lighting.getId());
+        List<Product> matching = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            matching.add(productService.addProduct(addProductRequest("Lamp " + i, "Reprice", i % 2 == 0 ? "Lighting" : "Desk lamps", "10.00", 4)));
+        }
+        Product otherBrand = productService.addProduct(addProductRequest("Lamp", "Other", "Desk lamps", "10.00", 4));
+        Product otherCategory = productService.addProduct(addProductRequest("Lamp 9", "Reprice", "Garden", "10.00", 4));
+        long eventsBefore = countEvents();
+
+        BulkAdjustmentJobDto job = awaitFinished(bulkAdjustmentService.submit(
+                request("Reprice", "Lighting", true, Target.PRICE, Operation.PERCENT, "4", "0.99")));
+
+        assertEquals(Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getTotalChunks());
+        assertEquals(3, job.getCompletedChunks());
+        assertEquals(5, job.getRowsUpdated());
+        for (Product product : matching) {
+            assertEquals(new BigDecimal("10.99"), price(product.getId()));
+        }
+        assertEquals(new BigDecimal("10.00"), price(otherBrand.getId()));
+        assertEquals(new BigDecimal("10.00"), price(otherCategory.getId()));
+        assertEquals(eventsBefore + 5, countEvents());
+    }
+
+    @Test
+    void inventoryNeverGoesBelowZero() throws Exception {
+        Product low = productService.addProduct(addProductRequest("Hose", "Stock", "Yard", "5.00", 2));
+        Product high = productService.addProduct(addProductRequest("Rake", "Stock", "Yard", "5.00", 20));
+
+        awaitFinished(bulkAdjustmentService.submit(request("Stock", null, false, Target.INVENTORY, Operation.ADD, "-5", null)));
+
+        assertEquals(0, productService.getProductById(low.getId()).getInventory());
+        assertEquals(15, productService.getProductById(high.getId()).getInventory());
+    }
+
+    @Test
+    void resumingSkipsChunksAlreadyApplied() throws Exception {
+        Product product = productService.addProduct(addProductRequest("Bench", "Resume", "Patio", "20.00", 1));
+        BulkAdjustmentJobDto job = awaitFinished(bulkAdjustmentService.submit(
+                request("Resume", null, false, Target.PRICE, Operation.ADD, "1.50", null)));
+        // As if the node had crashed after the last chunk but before the job was marked completed.
+        BulkAdjustmentJob stored = jobRepository.findById(job.getId()).orElseThrow();
+        stored.setStatus(Status.FAILED);
+        jobRepository.save(stored);
+
+        BulkAdjustmentJobDto resumed = awaitFinished(bulkAdjustmentService.resume(job.getId()));
+
+        assertEquals(Status.COMPLETED, resumed.getStatus());
+        assertEquals(new BigDecimal("21.50"), price(product.getId()));
+        assertThrows(IllegalStateException.class, () -> bulkAdjustmentService.resume(job.getId()));
+    }
+
+    @Test
+    void rejectsIncompleteRequests() {
+        assertThrows(IllegalArgumentException.class, () -> bulkAdjustmentService.submit(
+                request(null, null, false, Target.PRICE, Operation.ADD, "1", null)));
+        assertThrows(IllegalArgumentException.class, () -> bulkAdjustmentService.submit(
+                request("Any", null, false, Target.INVENTORY, Operation.ADD, "1", "0.99")));
+    }
+
+    private BulkAdjustmentJobDto awaitFinished(BulkAdjustmentJobDto job) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            BulkAdjustmentJobDto current = bulkAdjustmentService.getJob(job.getId());
+            if (current.getStatus() != Status.RUNNING) {
+                return current;
+            }
+            Thread.sleep(50);
+        }
+        fail("Job " + job.getId() + " did not finish");
+        return null;
+    }
+
+    private BigDecimal price(Long id) {
+        return jdbcTemplate.queryForObject("select price from product where id = ?", BigDecimal.class, id);
+    }
+
+    private long countEvents() {
+        return jdbcTemplate.queryForObject("select count(*) from outbox_event where change_type = 'UPDATED'", Long.class);
+    }
+
+    private static BulkAdjustmentRequest request(String brand, String category, boolean includeSubcategories,
+                                                 Target target, Operation operation, String amount, String endingIn) {
+        BulkAdjustmentRequest request = new BulkAdjustmentRequest();
+        request.setBrand(brand);
+        request.setCategory(category);
+        request.setIncludeSubcategories(includeSubcategories);
+        request.setTarget(target);
+        request.setOperation(operation);
+        request.setAmount(new BigDecimal(amount));
+        request.setEndingIn(endingIn != null ? new BigDecimal(endingIn) : null);
+        return request;
+    }
+}
@@ -0,0 +1,120 @@
+package com.e_commerce.service.category;
+
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import com.e_commerce.service.product.IProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds small category trees on H2, named after each test, and reads, moves and deletes within them.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class CategoryServiceTest {
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void subtreeReadsReturnTheProductsAnywhereUnderACategory() {
+        Category electronics = categoryService.addCategory(new Category("Tree Electronics"));
+        Category phones = categoryService.addCategory(new Category("Tree Phones"), electronics.getId());
+        categoryService.addCategory(new Category("Tree Smartphones"), phones.getId());
+        categoryService.addCategory(new Category("Tree Audio"), electronics.getId());
+        categoryService.addCategory(new Category("Tree Garden"));
+        Product smartphone = productService.addProduct(addProductRequest("Phone", "Tree", "Tree Smartphones", "300.00", 1));
+        Product speaker = productService.addProduct(addProductRequest("Speaker", "Tree", "Tree Audio", "80.00", 1));
+        productService.addProduct(addProductRequest("Hose", "Tree", "Tree Garden", "20.00", 1));
+
+        assertEquals(Set.of(smartphone.getId(), speaker.getId()), productIdsUnder("Tree Electronics"));
+        assertEquals(Set.of(smartphone.getId()), productIdsUnder("Tree Phones"));
+        assertEquals(Set.of(), productIdsUnder("Tree Phones Missing"));
+    }
+
+    @Test
+    void movingACategoryRebasesItsSubtree() throws Exception {
+        Category electronics = categoryService.addCategory(new Category("Move Electronics"));
+        Category phones = categoryService.addCategory(new Category("Move Phones"), electronics.getId());
+        Category smartphones = categoryService.addCategory(new Category("Move Smartphones"), phones.getId());
+        Category outlet = categoryService.addCategory(new Category("Move Outlet"));
+        Product smartphone = productService.addProduct(addProductRequest("Phone", "Move", "Move Smartphones", "300.00", 1));
+
+        categoryService.moveCategory(phones.getId(), outlet.getId());
+
+        Category moved = categoryService.getCategoryById(phones.getId());
+        Category descendant = categoryService.getCategoryById(smartphones.getId());
+        assertEquals(outlet.getId(), moved.getParentId());
+        assertEquals(CategoryPath.of(outlet.getPath(), phones.getId()), moved.getPath());
+        assertEquals(CategoryPath.of(moved.getPath(), smartphones.getId()), descendant.getPath());
+        assertEquals(2, descendant.getDepth());
+        assertEquals(Set.of(smartphone.getId()), productIdsUnder("Move Outlet"));
+        assertEquals(Set.of(), productIdsUnder("Move Electronics"));
+
+        JsonNode movedEvent = lastUpdate(phones.getId());
+        assertEquals(outlet.getId(), movedEvent.get("parentId").asLong());
+        assertEquals(moved.getPath(), movedEvent.get("path").asText());
+        assertEquals(descendant.getPath(), lastUpdate(smartphones.getId()).get("path").asText());
+    }
+
+    @Test
+    void aCategoryCannotMoveUnderItsOwnSubtree() {
+        Category electronics = categoryService.addCategory(new Category("Cycle Electronics"));
+        Category phones = categoryService.addCategory(new Category("Cycle Phones"), electronics.getId());
+
+        assertThrows(IllegalArgumentException.class, () -> categoryService.moveCategory(electronics.getId(), phones.getId()));
+        assertThrows(IllegalArgumentException.class, () -> categoryService.moveCategory(electronics.getId(), electronics.getId()));
+        assertNull(categoryService.getCategoryById(electronics.getId()).getParentId());
+    }
+
+    @Test
+    void deletingACategoryMovesItsChildrenUp() throws Exception {
+        Category electronics = categoryService.addCategory(new Category("Delete Electronics"));
+        Category phones = categoryService.addCategory(new Category("Delete Phones"), electronics.getId());
+        Category smartphones = categoryService.addCategory(new Category("Delete Smartphones"), phones.getId());
+        Category cases = categoryService.addCategory(new Category("Delete Cases"), smartphones.getId());
+
+        categoryService.deleteCategoryById(phones.getId());
+
+        Category child = categoryService.getCategoryById(smartphones.getId());
+        Category grandchild = categoryService.getCategoryById(cases.getId());
+        assertEquals(electronics.getId(), child.getParentId());
+        assertEquals(CategoryPath.of(electronics.getPath(), smartphones.getId()), child.getPath());
+        assertEquals(CategoryPath.of(child.getPath(), cases.getId()), grandchild.getPath());
+        assertEquals(2, grandchild.getDepth());
+        assertEquals(electronics.getId(), lastUpdate(smartphones.getId()).get("parentId").asLong());
+        assertEquals(grandchild.getPath(), lastUpdate(cases.getId()).get("path").asText());
+    }
+
+    private Set<Long> productIdsUnder(String categoryName) {
+        return productService.getProductByCategoryTree(categoryName).stream().map(Product::getId).collect(Collectors.toSet());
+    }
+
+    private JsonNode lastUpdate(Long categoryId) throws Exception {
+        List<String> payloads = jdbcTemplate.queryForList("select payload from outbox_event where aggregate_type = 'CATEGORY' "
+                + "and aggregate_id = ? and change_type = 'UPDATED' order by id desc", String.class, categoryId);
+        assertFalse(payloads.isEmpty(), "No update recorded for category " + categoryId);
+        return objectMapper.readTree(payloads.get(0));
+    }
+}
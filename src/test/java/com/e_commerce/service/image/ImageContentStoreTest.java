@@ -0,0 +1,78 @@
+package com.e_commerce.service.image;
+
+import com.e_commerce.dto.ImageDto;
+import com.e_commerce.model.Product;
+import com.e_commerce.service.product.IProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shares image contents between uploads of the same bytes on H2.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class ImageContentStoreTest {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void theSameBytesAreStoredOnce() {
+        Product product = productService.addProduct(addProductRequest("Vase", "Shared", "Decor", "12.00", 1));
+
+        List<Long> imageIds = upload(product, "shared bytes", "shared bytes");
+
+        long contentId = contentOf(imageIds.get(0));
+        assertEquals(contentId, contentOf(imageIds.get(1)));
+        assertEquals(2, refCount(contentId));
+    }
+
+    @Test
+    void anUpdateReleasesThePreviousContent() {
+        Product product = productService.addProduct(addProductRequest("Frame", "Updated", "Decor", "8.00", 1));
+        List<Long> imageIds = upload(product, "old bytes", "old bytes");
+        long oldContentId = contentOf(imageIds.get(0));
+
+        imageService.updateImage(new MockMultipartFile("file", "new.png", "image/png", "new bytes".getBytes()), imageIds.get(0));
+
+        assertEquals(1, refCount(oldContentId));
+        long newContentId = contentOf(imageIds.get(0));
+        assertNotEquals(oldContentId, newContentId);
+        assertEquals(1, refCount(newContentId));
+        assertArrayEquals("new bytes".getBytes(), imageService.getImageData(imageIds.get(0)));
+        assertArrayEquals("old bytes".getBytes(), imageService.getImageData(imageIds.get(1)));
+    }
+
+    private List<Long> upload(Product product, String... contents) {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            files.add(new MockMultipartFile("file", "image-" + i + ".png", "image/png", contents[i].getBytes()));
+        }
+        return imageService.saveImage(files, product.getId()).stream().map(ImageDto::getId).toList();
+    }
+
+    private long contentOf(Long imageId) {
+        return jdbcTemplate.queryForObject("select content_id from image where id = ?", Long.class, imageId);
+    }
+
+    private int refCount(long contentId) {
+        return jdbcTemplate.queryForObject("select ref_count from image_content where id = ?", Integer.class, contentId);
+    }
+}
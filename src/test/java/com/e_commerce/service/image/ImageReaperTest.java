@@ -0,0 +1,73 @@
+package com.e_commerce.service.image;
+
+import com.e_commerce.dto.ImageDto;
+import com.e_commerce.model.Product;
+import com.e_commerce.service.product.IProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reaps deleted images and their contents on H2. Tombstones are reaped without a grace period, so this class has a
+ * database of its own.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalog-images;DB_CLOSE_DELAY=-1",
+        "catalog.images.reaper.grace-period=PT0S",
+        "catalog.images.reaper.batch-pause-ms=0"
+})
+@ActiveProfiles("h2")
+class ImageReaperTest {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private ImageReaper imageReaper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aContentIsReapedOnlyWhenNothingReferencesIt() {
+        Product product = productService.addProduct(addProductRequest("Rug", "Reaped", "Decor", "60.00", 1));
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "front.png", "image/png", "reaped bytes".getBytes()),
+                new MockMultipartFile("file", "back.png", "image/png", "reaped bytes".getBytes()));
+        List<Long> imageIds = imageService.saveImage(files, product.getId()).stream().map(ImageDto::getId).toList();
+        long contentId = jdbcTemplate.queryForObject("select content_id from image where id = ?", Long.class, imageIds.get(0));
+
+        imageService.deleteImageById(imageIds.get(0));
+        imageReaper.reap();
+
+        assertEquals(1, refCount(contentId));
+        assertArrayEquals("reaped bytes".getBytes(), imageService.getImageData(imageIds.get(1)));
+
+        imageService.deleteImageById(imageIds.get(1));
+        imageReaper.reap();
+
+        assertNull(refCount(contentId));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image where id in (?, ?)", Long.class,
+                imageIds.get(0), imageIds.get(1)));
+    }
+
+    /**
+     * @return The content's reference count, or null when the content was removed.
+     */
+    private Integer refCount(long contentId) {
+        return jdbcTemplate.queryForList("select ref_count from image_content where id = ?", Integer.class, contentId)
+                .stream().findFirst().orElse(null);
+    }
+}
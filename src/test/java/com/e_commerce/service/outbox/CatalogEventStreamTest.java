@@ -0,0 +1,118 @@
+package com.e_commerce.service.outbox;
+
+import com.e_commerce.model.OutboxEvent;
+import com.e_commerce.model.OutboxEvent.AggregateType;
+import com.e_commerce.model.OutboxEvent.ChangeType;
+import com.e_commerce.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Relays events of transactions that commit out of id order.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalog-event-stream;DB_CLOSE_DELAY=-1",
+        "catalog.outbox.relay-interval-ms=3600000",
+        "catalog.outbox.gap-timeout-ms=500",
+        "catalog.read-model.enabled=false"
+})
+@ActiveProfiles("h2")
+@RecordApplicationEvents
+class CatalogEventStreamTest {
+
+    @Autowired
+    private CatalogEventStream catalogEventStream;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    @BeforeEach
+    void drain() {
+        while (catalogEventStream.relayNextBatch() > 0) {
+            applicationEvents.clear();
+        }
+        applicationEvents.clear();
+    }
+
+    @Test
+    void holdsBackEventsUntilALowerIdCommits() throws Exception {
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> slow = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            long id = record(1).getId();
+            inserted.countDown();
+            await(release);
+            return id;
+        }));
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+        long fast = transactionTemplate.execute(status -> record(2).getId());
+
+        catalogEventStream.relayNextBatch();
+        assertEquals(List.of(), relayedIds());
+
+        release.countDown();
+        long slowId = slow.get(10, TimeUnit.SECONDS);
+        catalogEventStream.relayNextBatch();
+
+        assertTrue(slowId < fast);
+        assertEquals(List.of(slowId, fast), relayedIds());
+        assertArrayEquals(new long[]{fast}, catalogEventStream.getPosition());
+    }
+
+    @Test
+    void skipsIdsOfRolledBackTransactionsAfterTheTimeout() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            record(3);
+            status.setRollbackOnly();
+        });
+        long committed = transactionTemplate.execute(status -> record(4).getId());
+
+        catalogEventStream.relayNextBatch();
+        assertEquals(List.of(), relayedIds());
+
+        Thread.sleep(600);
+        catalogEventStream.relayNextBatch();
+
+        assertEquals(List.of(committed), relayedIds());
+    }
+
+    private OutboxEvent record(long productId) {
+        return outboxEventRepository.saveAndFlush(new OutboxEvent(AggregateType.PRODUCT, productId, ChangeType.UPDATED,
+                "{\"id\":" + productId + "}"));
+    }
+
+    private List<Long> relayedIds() {
+        return applicationEvents.stream(CatalogChangesRelayedEvent.class)
+                .flatMap(event -> event.getEvents().stream())
+                .map(OutboxEvent::getId)
+                .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
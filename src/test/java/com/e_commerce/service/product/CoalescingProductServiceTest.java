@@ -0,0 +1,243 @@
+package com.e_commerce.service.product;
+
+import com.e_commerce.exceptions.ProductNotFoundException;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Image;
+import com.e_commerce.model.Product;
+import com.e_commerce.repository.CategoryRepository;
+import com.e_commerce.repository.ImageRepository;
+import com.e_commerce.repository.ProductCreateRepository;
+import com.e_commerce.repository.ProductProjectionRepository;
+import com.e_commerce.repository.ProductRepository;
+import com.e_commerce.repository.projection.ProductFilter;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.category.ICategoryService;
+import com.e_commerce.service.outbox.IOutboxService;
+import com.e_commerce.service.sharding.ShardRouter;
+import com.e_commerce.service.stats.ICatalogStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.modelmapper.ModelMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CoalescingProductServiceTest {
+
+    private static final int CALLERS = 32;
+
+    private ProductRepository productRepository;
+    private ShardRouter shardRouter;
+    private CoalescingProductService productService;
+    private final CountDownLatch followersWaiting = new CountDownLatch(1);
+    private volatile Thread leader;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        shardRouter = mock(ShardRouter.class);
+        ProductService delegate = new ProductService(productRepository, mock(CategoryRepository.class),
+                mock(ImageRepository.class), new ModelMapper(), mock(IOutboxService.class),
+                mock(ICategoryService.class), mock(CategoryTreeCache.class),
+                mock(ProductProjectionRepository.class), mock(ICatalogStatsService.class), shardRouter,
+                mock(ProductCreateRepository.class));
+        productService = new CoalescingProductService(delegate, 5000);
+    }
+
+    @Test
+    void concurrentIdenticalReadsRunOneQuery() throws Exception {
+        Product product = product(7L);
+        when(productRepository.findById(7L)).thenAnswer(heldUntilFollowersWait(Optional.of(product)));
+
+        List<Future<Product>> results = callConcurrently(() -> productService.getProductById(7L));
+
+        int shared = 0;
+        for (Future<Product> result : results) {
+            Product received = result.get();
+            if (received == product) {
+                shared++;
+                continue;
+            }
+            // Followers get copies, never the entities of the caller that ran the query.
+            assertEquals(7L, received.getId());
+            assertEquals(product.getName(), received.getName());
+            assertNotSame(product.getCategory(), received.getCategory());
+            assertEquals(product.getCategory().getName(), received.getCategory().getName());
+            assertEquals(product.getCategory().getParentId(), received.getCategory().getParentId());
+            assertNotSame(product.getImages(), received.getImages());
+            assertNotSame(product.getImages().get(0), received.getImages().get(0));
+            assertEquals("/api/v1/images/image/download/5", received.getImages().get(0).getDownloadUrl());
+            assertSame(received, received.getImages().get(0).getProduct());
+        }
+        assertEquals(1, shared);
+        verify(productRepository, times(1)).findById(7L);
+    }
+
+    @Test
+    void concurrentFieldReadsGetTheirOwnMaps() throws Exception {
+        Map<String, Object> category = new LinkedHashMap<>(Map.of("id", 2L, "name", "Phones"));
+        Map<String, Object> fields = new LinkedHashMap<>(Map.of("name", "Phone", "category", category));
+        List<Map.Entry<Long, Map<String, Object>>> rows = List.of(Map.entry(7L, fields));
+        when(shardRouter.gather(any(), any())).thenAnswer(heldUntilFollowersWait(rows));
+
+        List<Future<List<Map<String, Object>>>> results = callConcurrently(
+                () -> productService.getProductFields(ProductFilter.all(), Set.of("name", "category")));
+
+        int shared = 0;
+        for (Future<List<Map<String, Object>>> result : results) {
+            Map<String, Object> received = result.get().get(0);
+            if (received == fields) {
+                shared++;
+                continue;
+            }
+            assertEquals(fields, received);
+            assertNotSame(category, received.get("category"));
+        }
+        assertEquals(1, shared);
+        verify(shardRouter, times(1)).gather(any(), any());
+    }
+
+    @Test
+    void nullArgumentsAreValidKeys() {
+        when(shardRouter.gather(any(), any())).thenReturn(List.of());
+
+        assertEquals(List.of(), productService.getProductByBrand(null));
+        assertEquals(List.of(), productService.getProductByBrandAndName(null, null));
+        assertThrows(ProductNotFoundException.class, () -> productService.getProductById(null));
+    }
+
+    @Test
+    void readsInsideATransactionAreNotShared() throws Exception {
+        Product product = product(8L);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(productRepository.findById(8L)).thenAnswer(invocation -> {
+            // Only the call outside the transaction is held.
+            if (calls.incrementAndGet() == 1) {
+                running.countDown();
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            }
+            return Optional.of(product);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Product> outside = executor.submit(() -> productService.getProductById(8L));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            // Joining the held call would wait for it and time out.
+            assertSame(product, productService.getProductById(8L));
+            assertFalse(outside.isDone());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            release.countDown();
+        }
+
+        assertSame(product, outside.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        verify(productRepository, times(2)).findById(8L);
+    }
+
+    @Test
+    void failureIsPropagatedToEveryCaller() throws Exception {
+        when(productRepository.findById(9L)).thenAnswer(heldUntilFollowersWait(Optional.empty()));
+
+        List<Future<Product>> results = callConcurrently(() -> productService.getProductById(9L));
+
+        for (Future<Product> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, result::get);
+            assertInstanceOf(ProductNotFoundException.class, e.getCause());
+        }
+        verify(productRepository, times(1)).findById(9L);
+    }
+
+    @Test
+    void sequentialReadsAreNotCached() {
+        Product product = new Product();
+        product.setId(3L);
+        when(productRepository.findById(3L)).thenReturn(Optional.of(product));
+
+        productService.getProductById(3L);
+        productService.getProductById(3L);
+
+        verify(productRepository, times(2)).findById(3L);
+    }
+
+    private static Product product(long id) {
+        Category parent = new Category("Electronics");
+        parent.setId(1L);
+        Category category = new Category("Phones");
+        category.setId(2L);
+        category.setParent(parent);
+        Product product = new Product("Phone", "Acme", "d", new BigDecimal("9.99"), 3, category);
+        product.setId(id);
+        Image image = new Image();
+        image.setId(5L);
+        image.setFileName("phone.png");
+        image.setDownloadUrl("/api/v1/images/image/download/5");
+        image.setProduct(product);
+        product.setImages(new ArrayList<>(List.of(image)));
+        return product;
+    }
+
+    /**
+     * A repository answer that holds the call until every other caller waits for its result.
+     */
+    private <T> Answer<T> heldUntilFollowersWait(T result) {
+        return invocation -> {
+            leader = Thread.currentThread();
+            assertTrue(followersWaiting.await(10, TimeUnit.SECONDS));
+            return result;
+        };
+    }
+
+    /**
+     * Makes the call from CALLERS threads at once. The first call to reach the repository is held there until all
+     * other callers have joined it, so every caller shares it however the threads are scheduled.
+     */
+    private <T> List<Future<T>> callConcurrently(Callable<T> call) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CyclicBarrier start = new CyclicBarrier(CALLERS);
+        List<Thread> callers = new CopyOnWriteArrayList<>();
+        List<Future<T>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                callers.add(Thread.currentThread());
+                start.await();
+                return call.call();
+            }));
+        }
+        awaitFollowers(callers);
+        followersWaiting.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    /**
+     * Waits until the leader is in the repository and every other caller is parked waiting for the shared result,
+     * the only timed wait on their path.
+     */
+    private void awaitFollowers(List<Thread> callers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (leader == null || callers.size() < CALLERS || callers.stream()
+                .anyMatch(caller -> caller != leader && caller.getState() != Thread.State.TIMED_WAITING)) {
+            assertTrue(System.nanoTime() < deadline, "Callers didn't join the shared call");
+            Thread.sleep(1);
+        }
+    }
+}
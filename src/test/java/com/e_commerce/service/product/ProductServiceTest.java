@@ -0,0 +1,149 @@
+package com.e_commerce.service.product;
+
+import com.e_commerce.dto.ImageDto;
+import com.e_commerce.exceptions.AlreadyExistsException;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import com.e_commerce.request.ProductUpdateRequest;
+import com.e_commerce.request.ProductUpsertRequest;
+import com.e_commerce.service.image.IImageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates products on their natural key, brand + name, on H2, where creates take the lookup-then-save path.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class ProductServiceTest {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aRetriedCreateReturnsTheOriginalProduct() {
+        Product original = productService.addProduct(addProductRequest("Kettle", "Retry", "Kitchen", "24.50", 3));
+
+        Product retried = productService.addProduct(addProductRequest("Kettle", "Retry", "Kitchen", "24.50", 3));
+
+        assertEquals(original.getId(), retried.getId());
+        assertEquals(1, countProducts("Retry", "Kettle"));
+        assertEquals(1, countCreatedEvents(original.getId()));
+    }
+
+    @Test
+    void aCreateWithOtherDetailsConflicts() {
+        productService.addProduct(addProductRequest("Toaster", "Conflict", "Kitchen", "30.00", 2));
+
+        assertThrows(AlreadyExistsException.class,
+                () -> productService.addProduct(addProductRequest("Toaster", "Conflict", "Kitchen", "35.00", 2)));
+        assertThrows(AlreadyExistsException.class,
+                () -> productService.addProduct(addProductRequest("Toaster", "Conflict", "Kitchen", "30.00", 9)));
+        assertThrows(AlreadyExistsException.class,
+                () -> productService.addProduct(addProductRequest("Toaster", "Conflict", "Appliances", "30.00", 2)));
+        assertEquals(1, countProducts("Conflict", "Toaster"));
+    }
+
+    @Test
+    void concurrentCreatesMakeOneProduct() throws Exception {
+        // The category exists beforehand, so the creates only race on the product.
+        productService.addProduct(addProductRequest("Mug", "Concurrent", "Tableware", "4.00", 10));
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Product>> creates = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                creates.add(executor.submit(() -> {
+                    start.await();
+                    return productService.addProduct(addProductRequest("Teapot", "Concurrent", "Tableware", "18.00", 5));
+                }));
+            }
+            start.countDown();
+            Set<Long> ids = new HashSet<>();
+            for (Future<Product> create : creates) {
+                ids.add(create.get().getId());
+            }
+
+            assertEquals(1, ids.size());
+            assertEquals(1, countProducts("Concurrent", "Teapot"));
+            assertEquals(1, countCreatedEvents(ids.iterator().next()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void renamingOntoAnotherProductConflicts() {
+        Product chair = productService.addProduct(addProductRequest("Chair", "Rename", "Seating", "40.00", 1));
+        Product stool = productService.addProduct(addProductRequest("Stool", "Rename", "Seating", "25.00", 1));
+
+        ProductUpdateRequest update = new ProductUpdateRequest();
+        update.setName("Chair");
+        update.setBrand("Rename");
+        update.setPrice(new BigDecimal("25.00"));
+        update.setInventory(1);
+        update.setCategory(new Category("Seating"));
+        assertThrows(AlreadyExistsException.class, () -> productService.updateProduct(update, stool.getId()));
+
+        ProductUpsertRequest upsert = new ProductUpsertRequest();
+        upsert.setId(chair.getId());
+        upsert.setName("Stool");
+        upsert.setBrand("Rename");
+        upsert.setPrice(new BigDecimal("40.00"));
+        upsert.setInventory(1);
+        upsert.setCategory(new Category("Seating"));
+        assertThrows(AlreadyExistsException.class, () -> productService.upsertProducts(List.of(upsert)));
+
+        assertEquals("Stool", productService.getProductById(stool.getId()).getName());
+        assertEquals("Chair", productService.getProductById(chair.getId()).getName());
+    }
+
+    @Test
+    void deletingAProductRecordsTheDeletionOfItsImages() {
+        Product lamp = productService.addProduct(addProductRequest("Lamp", "Delete", "Lighting", "15.00", 1));
+        List<Long> imageIds = imageService.saveImage(List.of(
+                        new MockMultipartFile("file", "front.png", "image/png", "front".getBytes()),
+                        new MockMultipartFile("file", "back.png", "image/png", "back".getBytes())), lamp.getId())
+                .stream().map(ImageDto::getId).toList();
+
+        productService.deleteProductById(lamp.getId());
+
+        for (Long imageId : imageIds) {
+            assertEquals(1, jdbcTemplate.queryForObject("select count(*) from outbox_event where aggregate_type = 'IMAGE' "
+                    + "and aggregate_id = ? and change_type = 'DELETED'", Long.class, imageId));
+        }
+    }
+
+    private long countProducts(String brand, String name) {
+        return jdbcTemplate.queryForObject("select count(*) from product where brand = ? and name = ?", Long.class, brand, name);
+    }
+
+    private long countCreatedEvents(Long productId) {
+        return jdbcTemplate.queryForObject("select count(*) from outbox_event where aggregate_type = 'PRODUCT' "
+                + "and aggregate_id = ? and change_type = 'CREATED'", Long.class, productId);
+    }
+}
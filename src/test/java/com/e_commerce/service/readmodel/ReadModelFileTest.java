@@ -0,0 +1,84 @@
+package com.e_commerce.service.readmodel;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.service.stats.ProductFacts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadModelFileTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path path = directory.resolve("model.bin");
+        Instant watermarkTime = Instant.parse("2026-10-19T08:15:30.123456Z");
+        TreeMap<Long, ProductFacts> products = new TreeMap<>();
+        products.put(4L, new ProductFacts(1L, "Acme", "Widget", new BigDecimal("9.99"), 5));
+        products.put(7L, new ProductFacts(2L, "Acme", "Gadget", null, 0));
+        products.put(10L, new ProductFacts(null, null, "Gizmo", new BigDecimal("-12.5000"), 3));
+        List<CategoryNodeDto> categories = List.of(
+                new CategoryNodeDto(1L, "Lighting", null, "/1/", 0, List.of()),
+                new CategoryNodeDto(2L, "Desk", 1L, "/1/2/", 1, List.of()));
+
+        ReadModelFile.write(path, new long[]{40, 17}, new Instant[]{watermarkTime, null}, categories,
+                products.entrySet().iterator());
+        ReadModelFile file = ReadModelFile.open(path, 2);
+
+        assertArrayEquals(new long[]{40, 17}, file.watermarks());
+        assertArrayEquals(new Instant[]{watermarkTime, null}, file.watermarkTimes());
+        assertEquals(products.size(), file.productCount());
+        List<Long> ids = new ArrayList<>(products.keySet());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(i), file.productId(i));
+            assertEquals(products.get(ids.get(i)), file.product(i));
+        }
+        assertEquals(categories, file.categories());
+    }
+
+    @Test
+    void rejectsCorruptedFiles() throws IOException {
+        Path path = directory.resolve("model.bin");
+        ReadModelFile.write(path, new long[]{1}, new Instant[]{null}, List.of(),
+                Map.of(1L, new ProductFacts(1L, "Acme", "Widget", BigDecimal.ONE, 1)).entrySet().iterator());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), channel.size() - 1);
+        }
+
+        assertThrows(IOException.class, () -> ReadModelFile.open(path, 1));
+    }
+
+    @Test
+    void rejectsCorruptedHeaders() throws IOException {
+        Path path = directory.resolve("model.bin");
+        ReadModelFile.write(path, new long[]{1}, new Instant[]{null}, List.of(),
+                Map.of(1L, new ProductFacts(1L, "Acme", "Widget", BigDecimal.ONE, 1)).entrySet().iterator());
+        // The last byte of the only watermark, which no other check looks at.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 72 + 7);
+        }
+
+        assertThrows(IOException.class, () -> ReadModelFile.open(path, 1));
+    }
+
+    @Test
+    void rejectsFilesOfAnotherShardCount() throws IOException {
+        Path path = directory.resolve("model.bin");
+        ReadModelFile.write(path, new long[]{1}, new Instant[]{null}, List.of(), Collections.emptyIterator());
+
+        assertThrows(IOException.class, () -> ReadModelFile.open(path, 3));
+        assertNull(ReadModelFile.open(directory.resolve("missing.bin"), 1));
+    }
+}
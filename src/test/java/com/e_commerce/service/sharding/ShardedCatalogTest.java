@@ -0,0 +1,212 @@
+package com.e_commerce.service.sharding;
+
+import com.e_commerce.dto.ProductDto;
+import com.e_commerce.dto.ProductLookupDto;
+import com.e_commerce.exceptions.CategoryInUseException;
+import com.e_commerce.model.Category;
+import com.e_commerce.model.Product;
+import com.e_commerce.request.AddProductRequest;
+import com.e_commerce.request.ProductUpsertRequest;
+import com.e_commerce.service.category.CategoryReplicator;
+import com.e_commerce.service.category.ICategoryService;
+import com.e_commerce.service.product.IProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the catalog on three in-memory H2 databases.
+ */
+@SpringBootTest(properties = {
+        "catalog.sharding.enabled=true",
+        "catalog.sharding.urls=jdbc:h2:mem:catalog-shard-0;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:catalog-shard-1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:catalog-shard-2;DB_CLOSE_DELAY=-1",
+        "spring.jpa.open-in-view=false"
+})
+@ActiveProfiles("h2")
+class ShardedCatalogTest {
+
+    private static final int SHARDS = 3;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private CategoryReplicator categoryReplicator;
+
+    @Test
+    void productsLiveOnTheShardOfTheirCategory() {
+        List<Product> products = addOnePerShard("placement");
+
+        for (Product product : products) {
+            int shard = shardRouter.shardFor(product.getCategory().getName());
+            assertEquals(shard, shardRouter.shardOf(product.getId()));
+            for (int other = 0; other < SHARDS; other++) {
+                assertEquals(other == shard ? 1 : 0, countProducts(other, product.getId()));
+            }
+            Product found = productService.getProductById(product.getId());
+            assertEquals(product.getName(), found.getName());
+            assertEquals(product.getCategory().getName(), found.getCategory().getName());
+        }
+    }
+
+    @Test
+    void categoriesAreCopiedToEveryShard() {
+        List<Product> products = addOnePerShard("categories");
+
+        for (Product product : products) {
+            for (int shard = 0; shard < SHARDS; shard++) {
+                String name = jdbc(shard).queryForObject("select name from category where id = ?", String.class,
+                        product.getCategory().getId());
+                assertEquals(product.getCategory().getName(), name);
+            }
+        }
+    }
+
+    @Test
+    void categoriesWithProductsOnAnotherShardAreNotDeleted() {
+        // Category writes run on shard 0, where the foreign key can't see these products.
+        Product product = addOnePerShard("in-use").stream()
+                .filter(candidate -> shardRouter.shardOf(candidate.getId()) != 0)
+                .findFirst().orElseThrow();
+
+        assertThrows(CategoryInUseException.class, () -> categoryService.deleteCategoryById(product.getCategory().getId()));
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals(1, jdbc(shard).queryForObject("select count(*) from category where id = ?", Long.class,
+                    product.getCategory().getId()));
+        }
+    }
+
+    @Test
+    void pendingCategoryCopiesAreRepaired() {
+        Category category = categoryService.addCategory(new Category("repaired-category"));
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals(0, jdbc(shard).queryForObject("select count(*) from category_replication", Long.class));
+        }
+        // A copy to shard 1 that was lost, e.g. by a restart right after the commit.
+        jdbc(1).update("delete from category where id = ?", category.getId());
+        jdbc(0).update("insert into category_replication (target_shard, path, attempts, created_at) values (1, ?, 0, ?)",
+                category.getPath(), Timestamp.from(Instant.now()));
+
+        categoryReplicator.repair();
+
+        assertEquals("repaired-category", jdbc(1).queryForObject("select name from category where id = ?", String.class,
+                category.getId()));
+        assertEquals(0, jdbc(0).queryForObject("select count(*) from category_replication", Long.class));
+    }
+
+    @Test
+    void listQueriesMergeAllShardsById() {
+        // The brand and name only have to be unique per shard, so each shard holds its own Widget of the brand.
+        List<Product> products = addOnePerShard("list");
+        String brand = products.get(0).getBrand();
+        List<Long> ids = products.stream().map(Product::getId).sorted().toList();
+
+        assertEquals(ids, productService.getProductByBrand(brand).stream().map(Product::getId).toList());
+        assertEquals(ids, productService.getProductByBrandAndName(brand, "Widget").stream().map(Product::getId).toList());
+        assertEquals(SHARDS, productService.countProductsByBrandAndName(brand, "Widget"));
+    }
+
+    @Test
+    void batchLookupsKeepTheRequestedOrder() {
+        List<Product> products = addOnePerShard("lookup");
+        List<Long> ids = new ArrayList<>(products.stream().map(Product::getId).toList());
+        Collections.reverse(ids);
+        ids.add(1, Long.MAX_VALUE);
+
+        List<ProductLookupDto<ProductDto>> lookups = productService.getProductsByIds(ids);
+
+        assertEquals(ids, lookups.stream().map(ProductLookupDto::getId).toList());
+        assertFalse(lookups.get(1).isFound());
+        assertEquals(SHARDS, lookups.stream().filter(ProductLookupDto::isFound).count());
+    }
+
+    @Test
+    void upsertsWriteEachRowOnItsShard() {
+        List<Product> existing = addOnePerShard("upsert");
+        List<ProductUpsertRequest> requests = new ArrayList<>();
+        for (Product product : existing) {
+            requests.add(upsertRequest(product.getId(), product.getBrand(), product.getCategory().getName(), 42));
+        }
+        requests.add(upsertRequest(null, "upsert-new-brand", existing.get(1).getCategory().getName(), 7));
+
+        List<ProductDto> saved = productService.upsertProducts(requests);
+
+        assertEquals(requests.size(), saved.size());
+        for (int i = 0; i < existing.size(); i++) {
+            assertEquals(existing.get(i).getId(), saved.get(i).getId());
+            assertEquals(42, productService.getProductById(existing.get(i).getId()).getInventory());
+        }
+        ProductDto created = saved.get(existing.size());
+        assertEquals(shardRouter.shardFor(existing.get(1).getCategory().getName()), shardRouter.shardOf(created.getId()));
+        assertEquals(1, countProducts(shardRouter.shardOf(created.getId()), created.getId()));
+    }
+
+    @Test
+    void addingAnExistingProductReturnsIt() {
+        Product original = addOnePerShard("retry").get(0);
+
+        Product retried = productService.addProduct(addRequest(original.getBrand(), original.getCategory().getName()));
+
+        assertEquals(original.getId(), retried.getId());
+        assertEquals(1, countProducts(shardRouter.shardOf(original.getId()), original.getId()));
+        assertEquals(1, productService.getProductByBrand(original.getBrand()).stream()
+                .filter(product -> product.getCategory().getName().equals(original.getCategory().getName()))
+                .count());
+    }
+
+    /**
+     * Adds one product of a new brand to each shard, in categories named after the test.
+     */
+    private List<Product> addOnePerShard(String prefix) {
+        String brand = prefix + "-brand";
+        Map<Integer, Product> byShard = new TreeMap<>();
+        for (int i = 0; byShard.size() < SHARDS; i++) {
+            String categoryName = prefix + "-category-" + i;
+            int shard = shardRouter.shardFor(categoryName);
+            if (!byShard.containsKey(shard)) {
+                byShard.put(shard, productService.addProduct(addRequest(brand, categoryName)));
+            }
+        }
+        return new ArrayList<>(byShard.values());
+    }
+
+    private long countProducts(int shard, long id) {
+        return jdbc(shard).queryForObject("select count(*) from product where id = ?", Long.class, id);
+    }
+
+    private JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(shardRouter.dataSource(shard));
+    }
+
+    private static AddProductRequest addRequest(String brand, String categoryName) {
+        return addProductRequest("Widget", brand, categoryName, "9.99", 5);
+    }
+
+    private static ProductUpsertRequest upsertRequest(Long id, String brand, String categoryName, int inventory) {
+        ProductUpsertRequest request = new ProductUpsertRequest();
+        request.setId(id);
+        request.setName("Widget");
+        request.setBrand(brand);
+        request.setPrice(new BigDecimal("9.99"));
+        request.setInventory(inventory);
+        request.setCategory(new Category(categoryName));
+        return request;
+    }
+}
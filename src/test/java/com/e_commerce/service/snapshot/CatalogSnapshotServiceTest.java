@@ -0,0 +1,119 @@
+package com.e_commerce.service.snapshot;
+
+import com.e_commerce.dto.SnapshotSummaryDto;
+import com.e_commerce.exceptions.InvalidSnapshotException;
+import com.e_commerce.model.Product;
+import com.e_commerce.request.AddProductRequest;
+import com.e_commerce.service.image.IImageService;
+import com.e_commerce.service.product.IProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static com.e_commerce.CatalogFixtures.addProductRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports a small catalog on H2, empties it and restores it from the snapshot. Emptying the catalog behind the
+ * caches' back would break other tests, so this class has a database of its own.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:catalog-snapshot;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("h2")
+class CatalogSnapshotServiceTest {
+
+    private static final List<String> TABLES = List.of("image", "image_content", "product", "category");
+
+    @Autowired
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyCatalog() {
+        TABLES.forEach(table -> jdbcTemplate.update("delete from " + table));
+    }
+
+    @Test
+    void restoresWhatWasExported() throws Exception {
+        Product phone = productService.addProduct(addRequest("Phone", "Electronics/Phones"));
+        productService.addProduct(addRequest("Cable", "Electronics/Accessories"));
+        productService.addProduct(addRequest("Lamp", "Home"));
+        byte[] picture = "not really a png".getBytes();
+        Long imageId = imageService.saveImage(List.of(new MockMultipartFile("file", "phone.png", "image/png", picture)),
+                phone.getId()).get(0).getId();
+        Map<String, List<Map<String, Object>>> before = dump();
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        SnapshotSummaryDto exported = catalogSnapshotService.exportSnapshot(snapshot);
+        emptyCatalog();
+        SnapshotSummaryDto restored = catalogSnapshotService.restoreSnapshot(new ByteArrayInputStream(snapshot.toByteArray()));
+
+        assertEquals(3, exported.getProducts());
+        assertEquals(1, exported.getImages());
+        assertEquals(picture.length, exported.getImageBytes());
+        assertEquals(exported.getProducts(), restored.getProducts());
+        assertEquals(exported.getCategories(), restored.getCategories());
+        assertEquals(exported.getImageBytes(), restored.getImageBytes());
+        assertEquals(before, dump());
+        assertArrayEquals(picture, imageService.getImageData(imageId));
+        assertEquals("Phone", productService.getProductById(phone.getId()).getName());
+        Product added = productService.addProduct(addRequest("Tablet", "Electronics/Tablets"));
+        assertTrue(added.getId() > phone.getId());
+    }
+
+    @Test
+    void rejectsACorruptSnapshotAndLeavesTheCatalogEmpty() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            productService.addProduct(addRequest("Item " + i, "Garden"));
+        }
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        catalogSnapshotService.exportSnapshot(snapshot);
+        emptyCatalog();
+        byte[] corrupt = snapshot.toByteArray();
+        corrupt[corrupt.length / 2] ^= 0x5a;
+
+        assertThrows(InvalidSnapshotException.class,
+                () -> catalogSnapshotService.restoreSnapshot(new ByteArrayInputStream(corrupt)));
+        for (String table : TABLES) {
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from " + table, Long.class));
+        }
+    }
+
+    @Test
+    void refusesToRestoreOverAnExistingCatalog() throws Exception {
+        productService.addProduct(addRequest("Chair", "Furniture"));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        catalogSnapshotService.exportSnapshot(snapshot);
+
+        assertThrows(IllegalStateException.class,
+                () -> catalogSnapshotService.restoreSnapshot(new ByteArrayInputStream(snapshot.toByteArray())));
+    }
+
+    private Map<String, List<Map<String, Object>>> dump() {
+        return Map.of(
+                "category", jdbcTemplate.queryForList("select id, name, parent_id, path, depth from category order by id"),
+                "product", jdbcTemplate.queryForList("select id, name, brand, price, inventory, category_id from product order by id"),
+                "image_content", jdbcTemplate.queryForList("select id, sha256, size, ref_count from image_content order by id"),
+                "image", jdbcTemplate.queryForList("select id, file_name, file_type, download_url, product_id, content_id, deleted from image order by id"));
+    }
+
+    private static AddProductRequest addRequest(String name, String categoryName) {
+        return addProductRequest(name, "Acme", categoryName, "19.90", 3);
+    }
+}
@@ -0,0 +1,74 @@
+package com.e_commerce.service.sqllog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimedJdbcTest {
+
+    private final List<Recorded> recorded = new ArrayList<>();
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(new SimpleMeterRegistry()) {
+            @Override
+            void record(String sql, Object[] parameters, int batchSize, long nanos, long rows) {
+                recorded.add(new Recorded(sql, parameters, batchSize, rows));
+            }
+        };
+        ReflectionTestUtils.setField(slowQueryLog, "enabled", true);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:timed-jdbc-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        DataSource dataSource = slowQueryLog.wrap(h2);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table item (id bigint primary key, name varchar(20))");
+        recorded.clear();
+    }
+
+    @Test
+    void reportsQueriesWithTheRowsRead() {
+        jdbc.update("insert into item values (1, 'a'), (2, 'b'), (3, 'c')");
+
+        List<String> names = jdbc.queryForList("select name from item where id > ? order by id", String.class, 1L);
+
+        assertEquals(List.of("b", "c"), names);
+        Recorded query = recorded.get(1);
+        assertEquals("select name from item where id > ? order by id", query.sql);
+        assertEquals(2, query.rows);
+        assertEquals(2, query.parameters.length);
+        assertEquals(1L, query.parameters[1]);
+    }
+
+    @Test
+    void reportsUpdatesWithTheRowsChanged() {
+        jdbc.update("insert into item values (?, ?)", 1L, "a");
+        jdbc.update("update item set name = ? where id = ?", null, 1L);
+
+        assertEquals(1, recorded.get(0).rows);
+        assertEquals("a", recorded.get(0).parameters[2]);
+        assertEquals(1, recorded.get(1).rows);
+        assertNull(recorded.get(1).parameters[1]);
+    }
+
+    @Test
+    void reportsBatchesOnce() {
+        jdbc.batchUpdate("insert into item values (?, ?)", List.of(new Object[]{1L, "a"}, new Object[]{2L, "b"}));
+
+        assertEquals(1, recorded.size());
+        assertEquals(2, recorded.get(0).batchSize);
+        assertEquals(2, recorded.get(0).rows);
+    }
+
+    private record Recorded(String sql, Object[] parameters, int batchSize, long rows) {
+    }
+}
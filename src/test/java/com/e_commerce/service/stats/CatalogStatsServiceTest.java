@@ -0,0 +1,175 @@
+package com.e_commerce.service.stats;
+
+import com.e_commerce.dto.CatalogStatsDto;
+import com.e_commerce.repository.OutboxEventRepository;
+import com.e_commerce.repository.ProductRepository;
+import com.e_commerce.repository.projection.ProductStatsRow;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.outbox.CatalogEventStream;
+import com.e_commerce.service.readmodel.CatalogReadModel;
+import com.e_commerce.service.readmodel.RemoteProductChangesEvent;
+import com.e_commerce.service.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CatalogStatsServiceTest {
+
+    private static final ProductFacts PHONE = new ProductFacts(1L, "Acme", "Phone", new BigDecimal("100.00"), 3);
+    private static final ProductFacts CHEAP_PHONE = new ProductFacts(1L, "Acme", "Phone", new BigDecimal("50.00"), 3);
+
+    private ProductRepository productRepository;
+    private OutboxEventRepository outboxEventRepository;
+    private CatalogReadModel catalogReadModel;
+    private CatalogStatsService statsService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        catalogReadModel = mock(CatalogReadModel.class);
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.gatherInSnapshot(any())).thenAnswer(invocation -> invocation.<Supplier<List<?>>>getArgument(0).get());
+        CatalogEventStream catalogEventStream = mock(CatalogEventStream.class);
+        // Events up to 10 were relayed before the reconciliation started.
+        when(catalogEventStream.getPosition()).thenReturn(new long[] {10});
+        statsService = new CatalogStatsService(productRepository, mock(CategoryTreeCache.class), new SimpleMeterRegistry(),
+                shardRouter, catalogReadModel, catalogEventStream, outboxEventRepository);
+    }
+
+    @Test
+    void changesAreAppliedOnceTheirTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            statsService.recordChange(null, PHONE, 11);
+            assertEquals(0, statsService.countByBrandAndName("Acme", "Phone"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, statsService.countByBrandAndName("Acme", "Phone"));
+
+        statsService.recordChange(null, CHEAP_PHONE, 12);
+        CatalogStatsDto brand = statsService.getBrandStats("Acme");
+        assertEquals(2, brand.getProductCount());
+        assertEquals(6, brand.getStockTotal());
+        assertEquals(new BigDecimal("75.00"), brand.getAveragePrice());
+
+        statsService.recordChange(PHONE, null, 13);
+        statsService.recordChange(CHEAP_PHONE, null, 14);
+        assertEquals(0, statsService.countByBrandAndName("Acme", "Phone"));
+        assertEquals(List.of(), statsService.getBrandStats());
+    }
+
+    @Test
+    void reconcileReplaysOnlyTheChangesItsSnapshotMissed() {
+        when(productRepository.aggregateStats()).thenAnswer(invocation -> {
+            // Committed before the recording started, applied late: in the snapshot.
+            statsService.recordChange(null, PHONE, 9);
+            // Committed after the recording started, before the snapshot: in it too.
+            statsService.recordChange(null, PHONE, 12);
+            // Committed after the snapshot.
+            statsService.recordChange(null, PHONE, 14);
+            return List.of(row("Acme", "Phone", 2));
+        });
+        when(outboxEventRepository.findIdsGreaterThan(10L)).thenReturn(List.of(11L, 12L));
+
+        statsService.reconcile();
+
+        assertTrue(statsService.isLoaded());
+        assertEquals(3, statsService.countByBrandAndName("Acme", "Phone"));
+    }
+
+    @Test
+    void remoteChangesAreAppliedAndReplayedLikeLocalOnes() {
+        statsService.onRemoteProductChanges(new RemoteProductChangesEvent(List.of(
+                new RemoteProductChangesEvent.Change(null, PHONE, 5),
+                new RemoteProductChangesEvent.Change(null, CHEAP_PHONE, 6))));
+        assertEquals(2, statsService.countByBrandAndName("Acme", "Phone"));
+
+        when(productRepository.aggregateStats()).thenAnswer(invocation -> {
+            // Relayed before the recording started but published after it: in the snapshot.
+            statsService.onRemoteProductChanges(new RemoteProductChangesEvent(List.of(
+                    new RemoteProductChangesEvent.Change(PHONE, CHEAP_PHONE, 8))));
+            // Committed on the other node after the snapshot.
+            statsService.onRemoteProductChanges(new RemoteProductChangesEvent(List.of(
+                    new RemoteProductChangesEvent.Change(CHEAP_PHONE, null, 15))));
+            return List.of(row("Acme", "Phone", 2));
+        });
+        when(outboxEventRepository.findIdsGreaterThan(10L)).thenReturn(List.of());
+
+        statsService.reconcile();
+
+        assertEquals(1, statsService.countByBrandAndName("Acme", "Phone"));
+    }
+
+    @Test
+    void aLoadFromTheReadModelReplaysTheChangesAfterItsWatermarks() {
+        when(catalogReadModel.isEnabled()).thenReturn(true);
+        when(catalogReadModel.forEachProduct(any())).thenAnswer(invocation -> {
+            BiConsumer<Long, ProductFacts> consumer = invocation.getArgument(0);
+            consumer.accept(1L, PHONE);
+            consumer.accept(2L, PHONE);
+            // Applied to the model already.
+            statsService.recordChange(null, PHONE, 6);
+            // Not relayed to the model yet.
+            statsService.recordChange(null, PHONE, 7);
+            return new long[] {6};
+        });
+
+        statsService.load();
+
+        assertEquals(3, statsService.countByBrandAndName("Acme", "Phone"));
+        verify(productRepository, never()).aggregateStats();
+    }
+
+    private static ProductStatsRow row(String brand, String name, long productCount) {
+        return new ProductStatsRow() {
+            @Override
+            public Long getCategoryId() {
+                return 1L;
+            }
+
+            @Override
+            public String getBrand() {
+                return brand;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public long getProductCount() {
+                return productCount;
+            }
+
+            @Override
+            public long getInventoryTotal() {
+                return 3 * productCount;
+            }
+
+            @Override
+            public BigDecimal getPriceTotal() {
+                return new BigDecimal("100.00").multiply(BigDecimal.valueOf(productCount));
+            }
+
+            @Override
+            public long getPricedCount() {
+                return productCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package com.e_commerce.service.trending;
+
+import com.e_commerce.dto.CategoryNodeDto;
+import com.e_commerce.dto.TrendingProductDto;
+import com.e_commerce.service.category.CategoryTreeCache;
+import com.e_commerce.service.readmodel.CatalogReadModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TrendingServiceTest {
+
+    private TrendingService trendingService;
+    private CatalogReadModel catalogReadModel;
+    private CategoryTreeCache categoryTreeCache;
+
+    @BeforeEach
+    void setUp() {
+        catalogReadModel = mock(CatalogReadModel.class);
+        categoryTreeCache = mock(CategoryTreeCache.class);
+        trendingService = new TrendingService(new SimpleMeterRegistry(), catalogReadModel, categoryTreeCache);
+        ReflectionTestUtils.setField(trendingService, "windowBuckets", 3);
+        ReflectionTestUtils.setField(trendingService, "sketchDepth", 4);
+        ReflectionTestUtils.setField(trendingService, "sketchWidth", 1024);
+        ReflectionTestUtils.setField(trendingService, "capacity", 3);
+        trendingService.init();
+    }
+
+    @Test
+    void ranksProductsByViews() {
+        view(1, "phones", 5);
+        view(2, "laptops", 9);
+        view(3, "phones", 2);
+
+        List<TrendingProductDto> trending = trendingService.getTrending(3, null);
+
+        assertEquals(List.of(2L, 1L, 3L), ids(trending));
+        assertEquals(9, trending.get(0).getViews());
+        assertEquals("laptops", trending.get(0).getCategory());
+    }
+
+    @Test
+    void filtersByCategory() {
+        view(1, "phones", 5);
+        view(2, "laptops", 9);
+        view(3, null, 1);
+        view(3, "phones", 1);
+
+        List<TrendingProductDto> phones = trendingService.getTrending(3, "phones");
+
+        assertEquals(List.of(1L, 3L), ids(phones));
+    }
+
+    @Test
+    void viewsWithoutACategoryTakeItFromTheReadModel() {
+        when(catalogReadModel.findCategoryId(1L)).thenReturn(Optional.of(7L));
+        when(categoryTreeCache.findById(7L)).thenReturn(Optional.of(new CategoryNodeDto(7L, "phones", null, "7", 0, List.of())));
+        when(catalogReadModel.findCategoryId(2L)).thenReturn(Optional.empty());
+
+        trendingService.recordView(1L);
+        trendingService.recordView(2L);
+
+        assertEquals(List.of(1L), ids(trendingService.getTrending(2, "phones")));
+        assertEquals(List.of(1L, 2L), ids(trendingService.getTrending(2, null)));
+    }
+
+    @Test
+    void forgetsViewsOlderThanTheWindow() {
+        view(1, "phones", 5);
+        trendingService.advanceWindow();
+        view(2, "phones", 3);
+        trendingService.advanceWindow();
+
+        assertEquals(List.of(1L, 2L), ids(trendingService.getTrending(3, null)));
+
+        trendingService.advanceWindow();
+
+        List<TrendingProductDto> trending = trendingService.getTrending(3, null);
+        assertEquals(List.of(2L), ids(trending));
+        assertEquals(3, trending.get(0).getViews());
+    }
+
+    @Test
+    void keepsOnlyTheMostViewedBeyondTheCapacity() {
+        view(1, "phones", 4);
+        view(2, "phones", 3);
+        view(3, "phones", 2);
+        trendingService.getTrending(1, null);
+
+        view(4, "phones", 1);
+        view(5, "phones", 6);
+
+        assertEquals(List.of(5L, 1L, 2L), ids(trendingService.getTrending(3, null)));
+    }
+
+    @Test
+    void rejectsLimitsOutsideTheCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> trendingService.getTrending(0, null));
+        assertThrows(IllegalArgumentException.class, () -> trendingService.getTrending(4, null));
+    }
+
+    private void view(long productId, String category, int times) {
+        for (int i = 0; i < times; i++) {
+            trendingService.recordView(productId, category);
+        }
+    }
+
+    private static List<Long> ids(List<TrendingProductDto> trending) {
+        return trending.stream().map(TrendingProductDto::getProductId).toList();
+    }
+}